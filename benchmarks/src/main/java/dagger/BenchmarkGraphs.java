@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+
+/**
+ * Creates object graphs that use reflection for every module and binding,
+ * ignoring generated adapters. This lives in the {@code dagger} package to
+ * reach the graph's loader hook.
+ */
+public final class BenchmarkGraphs {
+  private BenchmarkGraphs() {
+  }
+
+  public static ObjectGraph createReflective(Object... modules) {
+    return ObjectGraph.createWith(new TestingLoader(), modules);
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.BenchmarkGraphs;
+import dagger.ObjectGraph;
+
+/** How a benchmarked graph obtains its module adapters and bindings. */
+public enum AdapterMode {
+  /** Use the adapters generated by the annotation processors. */
+  GENERATED {
+    @Override public ObjectGraph create(Object... modules) {
+      return ObjectGraph.create(modules);
+    }
+  },
+
+  /** Use reflection only, as for classes that were compiled without the processors. */
+  REFLECTIVE {
+    @Override public ObjectGraph create(Object... modules) {
+      return BenchmarkGraphs.createReflective(modules);
+    }
+  },
+
+  /**
+   * Use generated adapters, with one binding class per module that dispatches
+   * on an ordinal to its {@code @Provides} methods. Only graphs that are
+   * compiled by the benchmarks themselves, like {@link SyntheticGraph}, are
+   * generated this way.
+   */
+  SWITCHING {
+    @Override public ObjectGraph create(Object... modules) {
+      return ObjectGraph.create(modules);
+    }
+  };
+
+  public abstract ObjectGraph create(Object... modules);
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import coffee.CoffeeApp;
+import dagger.ObjectGraph;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the first {@code ObjectGraph.create()} and {@code get()} in a fresh
+ * JVM, which includes loading classes, instantiating adapters and falling back
+ * to reflection. Each scenario and adapter mode runs in several forked JVMs,
+ * and the results are written as JSON.
+ *
+ * <pre>
+ *   java -cp benchmarks.jar dagger.benchmarks.ColdStart \
+ *       [--forks 10] [--bindings 2000] [--jvmArg -Xint] [--output cold-start.json]
+ * </pre>
+ *
+ * <p>For each scenario and mode this reports the time from entering
+ * {@code main()} to having the first instance, the JVM's uptime at that point,
+ * and the number of classes loaded to get the instance.
+ */
+public final class ColdStart {
+  private ColdStart() {
+  }
+
+  /** The graph and first instance to get in each forked JVM. */
+  enum Scenario {
+    COFFEE {
+      @Override boolean supports(AdapterMode mode) {
+        return mode != AdapterMode.SWITCHING;
+      }
+
+      @Override Object firstInstance(AdapterMode mode, int bindings) {
+        return mode.create(Fixtures.DRIP_COFFEE_MODULE).get(CoffeeApp.class);
+      }
+    },
+    CAR {
+      @Override boolean supports(AdapterMode mode) {
+        return mode != AdapterMode.SWITCHING;
+      }
+
+      @Override Object firstInstance(AdapterMode mode, int bindings) {
+        return mode.create(new Fixtures.CarModule()).get(Fixtures.Car.class);
+      }
+    },
+    /** The root level of a {@link GraphGenerator} graph, compiled before timing starts. */
+    SYNTHETIC {
+      private SyntheticGraph graph;
+
+      @Override void prepare(AdapterMode mode, int bindings) throws IOException {
+        graph = SyntheticGraph.compile(
+            new GraphGenerator(bindings, 4, 10, 1, 0.25, 1L), mode);
+      }
+
+      @Override Object firstInstance(AdapterMode mode, int bindings) {
+        return ObjectGraph.create(graph.newModule(0)).get(graph.entryClass(0));
+      }
+    };
+
+    /** Returns false if this scenario's classes can't be compiled for {@code mode}. */
+    boolean supports(AdapterMode mode) {
+      return true;
+    }
+
+    /** Does the work that shouldn't be measured, like compiling generated sources. */
+    void prepare(AdapterMode mode, int bindings) throws IOException {
+    }
+
+    abstract Object firstInstance(AdapterMode mode, int bindings);
+  }
+
+  public static void main(String... args) throws Exception {
+    int forks = 10;
+    int bindings = 2000;
+    File output = null;
+    List<String> jvmArgs = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--forks")) {
+        forks = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--bindings")) {
+        bindings = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--jvmArg")) {
+        jvmArgs.add(args[++i]);
+      } else if (args[i].equals("--output")) {
+        output = new File(args[++i]);
+      } else {
+        throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+      }
+    }
+
+    StringBuilder json = new StringBuilder();
+    json.append("[");
+    for (Scenario scenario : Scenario.values()) {
+      for (AdapterMode mode : AdapterMode.values()) {
+        if (!scenario.supports(mode)) {
+          continue;
+        }
+        // Compile synthetic graphs once, outside of the measured forks.
+        scenario.prepare(mode, bindings);
+        long[][] samples = new long[3][forks];
+        for (int f = 0; f < forks; f++) {
+          long[] sample = fork(scenario, mode, bindings, jvmArgs);
+          for (int m = 0; m < samples.length; m++) {
+            samples[m][f] = sample[m];
+          }
+        }
+        System.err.println(String.format(Locale.US,
+            "%-9s %-10s first instance %8.2f ms, uptime %5d ms, %5d classes loaded",
+            scenario, mode, median(samples[0]) / 1e6, median(samples[1]), median(samples[2])));
+        json.append(json.length() > 1 ? "," : "").append("\n  {")
+            .append("\"scenario\": \"").append(scenario).append("\", ")
+            .append("\"mode\": \"").append(mode).append("\", ")
+            .append("\"forks\": ").append(forks);
+        if (scenario == Scenario.SYNTHETIC) {
+          json.append(", \"bindings\": ").append(bindings);
+        }
+        json.append(",\n   \"timeToFirstInstanceNanos\": ").append(statistics(samples[0]))
+            .append(",\n   \"uptimeMillis\": ").append(statistics(samples[1]))
+            .append(",\n   \"classesLoaded\": ").append(statistics(samples[2]))
+            .append("}");
+      }
+    }
+    json.append("\n]\n");
+
+    if (output != null) {
+      Writer writer = new OutputStreamWriter(new FileOutputStream(output), "UTF-8");
+      try {
+        writer.write(json.toString());
+      } finally {
+        writer.close();
+      }
+    } else {
+      System.out.print(json);
+    }
+  }
+
+  /**
+   * Runs {@code scenario} in a new JVM and returns its time to first instance,
+   * uptime and classes loaded.
+   */
+  private static long[] fork(Scenario scenario, AdapterMode mode, int bindings,
+      List<String> jvmArgs) throws IOException, InterruptedException {
+    List<String> command = new ArrayList<String>();
+    command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+    command.addAll(jvmArgs);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(Fork.class.getName());
+    command.add(scenario.name());
+    command.add(mode.name());
+    command.add(Integer.toString(bindings));
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+    String result = null;
+    StringBuilder transcript = new StringBuilder();
+    for (String line; (line = reader.readLine()) != null;) {
+      transcript.append(line).append('\n');
+      if (line.startsWith(Fork.RESULT_PREFIX)) {
+        result = line.substring(Fork.RESULT_PREFIX.length());
+      }
+    }
+    if (process.waitFor() != 0 || result == null) {
+      throw new IllegalStateException("Fork of " + scenario + " " + mode + " failed:\n"
+          + transcript);
+    }
+    String[] parts = result.split(" ");
+    long[] sample = new long[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      sample[i] = Long.parseLong(parts[i]);
+    }
+    return sample;
+  }
+
+  static String statistics(long[] samples) {
+    long[] sorted = samples.clone();
+    Arrays.sort(sorted);
+    return "{\"min\": " + sorted[0] + ", \"median\": " + median(samples)
+        + ", \"max\": " + sorted[sorted.length - 1] + "}";
+  }
+
+  static long median(long[] samples) {
+    long[] sorted = samples.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+
+  /** The main class of each forked JVM. Prints a single line of results. */
+  static final class Fork {
+    static final String RESULT_PREFIX = "cold-start: ";
+
+    private Fork() {
+    }
+
+    public static void main(String... args) throws IOException {
+      Scenario scenario = Scenario.valueOf(args[0]);
+      AdapterMode mode = AdapterMode.valueOf(args[1]);
+      int bindings = Integer.parseInt(args[2]);
+      scenario.prepare(mode, bindings);
+
+      // Load the management classes first so that they aren't counted.
+      int classesBefore = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+      long start = System.nanoTime();
+      if (scenario.firstInstance(mode, bindings) == null) {
+        throw new AssertionError(scenario + " returned null");
+      }
+      long elapsed = System.nanoTime() - start;
+      long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+      int classesLoaded =
+          ManagementFactory.getClassLoadingMXBean().getLoadedClassCount() - classesBefore;
+      System.out.println(RESULT_PREFIX + elapsed + " " + uptime + " " + classesLoaded);
+    }
+  }
+}
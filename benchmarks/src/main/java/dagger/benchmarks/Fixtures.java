@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.Lazy;
+import dagger.Module;
+import dagger.Provides;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import static dagger.Provides.Type.SET;
+
+/**
+ * Object graphs to benchmark. These are compiled with the annotation
+ * processors, so each has generated adapters for {@link AdapterMode#GENERATED}.
+ */
+final class Fixtures {
+  private Fixtures() {
+  }
+
+  /** The module of the coffee example, which is package-private. */
+  static final Class<?> DRIP_COFFEE_MODULE = coffeeModule();
+
+  private static Class<?> coffeeModule() {
+    try {
+      return Class.forName("coffee.DripCoffeeModule");
+    } catch (ClassNotFoundException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  static class Engine {
+    @Inject Engine() {
+    }
+  }
+
+  @Singleton
+  static class Config {
+    @Inject Config() {
+    }
+  }
+
+  static class Wheels {
+    final Config config;
+
+    @Inject Wheels(Config config) {
+      this.config = config;
+    }
+  }
+
+  static class Car {
+    @Inject Engine engine;
+    @Inject Wheels wheels;
+    @Inject Config config;
+  }
+
+  static class Plugins {
+    @Inject Set<String> names;
+  }
+
+  static class LazyConfig {
+    @Inject Lazy<Config> config;
+  }
+
+  static class EngineFactory {
+    @Inject Provider<Engine> engines;
+  }
+
+  @Module(injects = {
+      Car.class, Config.class, Plugins.class, LazyConfig.class, EngineFactory.class
+  })
+  static class CarModule {
+    @Provides(type = SET) String provideNavigation() {
+      return "navigation";
+    }
+
+    @Provides(type = SET) String provideRadio() {
+      return "radio";
+    }
+
+    @Provides(type = SET) String provideHeatedSeats() {
+      return "heated seats";
+    }
+  }
+
+  static class Driver {
+    @Inject Car car;
+  }
+
+  @Module(addsTo = CarModule.class, injects = Driver.class)
+  static class DriverModule {
+  }
+}
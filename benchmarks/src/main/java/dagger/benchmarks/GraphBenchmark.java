@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import coffee.CoffeeApp;
+import dagger.ObjectGraph;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building graphs: loading module adapters, extending graphs with
+ * {@code plus()}, and linking every binding with {@code validate()}. Each
+ * operation starts from a new graph, so none of the work is cached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class GraphBenchmark {
+  @Param({ "GENERATED", "REFLECTIVE" })
+  public AdapterMode mode;
+
+  private ObjectGraph carGraph;
+
+  @Setup public void setUp() {
+    carGraph = mode.create(new Fixtures.CarModule());
+  }
+
+  @Benchmark public ObjectGraph createCoffee() {
+    return mode.create(Fixtures.DRIP_COFFEE_MODULE);
+  }
+
+  @Benchmark public ObjectGraph createCar() {
+    return mode.create(new Fixtures.CarModule());
+  }
+
+  /** Subtract {@link #createCoffee} to get the cost of validation. */
+  @Benchmark public ObjectGraph createAndValidateCoffee() {
+    ObjectGraph graph = mode.create(Fixtures.DRIP_COFFEE_MODULE);
+    graph.validate();
+    return graph;
+  }
+
+  /** Subtract {@link #createCar} to get the cost of validation. */
+  @Benchmark public ObjectGraph createAndValidateCar() {
+    ObjectGraph graph = mode.create(new Fixtures.CarModule());
+    graph.validate();
+    return graph;
+  }
+
+  @Benchmark public ObjectGraph plus() {
+    return carGraph.plus(new Fixtures.DriverModule());
+  }
+
+  /** The first {@code get()} of a graph, which links the requested binding. */
+  @Benchmark public CoffeeApp createAndGetCoffee() {
+    return mode.create(Fixtures.DRIP_COFFEE_MODULE).get(CoffeeApp.class);
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Writes the sources of a synthetic application whose object graph has
+ * approximately a given number of bindings. The graph is a hierarchy of
+ * {@code levels} graphs, each created from its parent with {@code plus()}.
+ *
+ * <p>Each level is a package {@code synthetic.l<level>} of {@code @Inject}
+ * classes named {@code C<n>}. Each class depends on {@code fanOut} classes of
+ * its own level or of an ancestor level, some through {@code Provider},
+ * {@code Lazy} or a {@code @Named} qualifier. Dependencies are arranged so that
+ * the longest dependency chain is about {@code depth} classes, and every class
+ * is reachable from the level's {@code Entry} class. Some classes are
+ * contributed to a set, which {@code Entry} also injects. The level's
+ * {@code Probe} class depends only on classes without dependencies, so getting
+ * it is cheap regardless of the graph's size. Its {@code NamedProbe} class
+ * depends on {@code @Named} bindings of such classes, so getting it also calls
+ * {@code @Provides} methods.
+ *
+ * <p>Generation is deterministic for a given shape and seed.
+ */
+final class GraphGenerator {
+  /** One in this many classes is also bound with a {@code @Named} qualifier. */
+  private static final int QUALIFIED_EVERY = 16;
+  /** One in this many classes is contributed to its level's set. */
+  private static final int SET_CONTRIBUTOR_EVERY = 8;
+  /** One in this many classes uses field injection instead of constructor injection. */
+  private static final int FIELD_INJECTED_EVERY = 4;
+  /** The entry and probe classes' provides and members bindings, and the root's provider. */
+  private static final int ENTRY_BINDINGS = 7;
+  /** Changes with the generated sources, so that classes cached by older runs aren't reused. */
+  private static final int VERSION = 2;
+  /** Keeps each generated module adapter's methods under the class file's size limits. */
+  private static final int PROVIDES_PER_MODULE = 500;
+
+  final int bindings;
+  final int fanOut;
+  final int depth;
+  final int levels;
+  final double singletonRatio;
+  final long seed;
+
+  GraphGenerator(int bindings, int fanOut, int depth, int levels, double singletonRatio,
+      long seed) {
+    if (levels < 1) {
+      throw new IllegalArgumentException("levels < 1: " + levels);
+    }
+    if (bindings < levels * 32) {
+      throw new IllegalArgumentException("bindings < 32 per level: " + bindings);
+    }
+    if (fanOut < 1) {
+      throw new IllegalArgumentException("fanOut < 1: " + fanOut);
+    }
+    if (depth < 1) {
+      throw new IllegalArgumentException("depth < 1: " + depth);
+    }
+    if (singletonRatio < 0 || singletonRatio > 1) {
+      throw new IllegalArgumentException("singletonRatio: " + singletonRatio);
+    }
+    this.bindings = bindings;
+    this.fanOut = fanOut;
+    this.depth = depth;
+    this.levels = levels;
+    this.singletonRatio = singletonRatio;
+    this.seed = seed;
+  }
+
+  /** Returns a name that identifies this shape, suitable for a directory name. */
+  String name() {
+    return String.format(Locale.US, "v%d-b%d-f%d-d%d-l%d-s%.2f-r%d",
+        VERSION, bindings, fanOut, depth, levels, singletonRatio, seed);
+  }
+
+  static String moduleName(int level) {
+    return packageName(level) + ".LevelModule";
+  }
+
+  static String entryName(int level) {
+    return packageName(level) + ".Entry";
+  }
+
+  static String probeName(int level) {
+    return packageName(level) + ".Probe";
+  }
+
+  static String namedProbeName(int level) {
+    return packageName(level) + ".NamedProbe";
+  }
+
+  private static String packageName(int level) {
+    return "synthetic.l" + level;
+  }
+
+  /** Returns the source of each generated class, keyed by class name. */
+  Map<String, String> generate() {
+    Random random = new Random(seed);
+    Map<String, String> sources = new LinkedHashMap<String, String>();
+    List<Integer> classCounts = new ArrayList<Integer>();
+    for (int level = 0; level < levels; level++) {
+      new LevelWriter(level, random, sources, classCounts).write();
+    }
+    return sources;
+  }
+
+  /** Writes the classes and modules of a single level. */
+  private final class LevelWriter {
+    private final int level;
+    private final Random random;
+    private final Map<String, String> sources;
+    /** The number of classes in each ancestor level. This level's count is added when done. */
+    private final List<Integer> classCounts;
+    private final List<String> provides = new ArrayList<String>();
+    /** The keys of the bindings that this level's graph will have, to meet the budget. */
+    private final Set<String> keys = new HashSet<String>();
+    private int classCount;
+
+    LevelWriter(int level, Random random, Map<String, String> sources, List<Integer> classCounts) {
+      this.level = level;
+      this.random = random;
+      this.sources = sources;
+      this.classCounts = classCounts;
+    }
+
+    void write() {
+      // Besides its own binding, a class may add a qualified binding, a set
+      // contribution, and Provider and Lazy bindings for its dependencies.
+      int budget = bindings / levels;
+      double bindingsPerClass = 1.0 + 1.0 / QUALIFIED_EVERY + 1.0 / SET_CONTRIBUTOR_EVERY
+          + (fanOut - 1) / 4.0;
+      int leaves = Math.max(1, (int) (budget / bindingsPerClass / depth));
+      int aggregateFanOut = Math.max(2, fanOut);
+
+      // Classes that nothing depends on yet. Each new class depends on the oldest
+      // of these, so chains grow to about 'depth' classes and all stay reachable.
+      Deque<Integer> undepended = new ArrayDeque<Integer>();
+      for (int i = 0; i < leaves; i++) {
+        writeClass(new ArrayList<String>());
+        undepended.add(i);
+      }
+      while (keys.size() + aggregators(undepended.size(), aggregateFanOut) + ENTRY_BINDINGS
+          < budget) {
+        List<String> dependencies = new ArrayList<String>();
+        dependencies.add(className(level, undepended.remove()));
+        while (dependencies.size() < fanOut) {
+          dependencies.add(randomDependency());
+        }
+        undepended.add(writeClass(dependencies));
+      }
+      // Aggregate the remaining classes into a single root.
+      while (undepended.size() > 1) {
+        List<String> dependencies = new ArrayList<String>();
+        while (dependencies.size() < aggregateFanOut && !undepended.isEmpty()) {
+          dependencies.add(className(level, undepended.remove()));
+        }
+        undepended.add(writeClass(dependencies));
+      }
+      writeEntry(className(level, undepended.remove()));
+      writeProbe(leaves);
+      writeNamedProbe(leaves);
+      writeModules();
+      classCounts.add(classCount);
+    }
+
+    /** Returns the number of classes needed to aggregate {@code count} classes into one. */
+    private int aggregators(int count, int aggregateFanOut) {
+      return (count - 1 + aggregateFanOut - 2) / (aggregateFanOut - 1);
+    }
+
+    /** Writes the next class, which depends on {@code dependencies}, and returns its index. */
+    private int writeClass(List<String> dependencies) {
+      int index = classCount++;
+      String simpleName = "C" + index;
+      StringBuilder source = new StringBuilder();
+      source.append("package ").append(packageName(level)).append(";\n\n");
+      if (random.nextDouble() < singletonRatio) {
+        source.append("@javax.inject.Singleton\n");
+      }
+      source.append("public final class ").append(simpleName).append(" {\n");
+      if (index % FIELD_INJECTED_EVERY == FIELD_INJECTED_EVERY - 1) {
+        for (int i = 0; i < dependencies.size(); i++) {
+          source.append("  @javax.inject.Inject ").append(dependencies.get(i))
+              .append(" d").append(i).append(";\n");
+        }
+        source.append("\n  @javax.inject.Inject public ").append(simpleName).append("() {\n  }\n");
+      } else {
+        source.append("  @javax.inject.Inject public ").append(simpleName).append("(");
+        for (int i = 0; i < dependencies.size(); i++) {
+          source.append(i > 0 ? ", " : "").append(dependencies.get(i)).append(" d").append(i);
+        }
+        source.append(") {\n  }\n");
+      }
+      source.append("}\n");
+      sources.put(className(level, index), source.toString());
+
+      String type = className(level, index);
+      keys.add(type);
+      if (index % QUALIFIED_EVERY == 0) {
+        keys.add("@" + type);
+        provides.add("  @dagger.Provides @javax.inject.Named(\"" + type + "\") "
+            + type + " provideNamed" + simpleName + "(" + type + " value) {\n"
+            + "    return value;\n"
+            + "  }\n");
+      }
+      if (index % SET_CONTRIBUTOR_EVERY == 0) {
+        keys.add("Set");
+        provides.add("  @dagger.Provides(type = dagger.Provides.Type.SET)"
+            + " @javax.inject.Named(\"" + packageName(level) + "\") Object contribute"
+            + simpleName + "(" + type + " value) {\n"
+            + "    return value;\n"
+            + "  }\n");
+      }
+      return index;
+    }
+
+    /** Returns a dependency on an earlier class of this level or of an ancestor level. */
+    private String randomDependency() {
+      int targetLevel = level;
+      if (level > 0 && random.nextInt(5) == 0) {
+        targetLevel = random.nextInt(level);
+      }
+      int count = targetLevel == level ? classCount : classCounts.get(targetLevel);
+      int index = random.nextInt(count);
+      String type = className(targetLevel, index);
+      switch (random.nextInt(8)) {
+        case 0:
+          type = "javax.inject.Provider<" + type + ">";
+          keys.add(type);
+          return type;
+        case 1:
+          type = "dagger.Lazy<" + type + ">";
+          keys.add(type);
+          return type;
+        case 2:
+          index -= index % QUALIFIED_EVERY;
+          return "@javax.inject.Named(\"" + className(targetLevel, index) + "\") "
+              + className(targetLevel, index);
+        default:
+          return type;
+      }
+    }
+
+    private void writeEntry(String root) {
+      sources.put(entryName(level), "package " + packageName(level) + ";\n"
+          + "\n"
+          + "public final class Entry {\n"
+          + "  @javax.inject.Inject javax.inject.Provider<" + root + "> root;\n"
+          + "  @javax.inject.Inject @javax.inject.Named(\"" + packageName(level) + "\")"
+          + " java.util.Set<Object> contributions;\n"
+          + "}\n");
+    }
+
+    private void writeProbe(int leaves) {
+      StringBuilder source = new StringBuilder();
+      source.append("package ").append(packageName(level)).append(";\n\n")
+          .append("public final class Probe {\n")
+          .append("  @javax.inject.Inject public Probe(");
+      for (int i = 0; i < fanOut; i++) {
+        source.append(i > 0 ? ", " : "").append(className(level, random.nextInt(leaves)))
+            .append(" d").append(i);
+      }
+      source.append(") {\n  }\n}\n");
+      sources.put(probeName(level), source.toString());
+    }
+
+    /** Writes a class that depends on the qualified bindings of the first leaves. */
+    private void writeNamedProbe(int leaves) {
+      int qualifiedLeaves = (leaves - 1) / QUALIFIED_EVERY + 1;
+      StringBuilder source = new StringBuilder();
+      source.append("package ").append(packageName(level)).append(";\n\n")
+          .append("public final class NamedProbe {\n")
+          .append("  @javax.inject.Inject public NamedProbe(");
+      for (int i = 0; i < fanOut; i++) {
+        String type = className(level, (i % qualifiedLeaves) * QUALIFIED_EVERY);
+        source.append(i > 0 ? ", " : "").append("@javax.inject.Named(\"").append(type)
+            .append("\") ").append(type).append(" d").append(i);
+      }
+      source.append(") {\n  }\n}\n");
+      sources.put(namedProbeName(level), source.toString());
+    }
+
+    /**
+     * Writes the level's module, which includes a library module for each
+     * chunk of provides methods.
+     */
+    private void writeModules() {
+      StringBuilder includes = new StringBuilder();
+      for (int m = 0; m * PROVIDES_PER_MODULE < provides.size(); m++) {
+        String name = packageName(level) + ".Provides" + m;
+        includes.append(m > 0 ? ", " : "").append(name).append(".class");
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(packageName(level)).append(";\n\n")
+            .append("@dagger.Module(complete = false, library = true)\n")
+            .append("public final class Provides").append(m).append(" {\n");
+        int end = Math.min(provides.size(), (m + 1) * PROVIDES_PER_MODULE);
+        for (int i = m * PROVIDES_PER_MODULE; i < end; i++) {
+          source.append(provides.get(i));
+        }
+        source.append("}\n");
+        sources.put(name, source.toString());
+      }
+
+      StringBuilder source = new StringBuilder();
+      source.append("package ").append(packageName(level)).append(";\n\n")
+          .append("@dagger.Module(\n")
+          .append("    injects = { Entry.class, Probe.class, NamedProbe.class },\n");
+      if (level > 0) {
+        source.append("    addsTo = ").append(moduleName(level - 1)).append(".class,\n");
+      }
+      source.append("    includes = { ").append(includes).append(" }\n")
+          .append(")\n")
+          .append("public final class LevelModule {\n")
+          .append("}\n");
+      sources.put(moduleName(level), source.toString());
+    }
+  }
+
+  private static String className(int level, int index) {
+    return packageName(level) + ".C" + index;
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.ObjectGraph;
+import dagger.internal.codegen.GraphAnalysisProcessor;
+import dagger.internal.codegen.InjectAdapterProcessor;
+import dagger.internal.codegen.ModuleAdapterProcessor;
+import dagger.internal.codegen.ValidationProcessor;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.inject.Inject;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Runs javac in this JVM with all of Dagger's annotation processors over the
+ * sources written by a {@link GraphGenerator}, and reports the wall time and
+ * allocation of each processor in each round. The results are written as JSON.
+ *
+ * <pre>
+ *   java -cp benchmarks.jar dagger.benchmarks.ProcessorBenchmark \
+ *       [--bindings 2000] [--levels 3] [--warmups 3] [--iterations 10] \
+ *       [--option dagger.graphAnalysisThreads=4] [--output processors.json]
+ * </pre>
+ *
+ * <p>Every level of the synthetic graph has a complete module, so graph
+ * analysis checks one root module per level. The first processor to look at a
+ * round also scans its elements for the others, so that time is counted
+ * against it. Allocation is measured on the compiler's thread only; work that
+ * {@code GraphAnalysisProcessor} hands to other threads isn't included.
+ */
+public final class ProcessorBenchmark {
+  private ProcessorBenchmark() {
+  }
+
+  public static void main(String... args) throws Exception {
+    int bindings = 2000;
+    int levels = 3;
+    int warmups = 3;
+    int iterations = 10;
+    List<String> options = new ArrayList<String>();
+    File output = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--bindings")) {
+        bindings = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--levels")) {
+        levels = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--warmups")) {
+        warmups = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--iterations")) {
+        iterations = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--option")) {
+        options.add("-A" + args[++i]);
+      } else if (args[i].equals("--output")) {
+        output = new File(args[++i]);
+      } else {
+        throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+      }
+    }
+
+    GraphGenerator generator = new GraphGenerator(bindings, 4, 10, levels, 0.25, 1L);
+    File root = new File(System.getProperty("java.io.tmpdir"),
+        "dagger-benchmarks/" + generator.name() + "-processors");
+    deleteRecursively(root);
+    List<File> sources = SyntheticGraph.writeSources(generator, new File(root, "src"));
+
+    for (int i = 0; i < warmups; i++) {
+      compile(sources, new File(root, "out"), options);
+    }
+    List<Compilation> compilations = new ArrayList<Compilation>();
+    for (int i = 0; i < iterations; i++) {
+      compilations.add(compile(sources, new File(root, "out"), options));
+    }
+
+    StringBuilder json = new StringBuilder();
+    json.append("{\"bindings\": ").append(bindings)
+        .append(", \"levels\": ").append(levels)
+        .append(", \"sources\": ").append(sources.size())
+        .append(", \"iterations\": ").append(iterations)
+        .append(",\n \"options\": [");
+    for (int i = 0; i < options.size(); i++) {
+      json.append(i > 0 ? ", " : "").append('"').append(options.get(i)).append('"');
+    }
+    long[] javacNanos = new long[iterations];
+    long[] javacBytes = new long[iterations];
+    for (int i = 0; i < iterations; i++) {
+      javacNanos[i] = compilations.get(i).nanos;
+      javacBytes[i] = compilations.get(i).allocatedBytes;
+    }
+    json.append("],\n \"javac\": {").append(measurement(javacNanos, javacBytes))
+        .append("},\n \"processors\": [");
+    report("javac", "total", javacNanos, javacBytes);
+
+    int rounds = 0;
+    for (Compilation compilation : compilations) {
+      for (TimedProcessor processor : compilation.processors) {
+        rounds = Math.max(rounds, processor.roundNanos.size());
+      }
+    }
+    List<TimedProcessor> first = compilations.get(0).processors;
+    for (int p = 0; p < first.size(); p++) {
+      String name = first.get(p).name;
+      long[] nanos = new long[iterations];
+      long[] bytes = new long[iterations];
+      long[][] roundNanos = new long[rounds][iterations];
+      long[][] roundBytes = new long[rounds][iterations];
+      for (int i = 0; i < iterations; i++) {
+        TimedProcessor processor = compilations.get(i).processors.get(p);
+        nanos[i] = processor.initNanos;
+        bytes[i] = processor.initBytes;
+        for (int r = 0; r < processor.roundNanos.size(); r++) {
+          roundNanos[r][i] = processor.roundNanos.get(r);
+          roundBytes[r][i] = processor.roundBytes.get(r);
+          nanos[i] += roundNanos[r][i];
+          bytes[i] += roundBytes[r][i];
+        }
+      }
+      report(name, "total", nanos, bytes);
+      json.append(p > 0 ? "," : "").append("\n  {\"processor\": \"").append(name)
+          .append("\", ").append(measurement(nanos, bytes)).append(",\n   \"rounds\": [");
+      for (int r = 0; r < rounds; r++) {
+        report(name, "round " + (r + 1), roundNanos[r], roundBytes[r]);
+        json.append(r > 0 ? "," : "").append("\n    {\"round\": ").append(r + 1).append(", ")
+            .append(measurement(roundNanos[r], roundBytes[r])).append("}");
+      }
+      json.append("]}");
+    }
+    json.append("\n]}\n");
+
+    if (output != null) {
+      Writer writer = new OutputStreamWriter(new FileOutputStream(output), "UTF-8");
+      try {
+        writer.write(json.toString());
+      } finally {
+        writer.close();
+      }
+    } else {
+      System.out.print(json);
+    }
+  }
+
+  /** Compiles {@code sources} into a fresh {@code outputDir} with timed processors. */
+  private static Compilation compile(List<File> sources, File outputDir, List<String> options)
+      throws IOException {
+    deleteRecursively(outputDir);
+    File classesDir = new File(outputDir, "classes");
+    File generatedDir = new File(outputDir, "generated");
+    classesDir.mkdirs();
+    generatedDir.mkdirs();
+
+    Map<RoundEnvironment, Integer> rounds = new IdentityHashMap<RoundEnvironment, Integer>();
+    List<TimedProcessor> processors = new ArrayList<TimedProcessor>();
+    processors.add(new TimedProcessor(new ValidationProcessor(), rounds));
+    processors.add(new TimedProcessor(new InjectAdapterProcessor(), rounds));
+    processors.add(new TimedProcessor(new ModuleAdapterProcessor(), rounds));
+    processors.add(new TimedProcessor(new GraphAnalysisProcessor(), rounds));
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException("Running the annotation processors requires a JDK.");
+    }
+    List<String> javacOptions = new ArrayList<String>();
+    javacOptions.add("-nowarn");
+    javacOptions.addAll(options);
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+    try {
+      fileManager.setLocation(StandardLocation.CLASS_PATH, Arrays.asList(
+          SyntheticGraph.codeSource(ObjectGraph.class), SyntheticGraph.codeSource(Inject.class)));
+      fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(classesDir));
+      fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Arrays.asList(generatedDir));
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+          javacOptions, null, fileManager.getJavaFileObjectsFromFiles(sources));
+      task.setProcessors(processors);
+      long bytesBefore = allocatedBytes();
+      long start = System.nanoTime();
+      boolean success = task.call();
+      long nanos = System.nanoTime() - start;
+      long allocatedBytes = allocatedBytes() - bytesBefore;
+      if (!success) {
+        throw new IllegalStateException("Compilation failed: " + diagnostics.getDiagnostics());
+      }
+      return new Compilation(nanos, allocatedBytes, processors);
+    } finally {
+      fileManager.close();
+    }
+  }
+
+  private static void report(String processor, String phase, long[] nanos, long[] bytes) {
+    System.err.println(String.format(Locale.US, "%-24s %-8s %10.2f ms %10.2f MiB allocated",
+        processor, phase, ColdStart.median(nanos) / 1e6, ColdStart.median(bytes) / 1048576.0));
+  }
+
+  private static String measurement(long[] nanos, long[] bytes) {
+    return "\"nanos\": " + ColdStart.statistics(nanos)
+        + ", \"allocatedBytes\": " + ColdStart.statistics(bytes);
+  }
+
+  /**
+   * Returns the bytes allocated so far by the current thread, or 0 if the JVM
+   * doesn't measure allocation.
+   */
+  private static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return 0;
+    }
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+    if (!allocations.isThreadAllocatedMemorySupported()
+        || !allocations.isThreadAllocatedMemoryEnabled()) {
+      return 0;
+    }
+    return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static void deleteRecursively(File file) throws IOException {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Could not delete " + file);
+    }
+  }
+
+  /** The measurements of one run of javac. */
+  private static final class Compilation {
+    final long nanos;
+    final long allocatedBytes;
+    final List<TimedProcessor> processors;
+
+    Compilation(long nanos, long allocatedBytes, List<TimedProcessor> processors) {
+      this.nanos = nanos;
+      this.allocatedBytes = allocatedBytes;
+      this.processors = processors;
+    }
+  }
+
+  /**
+   * Delegates to a processor and records the time and allocation of its
+   * {@code init()} and of its {@code process()} in each round. Rounds are
+   * numbered by the processors that share {@code rounds}, in the order that
+   * javac presents them.
+   */
+  private static final class TimedProcessor implements Processor {
+    final String name;
+    private final Processor delegate;
+    private final Map<RoundEnvironment, Integer> rounds;
+    long initNanos;
+    long initBytes;
+    /** Time spent in each round, indexed by round. Zero for rounds the processor skipped. */
+    final List<Long> roundNanos = new ArrayList<Long>();
+    final List<Long> roundBytes = new ArrayList<Long>();
+
+    TimedProcessor(Processor delegate, Map<RoundEnvironment, Integer> rounds) {
+      this.name = delegate.getClass().getSimpleName();
+      this.delegate = delegate;
+      this.rounds = rounds;
+    }
+
+    @Override public Set<String> getSupportedOptions() {
+      return delegate.getSupportedOptions();
+    }
+
+    @Override public Set<String> getSupportedAnnotationTypes() {
+      return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override public SourceVersion getSupportedSourceVersion() {
+      return delegate.getSupportedSourceVersion();
+    }
+
+    @Override public void init(ProcessingEnvironment processingEnv) {
+      long bytesBefore = allocatedBytes();
+      long start = System.nanoTime();
+      delegate.init(processingEnv);
+      initNanos = System.nanoTime() - start;
+      initBytes = allocatedBytes() - bytesBefore;
+    }
+
+    @Override public boolean process(Set<? extends TypeElement> annotations,
+        RoundEnvironment roundEnv) {
+      Integer round = rounds.get(roundEnv);
+      if (round == null) {
+        round = rounds.size();
+        rounds.put(roundEnv, round);
+      }
+      while (roundNanos.size() <= round) {
+        roundNanos.add(0L);
+        roundBytes.add(0L);
+      }
+      long bytesBefore = allocatedBytes();
+      long start = System.nanoTime();
+      boolean result = delegate.process(annotations, roundEnv);
+      roundNanos.set(round, roundNanos.get(round) + System.nanoTime() - start);
+      roundBytes.set(round, roundBytes.get(round) + allocatedBytes() - bytesBefore);
+      return result;
+    }
+
+    @Override public Iterable<? extends Completion> getCompletions(Element element,
+        AnnotationMirror annotation, ExecutableElement member, String userText) {
+      return delegate.getCompletions(element, annotation, member, userText);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import coffee.CoffeeApp;
+import dagger.ObjectGraph;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures provisioning from graphs whose bindings are already linked, which
+ * is the steady state of a running application.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ProvisionBenchmark {
+  private static final int BATCH = 1000;
+
+  @Param({ "GENERATED", "REFLECTIVE" })
+  public AdapterMode mode;
+
+  /** Whether to fold the singletons into their dependents once they exist. */
+  @Param({ "false", "true" })
+  public boolean foldSingletons;
+
+  private ObjectGraph coffeeGraph;
+  private ObjectGraph carGraph;
+  private Fixtures.LazyConfig lazyConfig;
+  private Fixtures.EngineFactory engineFactory;
+  private final Fixtures.Car[] cars = new Fixtures.Car[BATCH];
+
+  @Setup public void setUp() {
+    coffeeGraph = mode.create(Fixtures.DRIP_COFFEE_MODULE);
+    coffeeGraph.validate();
+    carGraph = mode.create(new Fixtures.CarModule());
+    carGraph.validate();
+    lazyConfig = carGraph.get(Fixtures.LazyConfig.class);
+    engineFactory = carGraph.get(Fixtures.EngineFactory.class);
+    for (int i = 0; i < cars.length; i++) {
+      cars[i] = new Fixtures.Car();
+    }
+    if (foldSingletons) {
+      coffeeGraph.get(CoffeeApp.class);
+      carGraph.get(Fixtures.Car.class);
+      coffeeGraph.foldSingletons();
+      carGraph.foldSingletons();
+    }
+  }
+
+  @Benchmark public CoffeeApp getCoffee() {
+    return coffeeGraph.get(CoffeeApp.class);
+  }
+
+  @Benchmark public Fixtures.Car getCar() {
+    return carGraph.get(Fixtures.Car.class);
+  }
+
+  @Benchmark public Fixtures.Car injectCar() {
+    return carGraph.inject(new Fixtures.Car());
+  }
+
+  /** Injects a batch of cars with a call to {@code inject()} for each. */
+  @Benchmark @OperationsPerInvocation(BATCH) public Fixtures.Car[] injectCars() {
+    for (Fixtures.Car car : cars) {
+      carGraph.inject(car);
+    }
+    return cars;
+  }
+
+  /** Injects the same batch with one call, which looks up the members injector once. */
+  @Benchmark @OperationsPerInvocation(BATCH) public Fixtures.Car[] injectAllCars() {
+    carGraph.injectAll(cars, null);
+    return cars;
+  }
+
+  /** Provides a set with three contributions, plus a trivial members injection. */
+  @Benchmark public Set<String> getSet() {
+    return carGraph.get(Fixtures.Plugins.class).names;
+  }
+
+  /** Gets a lazy whose value was already computed. */
+  @Benchmark public Fixtures.Config lazyGet() {
+    return lazyConfig.config.get();
+  }
+
+  @Benchmark public Fixtures.Engine providerGet() {
+    return engineFactory.engines.get();
+  }
+}
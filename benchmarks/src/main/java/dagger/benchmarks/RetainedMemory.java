@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.ObjectGraph;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Locale;
+
+/**
+ * Prints the heap retained by linked and validated graphs written by {@link
+ * GraphGenerator}, as comma-separated values. Each argument is a number of
+ * bindings to measure; graphs have the default shape of {@link
+ * ScalingBenchmark}. Each graph is measured once validated, and again once
+ * validated and {@linkplain ObjectGraph#seal sealed}. Run this with a fixed
+ * heap size, like {@code -Xms4g -Xmx4g}, so that collections are complete.
+ */
+public final class RetainedMemory {
+  /** Keeps the measured graphs reachable until the heap has been measured. */
+  private static Object retained;
+
+  private RetainedMemory() {
+  }
+
+  public static void main(String... args) throws IOException {
+    System.out.println("mode,requestedBindings,bindings,retainedBytes,bytesPerBinding,"
+        + "sealedBytes,sealedBytesPerBinding");
+    for (AdapterMode mode : AdapterMode.values()) {
+      for (String arg : args) {
+        GraphGenerator generator = new GraphGenerator(Integer.parseInt(arg), 4, 10, 3, 0.25, 1L);
+        SyntheticGraph graph = SyntheticGraph.compile(generator, mode);
+        int bindings = graph.countBindings();
+        long retained = measure(graph, false);
+        long sealed = measure(graph, true);
+        System.out.println(String.format(Locale.US, "%s,%d,%d,%d,%.1f,%d,%.1f", mode,
+            generator.bindings, bindings, retained, (double) retained / bindings,
+            sealed, (double) sealed / bindings));
+      }
+    }
+  }
+
+  /**
+   * Returns the heap retained by a validated hierarchy of {@code graph}, whose
+   * graphs are sealed if {@code seal} is true.
+   */
+  static long measure(SyntheticGraph graph, boolean seal) {
+    // Load the classes and warm up before taking the baseline.
+    validate(graph.create(null), seal);
+    long before = usedHeap();
+    ObjectGraph[] graphs = graph.create(null);
+    validate(graphs, seal);
+    retained = graphs;
+    long after = usedHeap();
+    retained = null;
+    return after - before;
+  }
+
+  private static void validate(ObjectGraph[] graphs, boolean seal) {
+    for (ObjectGraph graph : graphs) {
+      graph.validate();
+      if (seal) {
+        graph.seal();
+      }
+    }
+  }
+
+  private static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+      System.runFinalization();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.ObjectGraph;
+import dagger.internal.ValidationCache;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how linking, validation and {@code get()} scale with the number of
+ * bindings, using graphs written by {@link GraphGenerator}. The generated
+ * classes are compiled when a trial starts, or reused from an earlier run.
+ * Use {@link RetainedMemory} for the memory used per binding.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ScalingBenchmark {
+  @Param({ "2000", "5000", "10000", "20000", "50000" })
+  public int bindings;
+
+  @Param({ "4" })
+  public int fanOut;
+
+  @Param({ "10" })
+  public int depth;
+
+  @Param({ "3" })
+  public int levels;
+
+  @Param({ "0.25" })
+  public double singletonRatio;
+
+  @Param
+  public AdapterMode mode;
+
+  private SyntheticGraph graph;
+  private ObjectGraph leafGraph;
+  private Class<?> probe;
+  private Class<?> namedProbe;
+
+  @Setup public void setUp() throws IOException {
+    graph = SyntheticGraph.compile(
+        new GraphGenerator(bindings, fanOut, depth, levels, singletonRatio, 1L), mode);
+    ObjectGraph[] graphs = graph.createAndLink(null);
+    leafGraph = graphs[graphs.length - 1];
+    probe = graph.probeClass(levels - 1);
+    namedProbe = graph.namedProbeClass(levels - 1);
+    leafGraph.get(probe);
+    leafGraph.get(namedProbe);
+  }
+
+  /** Graphs whose entry points are linked, created anew for each validation. */
+  @State(Scope.Thread)
+  public static class LinkedGraphs {
+    ObjectGraph[] graphs;
+
+    @Setup(Level.Invocation) public void setUp(ScalingBenchmark benchmark) {
+      graphs = benchmark.graph.createAndLink(null);
+    }
+  }
+
+  /**
+   * A validation cache in a temporary directory that holds the synthetic
+   * graph's fingerprints, so that validations hit it.
+   */
+  @State(Scope.Benchmark)
+  public static class WarmValidationCache {
+    File directory;
+
+    @Setup public void setUp(ScalingBenchmark benchmark) throws IOException {
+      directory = File.createTempFile("dagger-validation", "");
+      if (!directory.delete() || !directory.mkdir()) {
+        throw new IOException("Couldn't create " + directory);
+      }
+      System.setProperty(ValidationCache.DIRECTORY_PROPERTY, directory.getPath());
+      validateAll(benchmark.graph.create(null));
+    }
+
+    @TearDown public void tearDown() {
+      System.clearProperty(ValidationCache.DIRECTORY_PROPERTY);
+      File[] files = directory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      directory.delete();
+    }
+  }
+
+  /**
+   * Creates the hierarchy of graphs and gets the entry point of each, as an
+   * application would at startup.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 20)
+  public ObjectGraph[] createAndLink() {
+    return graph.createAndLink(null);
+  }
+
+  /** Validates each graph of an already linked hierarchy. */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 20)
+  public ObjectGraph[] validate(LinkedGraphs linkedGraphs) {
+    for (ObjectGraph graph : linkedGraphs.graphs) {
+      graph.validate();
+    }
+    return linkedGraphs.graphs;
+  }
+
+  /**
+   * Creates the hierarchy of graphs and validates each graph, without a
+   * validation cache.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 20)
+  public ObjectGraph[] createAndValidate() {
+    return validateAll(graph.create(null));
+  }
+
+  /**
+   * Creates the hierarchy of graphs and validates each graph, with a
+   * validation cache that an earlier run filled. Compare with {@link
+   * #createAndValidate} for the cost of a cache hit.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 20)
+  public ObjectGraph[] createAndValidateCached(WarmValidationCache cache) {
+    return validateAll(graph.create(null));
+  }
+
+  private static ObjectGraph[] validateAll(ObjectGraph[] graphs) {
+    for (ObjectGraph graph : graphs) {
+      graph.validate();
+    }
+    return graphs;
+  }
+
+  /** Gets a cheap class from the deepest graph of a linked hierarchy. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Warmup(iterations = 5, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public Object get() {
+    return leafGraph.get(probe);
+  }
+
+  /**
+   * Gets a class whose dependencies are provided by {@code @Provides} methods
+   * from the deepest graph. Compare the {@code GENERATED} and {@code SWITCHING}
+   * modes for the cost of selecting the method by its ordinal.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Warmup(iterations = 5, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public Object getProvided() {
+    return leafGraph.get(namedProbe);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.ObjectGraph;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of getting an initialized singleton from one thread
+ * and from as many threads as there are processors, all sharing one graph.
+ * Contention here shows the cost of the graph's locking.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SingletonBenchmark {
+  @Param({ "GENERATED", "REFLECTIVE" })
+  public AdapterMode mode;
+
+  private ObjectGraph graph;
+
+  @Setup public void setUp() {
+    graph = mode.create(new Fixtures.CarModule());
+    graph.validate();
+    graph.get(Fixtures.Config.class);
+  }
+
+  @Benchmark @Threads(1) public Fixtures.Config oneThread() {
+    return graph.get(Fixtures.Config.class);
+  }
+
+  @Benchmark @Threads(Threads.MAX) public Fixtures.Config allThreads() {
+    return graph.get(Fixtures.Config.class);
+  }
+}
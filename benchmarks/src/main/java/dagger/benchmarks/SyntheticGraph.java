@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.GraphListener;
+import dagger.ObjectGraph;
+import dagger.internal.codegen.InjectAdapterProcessor;
+import dagger.internal.codegen.ModuleAdapterProcessor;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.processing.Processor;
+import javax.inject.Inject;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * The classes written by a {@link GraphGenerator}, compiled and loaded into
+ * their own class loader. Compiled classes are kept in the temporary directory
+ * and reused by later runs with the same shape.
+ */
+final class SyntheticGraph {
+  final GraphGenerator generator;
+  private final ClassLoader classLoader;
+
+  private SyntheticGraph(GraphGenerator generator, ClassLoader classLoader) {
+    this.generator = generator;
+    this.classLoader = classLoader;
+  }
+
+  /**
+   * Generates and compiles the classes of {@code generator}. With {@link
+   * AdapterMode#REFLECTIVE} only module adapters are generated, so that every
+   * {@code @Inject} class is bound using reflection. With {@link
+   * AdapterMode#SWITCHING} each module gets a single binding class.
+   */
+  static SyntheticGraph compile(GraphGenerator generator, AdapterMode mode) throws IOException {
+    File root = new File(System.getProperty("java.io.tmpdir"),
+        "dagger-benchmarks/" + generator.name() + "-" + mode.name().toLowerCase(Locale.US));
+    File classesDir = new File(root, "classes");
+    File complete = new File(root, "complete");
+    if (!complete.exists()) {
+      compile(generator, mode, root, classesDir);
+      if (!complete.createNewFile()) {
+        throw new IOException("Could not create " + complete);
+      }
+    }
+    ClassLoader classLoader = new URLClassLoader(
+        new URL[] { classesDir.toURI().toURL() }, SyntheticGraph.class.getClassLoader());
+    return new SyntheticGraph(generator, classLoader);
+  }
+
+  private static void compile(GraphGenerator generator, AdapterMode mode, File root,
+      File classesDir) throws IOException {
+    File sourceDir = new File(root, "src");
+    File generatedDir = new File(root, "generated");
+    classesDir.mkdirs();
+    generatedDir.mkdirs();
+
+    List<File> files = writeSources(generator, sourceDir);
+
+    List<Processor> processors = new ArrayList<Processor>();
+    processors.add(new ModuleAdapterProcessor());
+    if (mode != AdapterMode.REFLECTIVE) {
+      processors.add(new InjectAdapterProcessor());
+    }
+    List<String> options = new ArrayList<String>();
+    options.add("-nowarn");
+    if (mode == AdapterMode.SWITCHING) {
+      options.add("-Adagger.switchingBindings=true");
+    }
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException("Generating graphs requires a JDK.");
+    }
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+    try {
+      fileManager.setLocation(StandardLocation.CLASS_PATH,
+          Arrays.asList(codeSource(ObjectGraph.class), codeSource(Inject.class)));
+      fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(classesDir));
+      fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Arrays.asList(generatedDir));
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+          options, null, fileManager.getJavaFileObjectsFromFiles(files));
+      task.setProcessors(processors);
+      if (!task.call()) {
+        throw new IllegalStateException("Compiling " + generator.name() + " failed: "
+            + diagnostics.getDiagnostics());
+      }
+    } finally {
+      fileManager.close();
+    }
+  }
+
+  /** Writes the sources of {@code generator} to {@code sourceDir} and returns their files. */
+  static List<File> writeSources(GraphGenerator generator, File sourceDir) throws IOException {
+    List<File> files = new ArrayList<File>();
+    for (Map.Entry<String, String> entry : generator.generate().entrySet()) {
+      File file = new File(sourceDir, entry.getKey().replace('.', '/') + ".java");
+      file.getParentFile().mkdirs();
+      Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      try {
+        writer.write(entry.getValue());
+      } finally {
+        writer.close();
+      }
+      files.add(file);
+    }
+    return files;
+  }
+
+  /** Returns the directory or jar that {@code c} was loaded from. */
+  static File codeSource(Class<?> c) {
+    try {
+      return new File(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  int levels() {
+    return generator.levels;
+  }
+
+  Object newModule(int level) {
+    try {
+      return loadClass(GraphGenerator.moduleName(level)).newInstance();
+    } catch (InstantiationException e) {
+      throw new AssertionError(e);
+    } catch (IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  Class<?> entryClass(int level) {
+    return loadClass(GraphGenerator.entryName(level));
+  }
+
+  Class<?> probeClass(int level) {
+    return loadClass(GraphGenerator.probeName(level));
+  }
+
+  Class<?> namedProbeClass(int level) {
+    return loadClass(GraphGenerator.namedProbeName(level));
+  }
+
+  private Class<?> loadClass(String name) {
+    try {
+      return classLoader.loadClass(name);
+    } catch (ClassNotFoundException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Creates the hierarchy of graphs without linking them, except as {@code
+   * plus()} links each parent before creating its child. Returns the graph of
+   * each level.
+   */
+  ObjectGraph[] create(GraphListener listener) {
+    return create(listener, false);
+  }
+
+  /**
+   * Creates the hierarchy of graphs and gets each level's entry point, which
+   * links every binding that an application would use. Returns the graph of
+   * each level.
+   */
+  ObjectGraph[] createAndLink(GraphListener listener) {
+    return create(listener, true);
+  }
+
+  private ObjectGraph[] create(GraphListener listener, boolean getEntries) {
+    ObjectGraph[] result = new ObjectGraph[levels()];
+    for (int level = 0; level < result.length; level++) {
+      Object module = newModule(level);
+      if (level > 0) {
+        result[level] = result[level - 1].plus(module);
+      } else if (listener != null) {
+        result[level] = ObjectGraph.createWith(listener, module);
+      } else {
+        result[level] = ObjectGraph.create(module);
+      }
+      if (getEntries) {
+        result[level].get(entryClass(level));
+      }
+    }
+    return result;
+  }
+
+  /** Returns the number of bindings in the linked graphs of every level. */
+  int countBindings() {
+    BindingCounter counter = new BindingCounter();
+    ObjectGraph[] graphs = create(counter);
+    for (ObjectGraph graph : graphs) {
+      graph.validate();
+    }
+    return counter.count;
+  }
+
+  private static final class BindingCounter extends GraphListener {
+    int count;
+
+    @Override public synchronized void bindingLinked(String key, boolean jit,
+        boolean reflective, long nanos) {
+      count++;
+    }
+  }
+}
@@ -27,12 +27,18 @@ public final class AdapterJavadocs {
   static final String GET_METHOD = ""
       + "Returns the fully provisioned instance satisfying the contract for\n"
       + "{@code Provider<%s>}.";
+  static final String CREATE_METHOD = ""
+      + "Returns the fully provisioned singleton satisfying the contract for\n"
+      + "{@code Provider<%s>}. This is called at most once.";
   static final String GET_DEPENDENCIES_METHOD = ""
       + "Used internally obtain dependency information, such as for cyclical\n"
       + "graph detection.";
   static final String ATTACH_METHOD = ""
       + "Used internally to link bindings/providers together at run time\n"
       + "according to their dependency graph.";
+  static final String NEW_BINDING_METHOD = ""
+      + "Creates the binding of the {@code @Provides} method at {@code ordinal} when\n"
+      + "the graph first needs it.";
   static final String STATIC_INJECT_METHOD = ""
       + "Performs the injections of dependencies into static fields when requested by\n"
       + "the {@code dagger.ObjectGraph}.";
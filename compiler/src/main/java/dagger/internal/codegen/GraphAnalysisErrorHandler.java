@@ -17,28 +17,27 @@ package dagger.internal.codegen;
 
 import dagger.internal.Linker;
 import java.util.List;
-import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.TypeElement;
-import javax.tools.Diagnostic;
 
 /**
- * A {@code Linker.ErrorHandler} which gathers errors and reports them via a processing
- * environment.
+ * A {@code Linker.ErrorHandler} which gathers errors into a report, to print
+ * on the compiler thread once analysis is done.
  */
 final class GraphAnalysisErrorHandler implements Linker.ErrorHandler {
-  private final ProcessingEnvironment processingEnv;
+  private final GraphAnalysisProcessor.Report report;
+  private final TypeElement module;
   private final String moduleName;
 
-  GraphAnalysisErrorHandler(ProcessingEnvironment processingEnv, String moduleName) {
-    this.processingEnv = processingEnv;
+  GraphAnalysisErrorHandler(GraphAnalysisProcessor.Report report, TypeElement module,
+      String moduleName) {
+    this.report = report;
+    this.module = module;
     this.moduleName = moduleName;
   }
 
   @Override public void handleErrors(List<String> errors) {
-    TypeElement module = processingEnv.getElementUtils().getTypeElement(moduleName);
     for (String error : errors) {
-      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, error + " for " + moduleName,
-          module);
+      report.error(error + " for " + moduleName, module);
     }
   }
 }
@@ -28,33 +28,47 @@ import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 
 import static dagger.internal.codegen.Util.getApplicationSupertype;
+import static dagger.internal.codegen.Util.rawTypeToString;
 
 /**
  * A build time binding that injects the constructor and fields of a class.
  */
 final class GraphAnalysisInjectBinding extends Binding<Object> {
-  private final TypeElement type;
-  private final List<String> keys;
+  private final InjectType type;
   private final Binding<?>[] bindings;
-  private final String supertypeKey;
 
-  private GraphAnalysisInjectBinding(String provideKey, String membersKey,
-      TypeElement type, List<String> keys, String supertypeKey) {
-    super(provideKey, membersKey, type.getAnnotation(Singleton.class) != null,
-        type.getQualifiedName().toString());
+  private GraphAnalysisInjectBinding(InjectType type) {
+    super(type.provideKey, type.membersKey, type.singleton, type.name);
     this.type = type;
-    this.keys = keys;
-    this.bindings = new Binding<?>[keys.size()];
-    this.supertypeKey = supertypeKey;
+    this.bindings = new Binding<?>[type.keys.size()];
   }
 
-  static GraphAnalysisInjectBinding create(TypeElement type, boolean mustHaveInjections) {
+  /**
+   * Returns a binding for {@code type}. Each linker needs its own bindings,
+   * but they may share the analysis of their types.
+   */
+  static GraphAnalysisInjectBinding create(InjectType type, boolean mustHaveInjections) {
+    if (type.error != null) {
+      throw new IllegalArgumentException(type.error);
+    }
+    if (!type.hasInjectConstructor && type.keys.isEmpty() && mustHaveInjections) {
+      throw new IllegalArgumentException("No injectable members on "
+          + type.name + ". Do you want to add an injectable constructor?");
+    }
+    return new GraphAnalysisInjectBinding(type);
+  }
+
+  /** Returns the keys that {@code type} injects. */
+  static InjectType analyze(TypeElement type) {
     List<String> requiredKeys = new ArrayList<String>();
     boolean hasInjectConstructor = false;
     boolean hasNoArgsConstructor = false;
+    String name = type.getQualifiedName().toString();
 
     for (Element enclosed : type.getEnclosedElements()) {
       switch (enclosed.getKind()) {
@@ -70,13 +84,11 @@ final class GraphAnalysisInjectBinding extends Binding<Object> {
         List<? extends VariableElement> parameters = constructor.getParameters();
         if (hasAtInject(enclosed)) {
           if (hasAtSingleton(enclosed)) {
-            throw new IllegalArgumentException("Singleton annotations have no effect on "
-                + "constructors. Did you mean to annotate the class? "
-                + type.getQualifiedName().toString());
+            return new InjectType(name, "Singleton annotations have no effect on "
+                + "constructors. Did you mean to annotate the class? " + name);
           }
           if (hasInjectConstructor) {
-            throw new IllegalArgumentException("Too many injectable constructors on "
-                + type.getQualifiedName().toString());
+            return new InjectType(name, "Too many injectable constructors on " + name);
           }
           hasInjectConstructor = true;
           for (VariableElement parameter : parameters) {
@@ -89,16 +101,11 @@ final class GraphAnalysisInjectBinding extends Binding<Object> {
 
       default:
         if (hasAtInject(enclosed)) {
-          throw new IllegalArgumentException("Unexpected @Inject annotation on " + enclosed);
+          return new InjectType(name, "Unexpected @Inject annotation on " + enclosed);
         }
       }
     }
 
-    if (!hasInjectConstructor && requiredKeys.isEmpty() && mustHaveInjections) {
-      throw new IllegalArgumentException("No injectable members on "
-          + type.getQualifiedName().toString() + ". Do you want to add an injectable constructor?");
-    }
-
     // Attach the supertype.
     TypeMirror supertype = getApplicationSupertype(type);
     String supertypeKey = supertype != null
@@ -109,7 +116,25 @@ final class GraphAnalysisInjectBinding extends Binding<Object> {
         ? GeneratorKeys.get(type.asType())
         : null;
     String membersKey = GeneratorKeys.rawMembersKey(type.asType());
-    return new GraphAnalysisInjectBinding(provideKey, membersKey, type, requiredKeys, supertypeKey);
+    return new InjectType(name, provideKey, membersKey, type.getAnnotation(Singleton.class) != null,
+        hasInjectConstructor, requiredKeys, supertypeKey, superclasses(type));
+  }
+
+  /**
+   * Returns the binary names of the superclasses of {@code type} below {@code
+   * Object}, whose declared fields a reflective binding of {@code type} reads.
+   */
+  private static List<String> superclasses(TypeElement type) {
+    List<String> result = new ArrayList<String>();
+    for (TypeMirror supertype = type.getSuperclass(); supertype.getKind() == TypeKind.DECLARED;) {
+      TypeElement element = (TypeElement) ((DeclaredType) supertype).asElement();
+      if (element.getQualifiedName().contentEquals(Object.class.getName())) {
+        break;
+      }
+      result.add(rawTypeToString(supertype, '$'));
+      supertype = element.getSuperclass();
+    }
+    return result;
   }
 
   private static boolean hasAtInject(Element enclosed) {
@@ -121,17 +146,23 @@ final class GraphAnalysisInjectBinding extends Binding<Object> {
   }
 
   @Override public void attach(Linker linker) {
-    String requiredBy = type.getQualifiedName().toString();
-    for (int i = 0; i < keys.size(); i++) {
-      bindings[i] = linker.requestBinding(keys.get(i), requiredBy,
+    String requiredBy = type.name;
+    for (int i = 0; i < type.keys.size(); i++) {
+      bindings[i] = linker.requestBinding(type.keys.get(i), requiredBy,
           getClass().getClassLoader());
     }
-    if (supertypeKey != null) {
+    if (type.supertypeKey != null) {
       // Force the binding lookup.
-      linker.requestBinding(supertypeKey, requiredBy, getClass().getClassLoader(), false, true);
+      linker.requestBinding(type.supertypeKey, requiredBy, getClass().getClassLoader(), false,
+          true);
     }
   }
 
+  /** Returns the binary names of the superclasses whose fields reflective injection reads. */
+  List<String> superclasses() {
+    return type.superclasses;
+  }
+
   @Override public Object get() {
     throw new AssertionError("Compile-time binding should never be called to inject.");
   }
@@ -143,4 +174,44 @@ final class GraphAnalysisInjectBinding extends Binding<Object> {
   @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
     Collections.addAll(get, bindings);
   }
+
+  /** The keys of a class's injections, or the reason it can't be injected. */
+  static final class InjectType {
+    final String name;
+    final String provideKey;
+    final String membersKey;
+    final boolean singleton;
+    final boolean hasInjectConstructor;
+    final List<String> keys;
+    final String supertypeKey;
+    final List<String> superclasses;
+    /** Why the class can't be injected, or null. */
+    final String error;
+
+    InjectType(String name, String provideKey, String membersKey, boolean singleton,
+        boolean hasInjectConstructor, List<String> keys, String supertypeKey,
+        List<String> superclasses) {
+      this.name = name;
+      this.provideKey = provideKey;
+      this.membersKey = membersKey;
+      this.singleton = singleton;
+      this.hasInjectConstructor = hasInjectConstructor;
+      this.keys = keys;
+      this.supertypeKey = supertypeKey;
+      this.superclasses = superclasses;
+      this.error = null;
+    }
+
+    InjectType(String name, String error) {
+      this.name = name;
+      this.provideKey = null;
+      this.membersKey = null;
+      this.singleton = false;
+      this.hasInjectConstructor = false;
+      this.keys = Collections.emptyList();
+      this.supertypeKey = null;
+      this.superclasses = Collections.emptyList();
+      this.error = error;
+    }
+  }
 }
@@ -19,6 +19,15 @@ import dagger.internal.Binding;
 import dagger.internal.Loader;
 import dagger.internal.ModuleAdapter;
 import dagger.internal.StaticInjection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
@@ -30,15 +39,94 @@ import javax.lang.model.element.TypeElement;
  * for graph analysis and error detection.
  */
 public final class GraphAnalysisLoader extends Loader {
+  /** Marks a class that can't be introspected or is an interface. */
+  private static final GraphAnalysisInjectBinding.InjectType NOT_INJECTABLE =
+      new GraphAnalysisInjectBinding.InjectType(null, null);
 
   private final ProcessingEnvironment processingEnv;
+  private final ProcessingStats stats;
+  /**
+   * The analysis of each class, by name. Linkers that share this loader share
+   * the analysis, but each gets its own bindings.
+   */
+  private final ConcurrentMap<String, GraphAnalysisInjectBinding.InjectType> injectTypes =
+      new ConcurrentHashMap<String, GraphAnalysisInjectBinding.InjectType>();
+  /** The only thread that may read elements: the one that created this loader. */
+  private final Thread compilerThread = Thread.currentThread();
+  /** Analyses requested by other threads, for {@link #serveRequests} to run. */
+  private final BlockingQueue<Runnable> requests = new LinkedBlockingQueue<Runnable>();
 
   public GraphAnalysisLoader(ProcessingEnvironment processingEnv) {
     this.processingEnv = processingEnv;
+    this.stats = ProcessingStats.of(processingEnv);
   }
 
   @Override public Binding<?> getAtInjectBinding(
       String key, String className, ClassLoader classLoader, boolean mustHaveInjections) {
+    GraphAnalysisInjectBinding.InjectType injectType = injectTypes.get(className);
+    if (injectType == null) {
+      injectType = Thread.currentThread() == compilerThread
+          ? analyzeAndCache(className)
+          : analyzeOnCompilerThread(className);
+    }
+    if (injectType == NOT_INJECTABLE) {
+      return null;
+    }
+    stats.injectBindingCreated(className);
+    return GraphAnalysisInjectBinding.create(injectType, mustHaveInjections);
+  }
+
+  /**
+   * Runs the analyses that other threads request until {@code done} reaches
+   * zero. Linkers on other threads may share this loader only while the
+   * compiler thread is in this method.
+   */
+  void serveRequests(CountDownLatch done) throws InterruptedException {
+    while (done.getCount() > 0) {
+      Runnable request = requests.poll(10, TimeUnit.MILLISECONDS);
+      if (request != null) {
+        request.run();
+      }
+    }
+  }
+
+  private GraphAnalysisInjectBinding.InjectType analyzeOnCompilerThread(final String className) {
+    FutureTask<GraphAnalysisInjectBinding.InjectType> request =
+        new FutureTask<GraphAnalysisInjectBinding.InjectType>(
+            new Callable<GraphAnalysisInjectBinding.InjectType>() {
+              @Override public GraphAnalysisInjectBinding.InjectType call() {
+                return analyzeAndCache(className);
+              }
+            });
+    requests.add(request);
+    try {
+      return request.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while analyzing " + className);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private GraphAnalysisInjectBinding.InjectType analyzeAndCache(String className) {
+    GraphAnalysisInjectBinding.InjectType result = injectTypes.get(className);
+    if (result == null) {
+      result = analyze(className);
+      stats.typeAnalyzed();
+      injectTypes.put(className, result);
+    }
+    return result;
+  }
+
+  private GraphAnalysisInjectBinding.InjectType analyze(String className) {
     String sourceClassName = className.replace('$', '.');
     TypeElement type = processingEnv.getElementUtils().getTypeElement(sourceClassName);
     if (type == null) {
@@ -46,12 +134,12 @@ public final class GraphAnalysisLoader extends Loader {
       // causes problems in practice (due to incremental compiles, etc.) we
       // should return a new unresolved binding and warn about the possibility
       // of runtime failures.
-      return null;
+      return NOT_INJECTABLE;
     }
     if (type.getKind() == ElementKind.INTERFACE) {
-      return null;
+      return NOT_INJECTABLE;
     }
-    return GraphAnalysisInjectBinding.create(type, mustHaveInjections);
+    return GraphAnalysisInjectBinding.analyze(type);
   }
 
   @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<? extends T> moduleClass, T module) {
@@ -16,8 +16,8 @@
 package dagger.internal.codegen;
 
 import dagger.Module;
-import dagger.Provides;
 import dagger.internal.Binding;
+import dagger.internal.Keys;
 import dagger.internal.Linker;
 import dagger.internal.ProblemDetector;
 import dagger.internal.SetBinding;
@@ -25,27 +25,30 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
-import javax.inject.Singleton;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
-import javax.lang.model.element.VariableElement;
-import javax.lang.model.type.TypeMirror;
-import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.FileObject;
 import javax.tools.JavaFileManager;
@@ -53,164 +56,416 @@ import javax.tools.StandardLocation;
 
 import static dagger.Provides.Type.SET;
 import static dagger.Provides.Type.SET_VALUES;
+import static dagger.internal.codegen.Util.adapterName;
 import static dagger.internal.codegen.Util.getAnnotation;
 import static dagger.internal.codegen.Util.getPackage;
-import static dagger.internal.codegen.Util.isInterface;
-import static dagger.internal.codegen.Util.methodName;
+import static dagger.internal.loaders.GeneratedAdapters.INJECT_ADAPTER_SUFFIX;
+import static dagger.internal.loaders.GeneratedAdapters.MODULE_ADAPTER_SUFFIX;
+import static dagger.internal.loaders.GeneratedAdapters.STATIC_INJECTION_SUFFIX;
 
 /**
  * Performs full graph analysis on a module.
+ *
+ * <p>Analysis follows a module's includes and injected types across the whole
+ * compilation, so for incremental compilation this processor is aggregating.
+ * The adapter processors, which look at one type at a time, are isolating.
+ *
+ * <p>Set {@code -Adagger.graphAnalysisThreads=N} to link and check up to N root
+ * modules at once. Elements are still only read on the compiler thread, and
+ * diagnostics are reported in the same order as with a single thread.
+ *
+ * <p>Each complete module's graph is written to a dot file. For large graphs,
+ * set {@code -Adagger.dotRoot=com.example.Type} to only write what that type
+ * depends on, and no file for modules that don't have it. Set {@code
+ * -Adagger.dotMaxDepth=N} to follow at most N dependencies from that type, or
+ * from the injected types, and {@code -Adagger.dotClusters=true} to group each
+ * package's nodes.
+ *
+ * <p>Set {@code -Adagger.statsReport=name} to write where the processors spent
+ * their time, and how large each root module's graph is; see {@link
+ * ProcessingStats}.
  */
 @SupportedAnnotationTypes("dagger.Module")
 public final class GraphAnalysisProcessor extends AbstractProcessor {
+  static final String THREADS_OPTION = "dagger.graphAnalysisThreads";
+  static final String DOT_ROOT_OPTION = "dagger.dotRoot";
+  static final String DOT_MAX_DEPTH_OPTION = "dagger.dotMaxDepth";
+  static final String DOT_CLUSTERS_OPTION = "dagger.dotClusters";
+
   private final Set<String> delayedModuleNames = new LinkedHashSet<String>();
 
+  // Analysis shared by all root modules in the round that analyzes them. Many
+  // roots include the same modules and inject the same types, so each is only
+  // analyzed once. Elements don't outlive a round, and neither do these.
+  private GraphAnalysisLoader loader;
+  private GraphVisualizer visualizer;
+  private final Map<String, ModuleSummary> moduleSummaries = new HashMap<String, ModuleSummary>();
+  private final Map<String, GraphAnalysisStaticInjection> staticInjectionsByName =
+      new HashMap<String, GraphAnalysisStaticInjection>();
+
   @Override public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
   }
 
+  @Override public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    // The other processors are isolating, so this one writes the statistics.
+    ProcessingStats.of(processingEnv).writeReportWith(processingEnv);
+  }
+
   /**
    * Perform full-graph analysis on complete modules. This checks that all of
    * the module's dependencies are satisfied.
    */
   @Override public boolean process(Set<? extends TypeElement> types, RoundEnvironment env) {
+    long start = System.nanoTime();
     if (!env.processingOver()) {
       // Storing module names for later retrieval as the element instance is invalidated across
       // passes.
-      for (Element e : env.getElementsAnnotatedWith(Module.class)) {
+      for (Element e : RoundModel.of(env).moduleElements) {
         if (!(e instanceof TypeElement)) {
           error("@Module applies to a type, " + e.getSimpleName() + " is a " + e.getKind(), e);
           continue;
         }
         delayedModuleNames.add(((TypeElement) e).getQualifiedName().toString());
       }
+      stats().roundProcessed(this, env, System.nanoTime() - start);
       return false;
     }
 
-    Set<Element> modules = new LinkedHashSet<Element>();
-    for (String moduleName : delayedModuleNames) {
-      modules.add(processingEnv.getElementUtils().getTypeElement(moduleName));
+    loader = new GraphAnalysisLoader(processingEnv);
+    visualizer = new GraphVisualizer(
+        intOption(DOT_MAX_DEPTH_OPTION, "depth", 0, Integer.MAX_VALUE),
+        Boolean.parseBoolean(processingEnv.getOptions().get(DOT_CLUSTERS_OPTION)));
+    try {
+      analyzeModules();
+    } finally {
+      loader = null;
+      visualizer = null;
+      moduleSummaries.clear();
+      staticInjectionsByName.clear();
     }
+    stats().roundProcessed(this, env, System.nanoTime() - start);
+    return false;
+  }
 
-    for (Element element : modules) {
-      Map<String, Object> annotation = getAnnotation(Module.class, element);
-      TypeElement moduleType = (TypeElement) element;
+  @Override public Set<String> getSupportedOptions() {
+    return new LinkedHashSet<String>(
+        Arrays.asList(THREADS_OPTION, DOT_ROOT_OPTION, DOT_MAX_DEPTH_OPTION,
+            DOT_CLUSTERS_OPTION, ProcessingStats.REPORT_OPTION));
+  }
+
+  private ProcessingStats stats() {
+    return ProcessingStats.of(processingEnv);
+  }
 
+  private void analyzeModules() {
+    List<RootAnalysis> analyses = new ArrayList<RootAnalysis>();
+    for (String moduleName : delayedModuleNames) {
+      TypeElement moduleType = processingEnv.getElementUtils().getTypeElement(moduleName);
+      Map<String, Object> annotation = getAnnotation(Module.class, moduleType);
       if (annotation == null) {
         error("Missing @Module annotation.", moduleType);
         continue;
       }
-      if (annotation.get("complete").equals(Boolean.TRUE)) {
-        Map<String, Binding<?>> bindings;
-        try {
-          bindings = processCompleteModule(moduleType, false);
-          new ProblemDetector().detectCircularDependencies(bindings.values());
-        } catch (ModuleValidationException e) {
-          error("Graph validation failed: " + e.getMessage(), e.source);
-          continue;
-        } catch (IllegalStateException e) {
-          error("Graph validation failed: " + e.getMessage(), moduleType);
-          continue;
-        }
-        try {
-          writeDotFile(moduleType, bindings);
-        } catch (IOException e) {
-          StringWriter sw = new StringWriter();
-          e.printStackTrace(new PrintWriter(sw));
-          processingEnv.getMessager()
-              .printMessage(Diagnostic.Kind.WARNING,
-                  "Graph visualization failed. Please report this as a bug.\n\n" + sw, moduleType);
-        }
+      RootAnalysis analysis = new RootAnalysis(moduleType,
+          annotation.get("complete").equals(Boolean.TRUE),
+          annotation.get("library").equals(Boolean.FALSE));
+      analysis.prepare();
+      analyses.add(analysis);
+    }
+
+    int threads = intOption(THREADS_OPTION, "threads", 1, 1);
+    if (threads > 1 && analyses.size() > 1) {
+      if (!runInParallel(analyses, threads)) {
+        return;
       }
+    } else {
+      for (RootAnalysis analysis : analyses) {
+        analysis.run();
+      }
+    }
 
-      if (annotation.get("library").equals(Boolean.FALSE)) {
-        Map<String, Binding<?>> bindings = processCompleteModule(moduleType, true);
-        try {
-          new ProblemDetector().detectUnusedBinding(bindings.values());
-        } catch (IllegalStateException e) {
-          error("Graph validation failed: " + e.getMessage(), moduleType);
+    for (RootAnalysis analysis : analyses) {
+      analysis.finish();
+    }
+  }
+
+  /**
+   * Runs {@code analyses} on a pool of {@code threads} threads. This thread
+   * answers their requests for elements until they're done. Returns false if
+   * interrupted.
+   */
+  private boolean runInParallel(List<RootAnalysis> analyses, int threads) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final CountDownLatch done = new CountDownLatch(analyses.size());
+      for (final RootAnalysis analysis : analyses) {
+        executor.execute(new Runnable() {
+          @Override public void run() {
+            try {
+              analysis.run();
+            } finally {
+              done.countDown();
+            }
+          }
+        });
+      }
+      loader.serveRequests(done);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Graph analysis was interrupted.");
+      return false;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the value of the integer option {@code option}, or {@code
+   * defaultValue} if it isn't set or is less than {@code minimum}.
+   */
+  private int intOption(String option, String noun, int minimum, int defaultValue) {
+    String value = processingEnv.getOptions().get(option);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      int result = Integer.parseInt(value.trim());
+      if (result >= minimum) {
+        return result;
+      }
+    } catch (NumberFormatException ignored) {
+    }
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Expected a number of "
+        + noun + " of at least " + minimum + " for " + option + " but was " + value);
+    return defaultValue;
+  }
+
+  /**
+   * Returns the keys that the dot file of {@code root} starts from, or null to
+   * write its whole graph. The list is empty if the graph doesn't have the
+   * type of {@code -Adagger.dotRoot}.
+   */
+  private Collection<String> dotRoots(RootAnalysis root) {
+    String type = processingEnv.getOptions().get(DOT_ROOT_OPTION);
+    if (type != null) {
+      List<String> result = new ArrayList<String>();
+      for (String key : Arrays.asList(type.trim(), "members/" + type.trim())) {
+        if (root.bindings.containsKey(key)) {
+          result.add(key);
         }
       }
+      return result;
     }
-    return false;
+    if (processingEnv.getOptions().containsKey(DOT_MAX_DEPTH_OPTION)) {
+      // Without a root type, depth is measured from the types that the modules inject.
+      List<String> result = new ArrayList<String>();
+      for (String moduleName : root.modules.keySet()) {
+        result.addAll(moduleSummaries.get(moduleName).injects);
+      }
+      return result;
+    }
+    return null;
   }
 
   private void error(String message, Element element) {
     processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
   }
 
-  private Map<String, Binding<?>> processCompleteModule(TypeElement rootModule,
-      boolean ignoreCompletenessErrors) {
-    Map<String, TypeElement> allModules = new LinkedHashMap<String, TypeElement>();
-    collectIncludesRecursively(rootModule, allModules, new LinkedList<String>());
-    ArrayList<GraphAnalysisStaticInjection> staticInjections =
+  /**
+   * The analysis of a root module. Everything that reads elements happens in
+   * {@link #prepare} and {@link #finish} on the compiler thread. {@link #run}
+   * links the graph and may run on any thread; it collects its diagnostics so
+   * that {@link #finish} can report them in order of the root modules.
+   */
+  private final class RootAnalysis {
+    final TypeElement module;
+    final String moduleName;
+    final boolean complete;
+    final boolean checkUnused;
+    final Report report = new Report();
+    Map<String, TypeElement> modules;
+    final List<GraphAnalysisStaticInjection> staticInjections =
         new ArrayList<GraphAnalysisStaticInjection>();
+    Map<String, Binding<?>> bindings;
+    long linkNanos;
+    /** The keys the dot file starts from, or null for the whole graph. */
+    Collection<String> dotRoots;
+    boolean writeDot;
+    Throwable failure;
+
+    RootAnalysis(TypeElement module, boolean complete, boolean checkUnused) {
+      this.module = module;
+      this.moduleName = module.getQualifiedName().toString();
+      this.complete = complete;
+      this.checkUnused = checkUnused;
+    }
 
+    void prepare() {
+      long start = System.nanoTime();
+      Map<String, TypeElement> allModules = new LinkedHashMap<String, TypeElement>();
+      try {
+        collectIncludesRecursively(module, allModules, new LinkedList<String>());
+      } catch (ModuleValidationException e) {
+        report.error("Graph validation failed: " + e.getMessage(), e.source);
+        return;
+      }
+      for (TypeElement includedModule : allModules.values()) {
+        for (String staticInjection : moduleSummary(includedModule).staticInjections) {
+          staticInjections.add(staticInjection(staticInjection));
+        }
+      }
+      modules = allModules;
+      stats().addTime("GraphAnalysisProcessor.collectModules", System.nanoTime() - start);
+    }
+
+    void run() {
+      if (modules == null) {
+        return;
+      }
+      try {
+        if (complete) {
+          long start = System.nanoTime();
+          try {
+            bindings = processCompleteModule(this, false);
+            new ProblemDetector().detectCircularDependencies(bindings.values());
+          } catch (IllegalStateException e) {
+            report.error("Graph validation failed: " + e.getMessage(), module);
+            bindings = null;
+            return;
+          }
+          linkNanos = System.nanoTime() - start;
+          stats().addTime("GraphAnalysisProcessor.link", linkNanos);
+
+          dotRoots = dotRoots(this);
+          writeDot = dotRoots == null || !dotRoots.isEmpty();
+        }
+
+        if (checkUnused) {
+          long start = System.nanoTime();
+          Map<String, Binding<?>> allBindings = processCompleteModule(this, true);
+          try {
+            new ProblemDetector().detectUnusedBinding(allBindings.values());
+          } catch (IllegalStateException e) {
+            report.error("Graph validation failed: " + e.getMessage(), module);
+          }
+          stats().addTime("GraphAnalysisProcessor.checkUnused", System.nanoTime() - start);
+        }
+      } catch (Throwable e) {
+        failure = e;
+      }
+    }
+
+    void finish() {
+      report.printTo(processingEnv.getMessager());
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      } else if (failure != null) {
+        throw new RuntimeException(failure);
+      }
+      if (bindings == null) {
+        return;
+      }
+      stats().rootModuleLinked(moduleName, bindings.size(), linkNanos);
+      long start = System.nanoTime();
+      if (writeDot) {
+        try {
+          writeDotFile(module, bindings, dotRoots);
+        } catch (IOException e) {
+          warning("Graph visualization failed. Please report this as a bug.", e, module);
+        }
+        stats().addTime("GraphAnalysisProcessor.writeDotFile", System.nanoTime() - start);
+        start = System.nanoTime();
+      }
+      try {
+        writeNativeImageConfig(this);
+      } catch (IOException e) {
+        warning("Native image configuration failed. Please report this as a bug.", e, module);
+      }
+      stats().addTime("GraphAnalysisProcessor.writeNativeImageConfig",
+          System.nanoTime() - start);
+    }
+  }
+
+  /** Diagnostics collected on any thread, to print on the compiler thread. */
+  static final class Report {
+    private final List<String> messages = new ArrayList<String>();
+    private final List<Element> elements = new ArrayList<Element>();
+
+    void error(String message, Element element) {
+      messages.add(message);
+      elements.add(element);
+    }
+
+    void printTo(Messager messager) {
+      for (int i = 0; i < messages.size(); i++) {
+        messager.printMessage(Diagnostic.Kind.ERROR, messages.get(i), elements.get(i));
+      }
+    }
+  }
+
+  private void warning(String message, IOException e, Element element) {
+    StringWriter sw = new StringWriter();
+    e.printStackTrace(new PrintWriter(sw));
+    processingEnv.getMessager()
+        .printMessage(Diagnostic.Kind.WARNING, message + "\n\n" + sw, element);
+  }
+
+  private Map<String, Binding<?>> processCompleteModule(RootAnalysis root,
+      boolean ignoreCompletenessErrors) {
     Linker.ErrorHandler errorHandler = ignoreCompletenessErrors ? Linker.ErrorHandler.NULL
-        : new GraphAnalysisErrorHandler(processingEnv, rootModule.getQualifiedName().toString());
-    Linker linker = new Linker(null, new GraphAnalysisLoader(processingEnv), errorHandler);
+        : new GraphAnalysisErrorHandler(root.report, root.module, root.moduleName);
+    Linker linker = new Linker(null, loader, errorHandler);
     // Linker requires synchronization for calls to requestBinding and linkAll.
-    // We know statically that we're single threaded, but we synchronize anyway
-    // to make the linker happy.
+    // Each linker is confined to one thread, but we synchronize anyway to make
+    // the linker happy.
     synchronized (linker) {
       Map<String, Binding<?>> baseBindings = new LinkedHashMap<String, Binding<?>>();
       Map<String, Binding<?>> overrideBindings = new LinkedHashMap<String, Binding<?>>();
-      for (TypeElement module : allModules.values()) {
-        Map<String, Object> annotation = getAnnotation(Module.class, module);
-        boolean overrides = (Boolean) annotation.get("overrides");
-        boolean library = (Boolean) annotation.get("library");
-        Map<String, Binding<?>> addTo = overrides ? overrideBindings : baseBindings;
+      for (Map.Entry<String, TypeElement> entry : root.modules.entrySet()) {
+        String moduleName = entry.getKey();
+        TypeElement module = entry.getValue();
+        ModuleSummary summary = moduleSummaries.get(moduleName);
+        Map<String, Binding<?>> addTo = summary.overrides ? overrideBindings : baseBindings;
 
         // Gather the injectable types from the annotation.
-        for (Object injectableTypeObject : (Object[]) annotation.get("injects")) {
-          TypeMirror injectableType = (TypeMirror) injectableTypeObject;
-          String key = isInterface(injectableType)
-              ? GeneratorKeys.get(injectableType)
-              : GeneratorKeys.rawMembersKey(injectableType);
-          linker.requestBinding(key, module.getQualifiedName().toString(),
-              getClass().getClassLoader(), false, true);
+        for (String key : summary.injects) {
+          linker.requestBinding(key, moduleName, getClass().getClassLoader(), false, true);
         }
 
-        // Gather the static injections.
-        for (Object staticInjection : (Object[]) annotation.get("staticInjections")) {
-          TypeMirror staticInjectionTypeMirror = (TypeMirror) staticInjection;
-          Element element = processingEnv.getTypeUtils().asElement(staticInjectionTypeMirror);
-          staticInjections.add(new GraphAnalysisStaticInjection(element));
-        }
-
-        // Gather the enclosed @Provides methods.
-        for (Element enclosed : module.getEnclosedElements()) {
-          Provides provides = enclosed.getAnnotation(Provides.class);
-          if (provides == null) {
-            continue;
-          }
-          ExecutableElement providerMethod = (ExecutableElement) enclosed;
-          String key = GeneratorKeys.get(providerMethod);
-          Binding binding = new ProviderMethodBinding(key, providerMethod, library);
+        // Gather the @Provides methods.
+        for (ModuleSummary.ProvidesMethod providesMethod : summary.providesMethods) {
+          String key = providesMethod.key;
+          Binding binding = new ProviderMethodBinding(providesMethod, summary.library);
 
           Binding previous = addTo.get(key);
           if (previous != null) {
-            if ((provides.type() == SET || provides.type() == SET_VALUES)
+            if ((providesMethod.type == SET || providesMethod.type == SET_VALUES)
                 && previous instanceof SetBinding) {
               // No duplicate bindings error if both bindings are set bindings.
             } else {
               String message = "Duplicate bindings for " + key;
-              if (overrides) {
+              if (summary.overrides) {
                 message += " in override module(s) - cannot override an override";
               }
               message += ":\n    " + previous.requiredBy + "\n    " + binding.requiredBy;
-              error(message, providerMethod);
+              root.report.error(message,
+                  providesMethod.element != null ? providesMethod.element : module);
             }
           }
 
-          switch (provides.type()) {
+          switch (providesMethod.type) {
             case UNIQUE:
               addTo.put(key, binding);
               break;
 
             case SET:
-              String setKey = GeneratorKeys.getSetKey(providerMethod);
-              SetBinding.add(addTo, setKey, binding);
+              SetBinding.add(addTo, providesMethod.setKey, binding);
               break;
 
             case SET_VALUES:
@@ -218,14 +473,14 @@ public final class GraphAnalysisProcessor extends AbstractProcessor {
               break;
 
             default:
-              throw new AssertionError("Unknown @Provides type " + provides.type());
+              throw new AssertionError("Unknown @Provides type " + providesMethod.type);
           }
         }
       }
 
       linker.installBindings(baseBindings);
       linker.installBindings(overrideBindings);
-      for (GraphAnalysisStaticInjection staticInjection : staticInjections) {
+      for (GraphAnalysisStaticInjection staticInjection : root.staticInjections) {
         staticInjection.attach(linker);
       }
 
@@ -240,10 +495,60 @@ public final class GraphAnalysisProcessor extends AbstractProcessor {
         + "." + method.getSimpleName() + "()";
   }
 
+  /**
+   * Returns the summary of {@code module}. Modules compiled in an earlier
+   * compilation are read from the summary stored in their adapter, if it
+   * exists; all others are summarized from their elements.
+   */
+  private ModuleSummary moduleSummary(TypeElement module) {
+    String name = module.getQualifiedName().toString();
+    if (moduleSummaries.containsKey(name)) {
+      return moduleSummaries.get(name);
+    }
+    ModuleSummary summary = null;
+    if (!delayedModuleNames.contains(name)) {
+      summary = readModuleSummary(module);
+    }
+    if (summary == null) {
+      summary = ModuleSummary.create(processingEnv.getTypeUtils(), module);
+    }
+    moduleSummaries.put(name, summary);
+    return summary;
+  }
+
+  /** Returns the static injection of the class {@code name}. */
+  private GraphAnalysisStaticInjection staticInjection(String name) {
+    GraphAnalysisStaticInjection result = staticInjectionsByName.get(name);
+    if (result == null) {
+      result = new GraphAnalysisStaticInjection(
+          processingEnv.getElementUtils().getTypeElement(name));
+      staticInjectionsByName.put(name, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the summary stored in the adapter of a module compiled earlier, or
+   * null if it has none.
+   */
+  private ModuleSummary readModuleSummary(TypeElement module) {
+    TypeElement adapter = processingEnv.getElementUtils()
+        .getTypeElement(adapterName(module, MODULE_ADAPTER_SUFFIX));
+    if (adapter == null) {
+      return null;
+    }
+    try {
+      return ModuleSummary.read(adapter);
+    } catch (IOException e) {
+      // Adapters of another version's summary are summarized from their modules' elements.
+      return null;
+    }
+  }
+
   void collectIncludesRecursively(
       TypeElement module, Map<String, TypeElement> result, Deque<String> path) {
-    Map<String, Object> annotation = getAnnotation(Module.class, module);
-    if (annotation == null) {
+    ModuleSummary summary = moduleSummary(module);
+    if (summary == null) {
       // TODO(tbroyer): pass annotation information
       throw new ModuleValidationException("No @Module on " + module, module);
     }
@@ -269,19 +574,21 @@ public final class GraphAnalysisProcessor extends AbstractProcessor {
     }
     result.put(name, module);
 
+    for (Object include : summary.unexpectedIncludes) {
+      // TODO(tbroyer): pass annotation information
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          "Unexpected value for include: " + include + " in " + module, module);
+    }
+
     // Recurse for each included module.
-    Types types = processingEnv.getTypeUtils();
-    List<Object> seedModules = new ArrayList<Object>();
-    seedModules.addAll(Arrays.asList((Object[]) annotation.get("includes")));
-    if (!annotation.get("addsTo").equals(Void.class)) seedModules.add(annotation.get("addsTo"));
-    for (Object include : seedModules) {
-      if (!(include instanceof TypeMirror)) {
-        // TODO(tbroyer): pass annotation information
-        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
-            "Unexpected value for include: " + include + " in " + module, module);
-        continue;
+    List<String> seedModules = new ArrayList<String>(summary.includes);
+    if (summary.addsTo != null) seedModules.add(summary.addsTo);
+    for (String include : seedModules) {
+      TypeElement includedModule = processingEnv.getElementUtils().getTypeElement(include);
+      if (includedModule == null) {
+        throw new ModuleValidationException("Module " + include + " included by " + name
+            + " is not on the class path", module);
       }
-      TypeElement includedModule = (TypeElement) types.asElement((TypeMirror) include);
       path.push(name);
       collectIncludesRecursively(includedModule, result, path);
       path.pop();
@@ -289,21 +596,19 @@ public final class GraphAnalysisProcessor extends AbstractProcessor {
   }
 
   static class ProviderMethodBinding extends Binding<Object> {
-    private final ExecutableElement method;
+    private final ModuleSummary.ProvidesMethod method;
     private final Binding<?>[] parameters;
 
-    protected ProviderMethodBinding(String provideKey, ExecutableElement method, boolean library) {
-      super(provideKey, null, method.getAnnotation(Singleton.class) != null, methodName(method));
+    protected ProviderMethodBinding(ModuleSummary.ProvidesMethod method, boolean library) {
+      super(method.key, null, method.singleton, method.name);
       this.method = method;
-      this.parameters = new Binding[method.getParameters().size()];
+      this.parameters = new Binding[method.parameterKeys.size()];
       setLibrary(library);
     }
 
     @Override public void attach(Linker linker) {
-      for (int i = 0; i < method.getParameters().size(); i++) {
-        VariableElement parameter = method.getParameters().get(i);
-        String parameterKey = GeneratorKeys.get(parameter);
-        parameters[i] = linker.requestBinding(parameterKey, method.toString(),
+      for (int i = 0; i < method.parameterKeys.size(); i++) {
+        parameters[i] = linker.requestBinding(method.parameterKeys.get(i), method.signature,
             getClass().getClassLoader());
       }
     }
@@ -321,16 +626,71 @@ public final class GraphAnalysisProcessor extends AbstractProcessor {
     }
   }
 
-  void writeDotFile(TypeElement module, Map<String, Binding<?>> bindings) throws IOException {
+  /** Renders the graph of {@code module} straight into its dot file. */
+  void writeDotFile(TypeElement module, Map<String, Binding<?>> bindings,
+      Collection<String> dotRoots) throws IOException {
     JavaFileManager.Location location = StandardLocation.SOURCE_OUTPUT;
     String path = getPackage(module).getQualifiedName().toString();
     String file = module.getQualifiedName().toString().substring(path.length() + 1) + ".dot";
     FileObject resource = processingEnv.getFiler().createResource(location, path, file, module);
 
+    GraphVizWriter dotWriter = new GraphVizWriter(resource.openWriter());
+    try {
+      visualizer.write(bindings, dotRoots, dotWriter);
+    } finally {
+      dotWriter.close();
+    }
+  }
+
+  /**
+   * Writes the reflection configuration that a GraalVM native image needs to
+   * load this module's graph: every module adapter, every inject and static
+   * injection adapter, and the types that fall back to reflection because they
+   * have no generated adapter, with the superclasses whose fields they inject.
+   */
+  void writeNativeImageConfig(RootAnalysis root) throws IOException {
+    NativeImageConfigWriter config = new NativeImageConfigWriter();
+    for (TypeElement includedModule : root.modules.values()) {
+      config.adapter(adapterName(includedModule, MODULE_ADAPTER_SUFFIX));
+    }
+    for (GraphAnalysisStaticInjection staticInjection : root.staticInjections) {
+      String className = staticInjection.className();
+      if (adapterExists(className + STATIC_INJECTION_SUFFIX)) {
+        config.adapter(className + STATIC_INJECTION_SUFFIX);
+      } else {
+        config.reflectiveStaticInjection(className);
+      }
+    }
+    for (Binding<?> binding : root.bindings.values()) {
+      if (binding.membersKey == null) {
+        continue; // Provides methods, sets and built-in bindings are not loaded by name.
+      }
+      String className = Keys.getClassName(binding.membersKey);
+      if (adapterExists(className + INJECT_ADAPTER_SUFFIX)) {
+        config.adapter(className + INJECT_ADAPTER_SUFFIX);
+      } else {
+        config.reflectiveBinding(className);
+        if (binding instanceof GraphAnalysisInjectBinding) {
+          for (String superclass : ((GraphAnalysisInjectBinding) binding).superclasses()) {
+            config.reflectiveSupertype(superclass);
+          }
+        }
+      }
+    }
+
+    String file = "META-INF/native-image/dagger/" + root.moduleName + "/reflect-config.json";
+    FileObject resource = processingEnv.getFiler()
+        .createResource(StandardLocation.CLASS_OUTPUT, "", file, root.module);
     Writer writer = resource.openWriter();
-    GraphVizWriter dotWriter = new GraphVizWriter(writer);
-    new GraphVisualizer().write(bindings, dotWriter);
-    dotWriter.close();
+    try {
+      config.write(writer);
+    } finally {
+      writer.close();
+    }
+  }
+
+  private boolean adapterExists(String adapterName) {
+    return processingEnv.getElementUtils().getTypeElement(adapterName) != null;
   }
 
   static class ModuleValidationException extends IllegalStateException {
@@ -17,32 +17,45 @@ package dagger.internal.codegen;
 
 import dagger.internal.Linker;
 import dagger.internal.StaticInjection;
+import java.util.ArrayList;
+import java.util.List;
 import javax.inject.Inject;
 import javax.lang.model.element.Element;
 
 import static dagger.internal.codegen.Util.isStatic;
+import static dagger.internal.codegen.Util.rawTypeToString;
 
 public final class GraphAnalysisStaticInjection extends StaticInjection {
 
-  private final Element enclosingClass;
+  private final String enclosingClass;
+  private final String className;
+  private final List<String> keys = new ArrayList<String>();
 
   public GraphAnalysisStaticInjection(Element enclosingClass) {
-    this.enclosingClass = enclosingClass;
-  }
-
-  @Override public void attach(Linker linker) {
+    // Read the elements now, so that attaching doesn't need the compiler's thread.
+    this.enclosingClass = enclosingClass.toString();
+    this.className = rawTypeToString(enclosingClass.asType(), '$');
     for (Element enclosedElement : enclosingClass.getEnclosedElements()) {
       if (enclosedElement.getKind().isField() && isStatic(enclosedElement)) {
         Inject injectAnnotation = enclosedElement.getAnnotation(Inject.class);
         if (injectAnnotation != null) {
-          String key = GeneratorKeys.get(enclosedElement.asType());
-          linker.requestBinding(key, enclosingClass.toString(),
-              getClass().getClassLoader());
+          keys.add(GeneratorKeys.get(enclosedElement.asType()));
         }
       }
     }
   }
 
+  /** Returns the binary name of the class whose static fields are injected. */
+  String className() {
+    return className;
+  }
+
+  @Override public void attach(Linker linker) {
+    for (String key : keys) {
+      linker.requestBinding(key, enclosingClass, getClass().getClassLoader());
+    }
+  }
+
   @Override public void inject() {
     throw new UnsupportedOperationException();
   }
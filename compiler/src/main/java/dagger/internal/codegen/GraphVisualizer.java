@@ -17,87 +17,236 @@ package dagger.internal.codegen;
 
 import dagger.internal.Binding;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Emits an object graph in dot format.
+ *
+ * <p>Nodes are named by the short names of their keys, and edges are written
+ * as each binding's dependencies are visited. Only the keys of the written
+ * nodes are collected and sorted; everything else streams to the writer.
+ * Short names are remembered, so a visualizer that writes the graphs of
+ * several modules shortens each key once. It may be shared by threads that
+ * write different graphs.
  */
 public final class GraphVisualizer {
   private static final Pattern KEY_PATTERN = Pattern.compile(""
-      + "(?:@"            // Full annotation start.
-      + "(?:[\\w$]+\\.)*" // Annotation package
-      + "([\\w$]+)"       // Annotation simple name. Group 1.
-      + "(?:\\(.*\\))?"   // Annotation arguments
-      + "/)?"             // Full annotation end.
-      + "(?:members/)?"   // Members prefix.
-      + "(?:[\\w$]+\\.)*" // Type package.
-      + "([\\w$]+)"       // Type simple name. Group 2.
-      + "(\\<[^/]+\\>)?"  // Type parameters. Group 3.
-      + "((\\[\\])*)"     // Arrays. Group 4.
+      + "(?:@"              // Full annotation start.
+      + "(?:[\\w$]+\\.)*"   // Annotation package
+      + "([\\w$]+)"         // Annotation simple name. Group 1.
+      + "(?:\\(.*\\))?"     // Annotation arguments
+      + "/)?"               // Full annotation end.
+      + "(?:members/)?"     // Members prefix.
+      + "((?:[\\w$]+\\.)*)" // Type package. Group 2.
+      + "([\\w$]+)"         // Type simple name. Group 3.
+      + "(\\<[^/]+\\>)?"    // Type parameters. Group 4.
+      + "((\\[\\])*)"       // Arrays. Group 5.
       + "");
 
+  private final int maxDepth;
+  private final boolean clusterPackages;
+  private final ConcurrentMap<String, ShortKey> shortKeys =
+      new ConcurrentHashMap<String, ShortKey>();
+
+  /** Orders keys by their short names, then by the keys themselves. */
+  private final Comparator<String> byShortName = new Comparator<String>() {
+    @Override public int compare(String a, String b) {
+      int result = shortKey(a).name.compareTo(shortKey(b).name);
+      return result != 0 ? result : a.compareTo(b);
+    }
+  };
+
+  /** Orders keys by their packages, then by their short names. */
+  private final Comparator<String> byPackage = new Comparator<String>() {
+    @Override public int compare(String a, String b) {
+      int result = shortKey(a).packageName.compareTo(shortKey(b).packageName);
+      return result != 0 ? result : byShortName.compare(a, b);
+    }
+  };
+
+  /** Creates a visualizer that writes whole graphs without clusters. */
+  public GraphVisualizer() {
+    this(Integer.MAX_VALUE, false);
+  }
+
+  /**
+   * @param maxDepth the most dependencies to follow from the root keys of
+   *     {@link #write(Map, Collection, GraphVizWriter)}.
+   * @param clusterPackages true to group the nodes of each package into a
+   *     cluster labeled with the package's name.
+   */
+  public GraphVisualizer(int maxDepth, boolean clusterPackages) {
+    if (maxDepth < 0) throw new IllegalArgumentException("maxDepth < 0: " + maxDepth);
+    this.maxDepth = maxDepth;
+    this.clusterPackages = clusterPackages;
+  }
+
+  /** Writes every binding in {@code bindings}. */
   public void write(Map<String, Binding<?>> bindings, GraphVizWriter writer) throws IOException {
-    Map<Binding<?>, String> namesIndex = buildNamesIndex(bindings);
+    write(bindings, null, writer);
+  }
+
+  /**
+   * Writes the bindings reachable from {@code rootKeys} through at most
+   * {@code maxDepth} dependencies, or every binding if {@code rootKeys} is
+   * null. Keys that aren't in {@code bindings} are ignored.
+   */
+  public void write(Map<String, Binding<?>> bindings, Collection<String> rootKeys,
+      GraphVizWriter writer) throws IOException {
+    Set<Binding<?>> dependencies = new LinkedHashSet<Binding<?>>();
+    Set<String> reachable = rootKeys != null
+        ? reachableKeys(bindings, rootKeys, dependencies)
+        : null;
+    List<String> nodes;
+    if (reachable != null) {
+      nodes = new ArrayList<String>(reachable);
+    } else {
+      nodes = new ArrayList<String>(bindings.size());
+      for (Map.Entry<String, Binding<?>> entry : bindings.entrySet()) {
+        if (entry.getKey().equals(nodeKey(bindings, entry.getValue()))) {
+          nodes.add(entry.getKey());
+        }
+      }
+    }
+    Collections.sort(nodes, byShortName);
+    Set<String> collisions = collisions(nodes);
 
     writer.beginGraph("concentrate", "true");
-    for (Map.Entry<Binding<?>, String> entry : namesIndex.entrySet()) {
-      Binding<?> sourceBinding = entry.getKey();
-      String sourceName = entry.getValue();
-      Set<Binding<?>> dependencies = new HashSet<Binding<?>>();
-      sourceBinding.getDependencies(dependencies, dependencies);
+    if (clusterPackages) {
+      writeClusters(nodes, collisions, writer);
+    }
+    for (String sourceKey : nodes) {
+      String sourceName = name(sourceKey, collisions);
+      // Edges follow the order of the dependencies, so that the output is reproducible.
+      dependencies.clear();
+      bindings.get(sourceKey).getDependencies(dependencies, dependencies);
       for (Binding<?> targetBinding : dependencies) {
-        String targetName = namesIndex.get(targetBinding);
-        if (targetName == null) {
-          targetName = "Unbound:" + targetBinding.provideKey;
-        }
-        writer.edge(sourceName, targetName);
+        String targetKey = nodeKey(bindings, targetBinding);
+        if (targetKey == null) {
+          writer.edge(sourceName, "Unbound:" + targetBinding.provideKey);
+        } else if (reachable == null || reachable.contains(targetKey)) {
+          writer.edge(sourceName, name(targetKey, collisions));
+        } // Otherwise the target is deeper than maxDepth.
       }
     }
     writer.endGraph();
   }
 
-  private Map<Binding<?>, String> buildNamesIndex(Map<String, Binding<?>> bindings) {
-    // Optimistically shorten each binding to the class short name; remembering collisions.
-    Map<String, Binding<?>> shortNameToBinding = new TreeMap<String, Binding<?>>();
-    Set<Binding<?>> collisions = new HashSet<Binding<?>>();
-    for (Map.Entry<String, Binding<?>> entry : bindings.entrySet()) {
-      String key = entry.getKey();
-      Binding<?> binding = entry.getValue();
-      String shortName = shortName(key);
-      Binding<?> collision = shortNameToBinding.put(shortName, binding);
-      if (collision != null && collision != binding) {
-        collisions.add(binding);
-        collisions.add(collision);
-      }
+  /**
+   * Returns the key that names {@code binding}'s node: its provide key or its
+   * members key, whichever {@code bindings} maps to it. Returns null if the
+   * binding isn't in {@code bindings}.
+   */
+  private static String nodeKey(Map<String, Binding<?>> bindings, Binding<?> binding) {
+    if (binding.provideKey != null && bindings.get(binding.provideKey) == binding) {
+      return binding.provideKey;
+    }
+    if (binding.membersKey != null && bindings.get(binding.membersKey) == binding) {
+      return binding.membersKey;
     }
+    return null;
+  }
 
-    // Replace collisions with full names.
-    for (Map.Entry<String, Binding<?>> entry : bindings.entrySet()) {
-      Binding<?> binding = entry.getValue();
-      if (collisions.contains(binding)) {
-        String key = entry.getKey();
-        String shortName = shortName(key);
-        shortNameToBinding.remove(shortName);
-        shortNameToBinding.put(key, binding);
+  /**
+   * Returns the keys of the bindings within {@code maxDepth} of the roots.
+   * Only bindings that are in {@code bindings} are followed.
+   */
+  private Set<String> reachableKeys(Map<String, Binding<?>> bindings,
+      Collection<String> rootKeys, Set<Binding<?>> dependencies) {
+    Set<String> result = new HashSet<String>();
+    List<String> level = new ArrayList<String>();
+    for (String rootKey : rootKeys) {
+      Binding<?> root = bindings.get(rootKey);
+      String key = root != null ? nodeKey(bindings, root) : null;
+      if (key != null && result.add(key)) {
+        level.add(key);
       }
     }
+    for (int depth = 0; depth < maxDepth && !level.isEmpty(); depth++) {
+      List<String> nextLevel = new ArrayList<String>();
+      for (String key : level) {
+        dependencies.clear();
+        bindings.get(key).getDependencies(dependencies, dependencies);
+        for (Binding<?> dependency : dependencies) {
+          String dependencyKey = nodeKey(bindings, dependency);
+          if (dependencyKey != null && result.add(dependencyKey)) {
+            nextLevel.add(dependencyKey);
+          }
+        }
+      }
+      level = nextLevel;
+    }
+    return result;
+  }
 
-    // Reverse the map.
-    Map<Binding<?>, String> bindingToName = new LinkedHashMap<Binding<?>, String>();
-    for (Map.Entry<String, Binding<?>> entry : shortNameToBinding.entrySet()) {
-      bindingToName.put(entry.getValue(), entry.getKey());
+  /** Returns the short names shared by several of {@code sortedKeys}. */
+  private Set<String> collisions(List<String> sortedKeys) {
+    Set<String> result = new HashSet<String>();
+    for (int i = 1; i < sortedKeys.size(); i++) {
+      String shortName = shortKey(sortedKeys.get(i)).name;
+      if (shortName.equals(shortKey(sortedKeys.get(i - 1)).name)) {
+        result.add(shortName);
+      }
     }
+    return result;
+  }
+
+  /** Returns the short name of {@code key}, or the key itself if that name collides. */
+  private String name(String key, Set<String> collisions) {
+    String shortName = shortKey(key).name;
+    return collisions.contains(shortName) ? key : shortName;
+  }
 
-    return bindingToName;
+  private void writeClusters(List<String> nodes, Set<String> collisions, GraphVizWriter writer)
+      throws IOException {
+    List<String> byPackageNodes = new ArrayList<String>(nodes);
+    Collections.sort(byPackageNodes, byPackage);
+    String cluster = null;
+    for (String key : byPackageNodes) {
+      String packageName = shortKey(key).packageName;
+      if (packageName.length() == 0) {
+        continue;
+      }
+      if (!packageName.equals(cluster)) {
+        if (cluster != null) {
+          writer.endGraph();
+        }
+        writer.beginGraph("label", packageName);
+        cluster = packageName;
+      }
+      writer.node(name(key, collisions));
+    }
+    if (cluster != null) {
+      writer.endGraph();
+    }
   }
 
   String shortName(String key) {
+    return shortKey(key).name;
+  }
+
+  private ShortKey shortKey(String key) {
+    ShortKey result = shortKeys.get(key);
+    if (result == null) {
+      result = parse(key);
+      shortKeys.put(key, result);
+    }
+    return result;
+  }
+
+  private static ShortKey parse(String key) {
     Matcher matcher = KEY_PATTERN.matcher(key);
     if (!matcher.matches()) throw new IllegalArgumentException("Unexpected key: " + key);
     StringBuilder result = new StringBuilder();
@@ -107,19 +256,34 @@ public final class GraphVisualizer {
       result.append('@').append(annotationSimpleName).append(' ');
     }
 
-    String simpleName = matcher.group(2);
+    String simpleName = matcher.group(3);
     result.append(simpleName);
 
-    String typeParameters = matcher.group(3);
+    String typeParameters = matcher.group(4);
     if (typeParameters != null) {
       result.append(typeParameters);
     }
 
-    String arrays = matcher.group(4);
+    String arrays = matcher.group(5);
     if (arrays != null) {
       result.append(arrays);
     }
 
-    return result.toString();
+    String packageName = matcher.group(2);
+    if (packageName.length() > 0) {
+      packageName = packageName.substring(0, packageName.length() - 1);
+    }
+    return new ShortKey(result.toString(), packageName);
+  }
+
+  /** The short name of a key, and the package of its type. */
+  private static final class ShortKey {
+    final String name;
+    final String packageName;
+
+    ShortKey(String name, String packageName) {
+      this.name = name;
+      this.packageName = packageName;
+    }
   }
 }
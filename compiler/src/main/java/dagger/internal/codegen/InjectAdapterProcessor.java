@@ -20,10 +20,12 @@ import com.squareup.javawriter.JavaWriter;
 import dagger.MembersInjector;
 import dagger.internal.Binding;
 import dagger.internal.Linker;
+import dagger.internal.ScopedBinding;
 import dagger.internal.StaticInjection;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.Iterator;
@@ -61,12 +63,16 @@ import static dagger.internal.loaders.GeneratedAdapters.STATIC_INJECTION_SUFFIX;
 import static javax.lang.model.element.Modifier.ABSTRACT;
 import static javax.lang.model.element.Modifier.FINAL;
 import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PROTECTED;
 import static javax.lang.model.element.Modifier.PUBLIC;
 import static javax.lang.model.element.Modifier.STATIC;
 
 /**
  * Generates an implementation of {@link Binding} that injects the
  * {@literal @}{@code Inject}-annotated members of a class.
+ *
+ * <p>This processor is isolating: the adapters of a class depend only on that
+ * class and its supertypes, and name it as their originating element.
  */
 @SupportedAnnotationTypes("javax.inject.Inject")
 public final class InjectAdapterProcessor extends AbstractProcessor {
@@ -77,6 +83,7 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
   }
 
   @Override public boolean process(Set<? extends TypeElement> types, RoundEnvironment env) {
+    long start = System.nanoTime();
     remainingTypeNames.addAll(findInjectedClassNames(env));
     for (Iterator<String> i = remainingTypeNames.iterator(); i.hasNext();) {
       InjectedClass injectedClass = createInjectedClass(i.next());
@@ -99,9 +106,14 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
       processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
           "Could not find injection type required by " + remainingTypeNames);
     }
+    ProcessingStats.of(processingEnv).roundProcessed(this, env, System.nanoTime() - start);
     return false;
   }
 
+  @Override public Set<String> getSupportedOptions() {
+    return Collections.singleton(ProcessingStats.REPORT_OPTION);
+  }
+
   private void generateInjectionsForClass(InjectedClass injectedClass) throws IOException {
     if (injectedClass.constructor != null || !injectedClass.fields.isEmpty()) {
       generateInjectAdapter(injectedClass.type, injectedClass.constructor, injectedClass.fields);
@@ -127,7 +139,7 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
   private Set<String> findInjectedClassNames(RoundEnvironment env) {
     // First gather the set of classes that have @Inject-annotated members.
     Set<String> injectedTypeNames = new LinkedHashSet<String>();
-    for (Element element : env.getElementsAnnotatedWith(Inject.class)) {
+    for (Element element : RoundModel.of(env).injectElements) {
       if (!validateInjectable(element)) {
         continue;
       }
@@ -252,14 +264,15 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
         && !constructor.getParameters().isEmpty();
     boolean dependent = injectMembers
         || ((constructor != null) && !constructor.getParameters().isEmpty());
+    boolean scoped = (constructor != null) && type.getAnnotation(Singleton.class) != null;
 
     writer.emitSingleLineComment(AdapterJavadocs.GENERATED_BY_DAGGER);
     writer.emitPackage(packageName);
-    writer.emitImports(findImports(dependent, injectMembers, constructor != null));
+    writer.emitImports(findImports(dependent, injectMembers, constructor != null, scoped));
     writer.emitEmptyLine();
     writer.emitJavadoc(bindingTypeDocs(strippedTypeName, isAbstract, injectMembers, dependent));
     writer.beginType(adapterName, "class", EnumSet.of(PUBLIC, FINAL),
-        JavaWriter.type(Binding.class, strippedTypeName),
+        JavaWriter.type(scoped ? ScopedBinding.class : Binding.class, strippedTypeName),
         implementedInterfaces(strippedTypeName, injectMembers, constructor != null));
     writeMemberBindingsFields(writer, fields, disambiguateFields);
     if (constructor != null) {
@@ -269,20 +282,23 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
       writeSupertypeInjectorField(writer, supertype);
     }
     writer.emitEmptyLine();
-    writeInjectAdapterConstructor(writer, constructor, type, strippedTypeName, adapterName);
+    writeInjectAdapterConstructor(writer, constructor, type, strippedTypeName, adapterName,
+        scoped);
     if (dependent) {
       writeAttachMethod(writer, constructor, fields, disambiguateFields, strippedTypeName,
           supertype, true);
       writeGetDependenciesMethod(writer, constructor, fields, disambiguateFields, supertype, true);
     }
     if (constructor != null) {
-      writeGetMethod(writer, constructor, disambiguateFields, injectMembers, strippedTypeName);
+      writeGetMethod(writer, constructor, disambiguateFields, injectMembers, strippedTypeName,
+          scoped);
     }
     if (injectMembers) {
       writeMembersInjectMethod(writer, fields, disambiguateFields, strippedTypeName, supertype);
     }
     writer.endType();
     writer.close();
+    ProcessingStats.of(processingEnv).adapterGenerated("inject");
   }
 
   /**
@@ -311,6 +327,7 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
     writeStaticInjectMethod(writer, fields, typeName);
     writer.endType();
     writer.close();
+    ProcessingStats.of(processingEnv).adapterGenerated("staticInjection");
   }
 
   private void writeMemberBindingsFields(
@@ -338,15 +355,20 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
   }
 
   private void writeInjectAdapterConstructor(JavaWriter writer, ExecutableElement constructor,
-      TypeElement type, String strippedTypeName, String adapterName) throws IOException {
+      TypeElement type, String strippedTypeName, String adapterName, boolean scoped)
+      throws IOException {
     writer.beginMethod(null, adapterName, EnumSet.of(PUBLIC));
     String key = (constructor != null)
         ? JavaWriter.stringLiteral(GeneratorKeys.get(type.asType()))
         : null;
     String membersKey = JavaWriter.stringLiteral(GeneratorKeys.rawMembersKey(type.asType()));
     boolean singleton = type.getAnnotation(Singleton.class) != null;
-    writer.emitStatement("super(%s, %s, %s, %s.class)",
-        key, membersKey, (singleton ? "IS_SINGLETON" : "NOT_SINGLETON"), strippedTypeName);
+    if (scoped) {
+      writer.emitStatement("super(%s, %s, %s.class)", key, membersKey, strippedTypeName);
+    } else {
+      writer.emitStatement("super(%s, %s, %s, %s.class)",
+          key, membersKey, (singleton ? "IS_SINGLETON" : "NOT_SINGLETON"), strippedTypeName);
+    }
     writer.endMethod();
     writer.emitEmptyLine();
   }
@@ -415,11 +437,17 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
   }
 
   private void writeGetMethod(JavaWriter writer, ExecutableElement constructor,
-      boolean disambiguateFields, boolean injectMembers, String strippedTypeName)
+      boolean disambiguateFields, boolean injectMembers, String strippedTypeName, boolean scoped)
       throws IOException {
-    writer.emitJavadoc(AdapterJavadocs.GET_METHOD, strippedTypeName);
-    writer.emitAnnotation(Override.class);
-    writer.beginMethod(strippedTypeName, "get", EnumSet.of(PUBLIC));
+    if (scoped) {
+      writer.emitJavadoc(AdapterJavadocs.CREATE_METHOD, strippedTypeName);
+      writer.emitAnnotation(Override.class);
+      writer.beginMethod(strippedTypeName, "create", EnumSet.of(PROTECTED));
+    } else {
+      writer.emitJavadoc(AdapterJavadocs.GET_METHOD, strippedTypeName);
+      writer.emitAnnotation(Override.class);
+      writer.beginMethod(strippedTypeName, "get", EnumSet.of(PUBLIC));
+    }
     StringBuilder newInstance = new StringBuilder();
     newInstance.append(strippedTypeName).append(" result = new ");
     newInstance.append(strippedTypeName).append('(');
@@ -473,15 +501,19 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
     writer.emitEmptyLine();
   }
 
-  private Set<String> findImports(boolean dependent, boolean injectMembers, boolean isProvider) {
+  private Set<String> findImports(boolean dependent, boolean injectMembers, boolean isProvider,
+      boolean scoped) {
     Set<String> imports = new LinkedHashSet<String>();
-    imports.add(Binding.class.getCanonicalName());
+    if (!scoped || dependent) {
+      imports.add(Binding.class.getCanonicalName());
+    }
     if (dependent) {
       imports.add(Linker.class.getCanonicalName());
       imports.add(Set.class.getCanonicalName());
     }
     if (injectMembers) imports.add(MembersInjector.class.getCanonicalName());
     if (isProvider) imports.add(Provider.class.getCanonicalName());
+    if (scoped) imports.add(ScopedBinding.class.getCanonicalName());
     return imports;
   }
 
@@ -17,11 +17,11 @@ package dagger.internal.codegen;
 
 import com.squareup.javawriter.JavaWriter;
 import dagger.Lazy;
-import dagger.Module;
 import dagger.Provides;
 import dagger.internal.Binding;
 import dagger.internal.Linker;
 import dagger.internal.ModuleAdapter;
+import dagger.internal.ScopedBinding;
 import dagger.internal.SetBinding;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -47,6 +47,7 @@ import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
@@ -58,7 +59,6 @@ import static dagger.Provides.Type.SET_VALUES;
 import static dagger.internal.codegen.AdapterJavadocs.bindingTypeDocs;
 import static dagger.internal.codegen.Util.adapterName;
 import static dagger.internal.codegen.Util.elementToString;
-import static dagger.internal.codegen.Util.getAnnotation;
 import static dagger.internal.codegen.Util.getNoArgsConstructor;
 import static dagger.internal.codegen.Util.getPackage;
 import static dagger.internal.codegen.Util.isCallableConstructor;
@@ -68,15 +68,36 @@ import static dagger.internal.loaders.GeneratedAdapters.MODULE_ADAPTER_SUFFIX;
 import static javax.lang.model.element.Modifier.ABSTRACT;
 import static javax.lang.model.element.Modifier.FINAL;
 import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PROTECTED;
 import static javax.lang.model.element.Modifier.PUBLIC;
 import static javax.lang.model.element.Modifier.STATIC;
 
 /**
  * Generates an implementation of {@link ModuleAdapter} that includes a binding
  * for each {@code @Provides} method of a target class.
+ *
+ * <p>Each adapter is derived from its module class alone, which is also the
+ * adapter's only originating element, so this processor is declared isolating
+ * for incremental compilation.
+ *
+ * <p>By default each {@code @Provides} method gets its own binding class. Set
+ * {@code -Adagger.switchingBindings=true} to instead generate a single binding
+ * class per module, whose instances select their method by ordinal. Modules
+ * with many provider methods then load, verify and initialize two classes
+ * instead of one per method.
  */
-@SupportedAnnotationTypes({ "*" })
+@SupportedAnnotationTypes({ "dagger.Module", "dagger.Provides" })
 public final class ModuleAdapterProcessor extends AbstractProcessor {
+  static final String SWITCHING_BINDINGS_OPTION = "dagger.switchingBindings";
+  /** The name of the binding class of each module with {@code -Adagger.switchingBindings}. */
+  static final String SWITCHING_BINDING_CLASS = "ProvidesAdapter";
+  /**
+   * The most {@code @Provides} methods that one switch of a switching binding
+   * selects from. Larger modules switch on groups of this many methods first,
+   * which keeps each method far below the size that HotSpot refuses to compile.
+   */
+  static final int SWITCH_CASES_PER_METHOD = 32;
+
   private final LinkedHashMap<String, List<ExecutableElement>> remainingTypes =
       new LinkedHashMap<String, List<ExecutableElement>>();
   private static final String BINDINGS_MAP = JavaWriter.type(
@@ -87,7 +108,9 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
   }
 
   @Override public boolean process(Set<? extends TypeElement> types, RoundEnvironment env) {
-    remainingTypes.putAll(providerMethodsByClass(env));
+    long start = System.nanoTime();
+    RoundModel model = RoundModel.of(env);
+    remainingTypes.putAll(providerMethodsByClass(model));
     for (Iterator<String> i = remainingTypes.keySet().iterator(); i.hasNext();) {
       String typeName = i.next();
       TypeElement type = processingEnv.getElementUtils().getTypeElement(typeName);
@@ -95,7 +118,7 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
       try {
         // Attempt to get the annotation. If types are missing, this will throw
         // IllegalStateException.
-        Map<String, Object> parsedAnnotation = getAnnotation(Module.class, type);
+        Map<String, Object> parsedAnnotation = model.moduleAnnotation(type);
         try {
           generateModuleAdapter(type, parsedAnnotation, providesTypes);
         } catch (IOException e) {
@@ -110,9 +133,15 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
       processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
           "Could not find types required by provides methods for " + remainingTypes.keySet());
     }
+    ProcessingStats.of(processingEnv).roundProcessed(this, env, System.nanoTime() - start);
     return false; // FullGraphProcessor needs an opportunity to process.
   }
 
+  @Override public Set<String> getSupportedOptions() {
+    return new LinkedHashSet<String>(
+        Arrays.asList(SWITCHING_BINDINGS_OPTION, ProcessingStats.REPORT_OPTION));
+  }
+
   private void error(String msg, Element element) {
     processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, element);
   }
@@ -120,14 +149,14 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
   /**
    * Returns a map containing all {@code @Provides} methods, indexed by class.
    */
-  private Map<String, List<ExecutableElement>> providerMethodsByClass(RoundEnvironment env) {
+  private Map<String, List<ExecutableElement>> providerMethodsByClass(RoundModel model) {
     Elements elementUtils = processingEnv.getElementUtils();
     Types types = processingEnv.getTypeUtils();
 
     Map<String, List<ExecutableElement>> result = new HashMap<String, List<ExecutableElement>>();
 
     provides:
-    for (Element providerMethod : findProvidesMethods(env)) {
+    for (Element providerMethod : model.providesElements) {
       switch (providerMethod.getEnclosingElement().getKind()) {
         case CLASS:
           break; // valid, move along
@@ -186,7 +215,7 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
 
     // Catch any stray modules without @Provides since their injectable types
     // should still be registered and a ModuleAdapter should still be written.
-    for (Element module : env.getElementsAnnotatedWith(Module.class)) {
+    for (Element module : model.moduleElements) {
       if (!module.getKind().equals(ElementKind.CLASS)) {
         error("Modules must be classes: " + elementToString(module), module);
         continue;
@@ -206,12 +235,6 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
     return result;
   }
 
-  private Set<? extends Element> findProvidesMethods(RoundEnvironment env) {
-    Set<Element> result = new LinkedHashSet<Element>();
-    result.addAll(env.getElementsAnnotatedWith(Provides.class));
-    return result;
-  }
-
   /**
    * Write a companion class for {@code type} that implements {@link
    * ModuleAdapter} to expose its provider methods.
@@ -238,11 +261,14 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
 
     boolean multibindings = checkForMultibindings(providerMethods);
     boolean providerMethodDependencies = checkForDependencies(providerMethods);
+    boolean switching = !providerMethods.isEmpty() && Boolean.parseBoolean(
+        processingEnv.getOptions().get(SWITCHING_BINDINGS_OPTION));
 
     writer.emitSingleLineComment(AdapterJavadocs.GENERATED_BY_DAGGER);
     writer.emitPackage(getPackage(type).getQualifiedName().toString());
-    writer.emitImports(
-        findImports(multibindings, !providerMethods.isEmpty(), providerMethodDependencies));
+    boolean scopedBindings = !switching && checkForSingletons(providerMethods);
+    writer.emitImports(findImports(multibindings, !providerMethods.isEmpty(),
+        providerMethodDependencies, scopedBindings));
 
     String typeName = type.getQualifiedName().toString();
     writer.emitEmptyLine();
@@ -286,6 +312,14 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
     writer.emitField(
         "Class<?>[]", "INCLUDES", EnumSet.of(PRIVATE, STATIC, FINAL), includesField.toString());
 
+    // Graph analysis in later compilations reads these instead of the module's elements.
+    List<String> summary =
+        ModuleSummary.create(processingEnv.getTypeUtils(), type, module).toConstants();
+    for (int i = 0; i < summary.size(); i++) {
+      writer.emitField("String", ModuleSummary.CONSTANT_PREFIX + i,
+          EnumSet.of(PRIVATE, STATIC, FINAL), JavaWriter.stringLiteral(summary.get(i)));
+    }
+
     writer.emitEmptyLine();
     writer.beginMethod(null, adapterName, EnumSet.of(PUBLIC));
     writer.emitStatement("super(INJECTS, STATIC_INJECTIONS, %s /*overrides*/, "
@@ -299,6 +333,12 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
       writer.beginMethod(typeName, "newModule", EnumSet.of(PUBLIC));
       writer.emitStatement("return new %s()", typeName);
       writer.endMethod();
+
+      writer.emitEmptyLine();
+      writer.emitAnnotation(Override.class);
+      writer.beginMethod("boolean", "canCreateModule", EnumSet.of(PROTECTED));
+      writer.emitStatement("return true");
+      writer.endMethod();
     }
     // caches
     Map<ExecutableElement, String> methodToClassName
@@ -311,27 +351,32 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
       writer.emitAnnotation(Override.class);
       writer.beginMethod("void", "getBindings", EnumSet.of(PUBLIC), BINDINGS_MAP, "map");
 
-      for (ExecutableElement providerMethod : providerMethods) {
+      // Unique bindings are created when first used. Set bindings are merged right away.
+      Map<Integer, String> lazyBindings = new LinkedHashMap<Integer, String>();
+      for (int ordinal = 0; ordinal < providerMethods.size(); ordinal++) {
+        ExecutableElement providerMethod = providerMethods.get(ordinal);
         Provides provides = providerMethod.getAnnotation(Provides.class);
+        String newBinding = switching
+            ? String.format("new %s(getModule(), %s)", SWITCHING_BINDING_CLASS, ordinal)
+            : String.format("new %s(getModule())",
+                bindingClassName(providerMethod, methodToClassName, methodNameToNextId));
         switch (provides.type()) {
           case UNIQUE: {
-            String key = GeneratorKeys.get(providerMethod);
-            writer.emitStatement("map.put(%s, new %s(module))", JavaWriter.stringLiteral(key),
-                bindingClassName(providerMethod, methodToClassName, methodNameToNextId));
+            String key = JavaWriter.stringLiteral(GeneratorKeys.get(providerMethod));
+            writer.emitStatement("map.put(%s, lazyBinding(%s, %s))", key, key, ordinal);
+            lazyBindings.put(ordinal, newBinding);
             break;
           }
           case SET: {
             String key = GeneratorKeys.getSetKey(providerMethod);
-            writer.emitStatement("SetBinding.add(map, %s, new %s(module))",
-                JavaWriter.stringLiteral(key),
-                bindingClassName(providerMethod, methodToClassName, methodNameToNextId));
+            writer.emitStatement("SetBinding.add(map, %s, %s)",
+                JavaWriter.stringLiteral(key), newBinding);
             break;
           }
           case SET_VALUES: {
             String key = GeneratorKeys.get(providerMethod);
-            writer.emitStatement("SetBinding.add(map, %s, new %s(module))",
-                JavaWriter.stringLiteral(key),
-                bindingClassName(providerMethod, methodToClassName, methodNameToNextId));
+            writer.emitStatement("SetBinding.add(map, %s, %s)",
+                JavaWriter.stringLiteral(key), newBinding);
             break;
           }
           default:
@@ -339,18 +384,44 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
         }
       }
       writer.endMethod();
+
+      if (!lazyBindings.isEmpty()) {
+        writer.emitEmptyLine();
+        writer.emitJavadoc(AdapterJavadocs.NEW_BINDING_METHOD);
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod("Binding<?>", "newBinding", EnumSet.of(PROTECTED), "int", "ordinal");
+        if (switching) {
+          writer.emitStatement("return new %s(getModule(), ordinal)", SWITCHING_BINDING_CLASS);
+        } else {
+          writer.beginControlFlow("switch (ordinal)");
+          for (Map.Entry<Integer, String> lazyBinding : lazyBindings.entrySet()) {
+            writer.emitStatement("case %s: return %s", lazyBinding.getKey(),
+                lazyBinding.getValue());
+          }
+          writer.emitStatement("default: throw new AssertionError(ordinal)");
+          writer.endControlFlow();
+        }
+        writer.endMethod();
+      }
     }
 
-    for (ExecutableElement providerMethod : providerMethods) {
-      generateProvidesAdapter(writer, providerMethod, methodToClassName, methodNameToNextId,
+    if (switching) {
+      generateSwitchingBinding(writer, type, providerMethods, providerMethodDependencies,
           library);
+    } else {
+      for (ExecutableElement providerMethod : providerMethods) {
+        generateProvidesAdapter(writer, providerMethod, methodToClassName, methodNameToNextId,
+            library);
+      }
     }
 
     writer.endType();
     writer.close();
+    ProcessingStats.of(processingEnv).adapterGenerated("module");
   }
 
-  private Set<String> findImports(boolean multibindings, boolean providers, boolean dependencies) {
+  private Set<String> findImports(boolean multibindings, boolean providers, boolean dependencies,
+      boolean scopedBindings) {
     Set<String> imports = new LinkedHashSet<String>();
     imports.add(ModuleAdapter.class.getCanonicalName());
     if (providers) {
@@ -365,9 +436,21 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
     if (multibindings) {
       imports.add(SetBinding.class.getCanonicalName());
     }
+    if (scopedBindings) {
+      imports.add(ScopedBinding.class.getCanonicalName());
+    }
     return imports;
   }
 
+  private boolean checkForSingletons(List<ExecutableElement> providerMethods) {
+    for (ExecutableElement element : providerMethods) {
+      if (element.getAnnotation(Singleton.class) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private boolean checkForDependencies(List<ExecutableElement> providerMethods) {
     for (ExecutableElement element : providerMethods) {
       if (!element.getParameters().isEmpty()) {
@@ -423,8 +506,9 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
 
     writer.emitEmptyLine();
     writer.emitJavadoc(bindingTypeDocs(returnType, false, false, dependent));
+    boolean singleton = providerMethod.getAnnotation(Singleton.class) != null;
     writer.beginType(className, "class", EnumSet.of(PUBLIC, STATIC, FINAL),
-        JavaWriter.type(Binding.class, returnType),
+        JavaWriter.type(singleton ? ScopedBinding.class : Binding.class, returnType),
         JavaWriter.type(Provider.class, returnType));
     writer.emitField(moduleType, "module", EnumSet.of(PRIVATE, FINAL));
     for (Element parameter : parameters) {
@@ -435,12 +519,14 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
 
     writer.emitEmptyLine();
     writer.beginMethod(null, className, EnumSet.of(PUBLIC), moduleType, "module");
-    boolean singleton = providerMethod.getAnnotation(Singleton.class) != null;
     String key = JavaWriter.stringLiteral(GeneratorKeys.get(providerMethod));
     String membersKey = null;
-    writer.emitStatement("super(%s, %s, %s, %s)",
-        key, membersKey, (singleton ? "IS_SINGLETON" : "NOT_SINGLETON"),
-        JavaWriter.stringLiteral(moduleType + "." + methodName + "()"));
+    String requiredBy = JavaWriter.stringLiteral(moduleType + "." + methodName + "()");
+    if (singleton) {
+      writer.emitStatement("super(%s, %s, %s)", key, membersKey, requiredBy);
+    } else {
+      writer.emitStatement("super(%s, %s, %s, %s)", key, membersKey, "NOT_SINGLETON", requiredBy);
+    }
     writer.emitStatement("this.module = module");
     writer.emitStatement("setLibrary(%s)", library);
     writer.endMethod();
@@ -476,9 +562,15 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
     }
 
     writer.emitEmptyLine();
-    writer.emitJavadoc(AdapterJavadocs.GET_METHOD, returnType);
-    writer.emitAnnotation(Override.class);
-    writer.beginMethod(returnType, "get", EnumSet.of(PUBLIC));
+    if (singleton) {
+      writer.emitJavadoc(AdapterJavadocs.CREATE_METHOD, returnType);
+      writer.emitAnnotation(Override.class);
+      writer.beginMethod(returnType, "create", EnumSet.of(PROTECTED));
+    } else {
+      writer.emitJavadoc(AdapterJavadocs.GET_METHOD, returnType);
+      writer.emitAnnotation(Override.class);
+      writer.beginMethod(returnType, "get", EnumSet.of(PUBLIC));
+    }
     StringBuilder args = new StringBuilder();
     boolean first = true;
     for (Element parameter : parameters) {
@@ -492,6 +584,155 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
     writer.endType();
   }
 
+  /**
+   * Writes a binding class for all of {@code providerMethods}. Each instance
+   * is created with the ordinal of its method, and {@code get()} switches on
+   * it to call the method, first on its group if there are more than {@link
+   * #SWITCH_CASES_PER_METHOD} methods. The keys of each method's parameters are in a table,
+   * so linking and {@code getDependencies()} don't need to switch at all.
+   */
+  private void generateSwitchingBinding(JavaWriter writer, TypeElement type,
+      List<ExecutableElement> providerMethods, boolean dependent, boolean library)
+      throws IOException {
+    String moduleType = typeToString(type.asType());
+    String className = SWITCHING_BINDING_CLASS;
+
+    StringBuilder keys = new StringBuilder().append("{ ");
+    StringBuilder singletons = new StringBuilder().append("{ ");
+    StringBuilder requiredBy = new StringBuilder().append("{ ");
+    StringBuilder dependencyKeys = new StringBuilder().append("{ ");
+    for (ExecutableElement providerMethod : providerMethods) {
+      keys.append(JavaWriter.stringLiteral(GeneratorKeys.get(providerMethod))).append(", ");
+      singletons.append(providerMethod.getAnnotation(Singleton.class) != null).append(", ");
+      requiredBy.append(JavaWriter.stringLiteral(
+          moduleType + "." + providerMethod.getSimpleName() + "()")).append(", ");
+      dependencyKeys.append("{ ");
+      for (VariableElement parameter : providerMethod.getParameters()) {
+        dependencyKeys.append(JavaWriter.stringLiteral(GeneratorKeys.get(parameter)))
+            .append(", ");
+      }
+      dependencyKeys.append("}, ");
+    }
+
+    writer.emitEmptyLine();
+    writer.emitJavadoc("A {@code Binding} for each {@code @Provides} method of {@code %s},\n"
+        + "which selects its method by ordinal.", moduleType);
+    writer.beginType(className, "class", EnumSet.of(PUBLIC, STATIC, FINAL),
+        JavaWriter.type(Binding.class, "Object"), JavaWriter.type(Provider.class, "Object"));
+    writer.emitField("String[]", "KEYS", EnumSet.of(PRIVATE, STATIC, FINAL),
+        keys.append("}").toString());
+    writer.emitField("boolean[]", "SINGLETONS", EnumSet.of(PRIVATE, STATIC, FINAL),
+        singletons.append("}").toString());
+    writer.emitField("String[]", "REQUIRED_BY", EnumSet.of(PRIVATE, STATIC, FINAL),
+        requiredBy.append("}").toString());
+    if (dependent) {
+      writer.emitField("String[][]", "DEPENDENCY_KEYS", EnumSet.of(PRIVATE, STATIC, FINAL),
+          dependencyKeys.append("}").toString());
+    }
+    writer.emitField(moduleType, "module", EnumSet.of(PRIVATE, FINAL));
+    writer.emitField("int", "ordinal", EnumSet.of(PRIVATE, FINAL));
+    if (dependent) {
+      writer.emitField("Binding<?>[]", "dependencies", EnumSet.of(PRIVATE));
+    }
+
+    writer.emitEmptyLine();
+    writer.beginMethod(null, className, EnumSet.of(PUBLIC), moduleType, "module", "int",
+        "ordinal");
+    writer.emitStatement("super(KEYS[ordinal], null, SINGLETONS[ordinal], REQUIRED_BY[ordinal])");
+    writer.emitStatement("this.module = module");
+    writer.emitStatement("this.ordinal = ordinal");
+    writer.emitStatement("setLibrary(%s)", library);
+    writer.endMethod();
+
+    if (dependent) {
+      writer.emitEmptyLine();
+      writer.emitJavadoc(AdapterJavadocs.ATTACH_METHOD);
+      writer.emitAnnotation(Override.class);
+      writer.beginMethod(
+          "void", "attach", EnumSet.of(PUBLIC), Linker.class.getCanonicalName(), "linker");
+      writer.emitStatement("String[] keys = DEPENDENCY_KEYS[ordinal]");
+      writer.emitStatement("dependencies = new Binding<?>[keys.length]");
+      writer.beginControlFlow("for (int i = 0; i < keys.length; i++)");
+      writer.emitStatement("dependencies[i] = linker.requestBinding(keys[i], %s.class, "
+          + "getClass().getClassLoader())", writer.compressType(moduleType));
+      writer.endControlFlow();
+      writer.endMethod();
+
+      writer.emitEmptyLine();
+      writer.emitJavadoc(AdapterJavadocs.GET_DEPENDENCIES_METHOD);
+      writer.emitAnnotation(Override.class);
+      String setOfBindings = JavaWriter.type(Set.class, "Binding<?>");
+      writer.beginMethod("void", "getDependencies", EnumSet.of(PUBLIC), setOfBindings,
+          "getBindings", setOfBindings, "injectMembersBindings");
+      writer.beginControlFlow("for (Binding<?> dependency : dependencies)");
+      writer.emitStatement("getBindings.add(dependency)");
+      writer.endControlFlow();
+      writer.endMethod();
+    }
+
+    writer.emitEmptyLine();
+    writer.emitJavadoc("Returns the value of the {@code @Provides} method selected by ordinal.");
+    writer.emitAnnotation(Override.class);
+    if (providerMethods.size() <= SWITCH_CASES_PER_METHOD) {
+      writeSwitchingGetMethod(writer, "get", EnumSet.of(PUBLIC), providerMethods, 0,
+          providerMethods.size(), dependent);
+    } else {
+      int groups = (providerMethods.size() - 1) / SWITCH_CASES_PER_METHOD + 1;
+      writer.beginMethod("Object", "get", EnumSet.of(PUBLIC));
+      writer.beginControlFlow("switch (ordinal / " + SWITCH_CASES_PER_METHOD + ")");
+      for (int group = 0; group < groups; group++) {
+        writer.emitStatement("case %s: return get%s()", group, group);
+      }
+      writer.emitStatement("default: throw new AssertionError(ordinal)");
+      writer.endControlFlow();
+      writer.endMethod();
+      for (int group = 0; group < groups; group++) {
+        int start = group * SWITCH_CASES_PER_METHOD;
+        writer.emitEmptyLine();
+        writeSwitchingGetMethod(writer, "get" + group, EnumSet.of(PRIVATE), providerMethods,
+            start, Math.min(start + SWITCH_CASES_PER_METHOD, providerMethods.size()), dependent);
+      }
+    }
+
+    writer.endType();
+  }
+
+  /**
+   * Writes a method that switches on the ordinal to call one of the provider
+   * methods from {@code start} to {@code end}.
+   */
+  private void writeSwitchingGetMethod(JavaWriter writer, String name, Set<Modifier> modifiers,
+      List<ExecutableElement> providerMethods, int start, int end, boolean dependent)
+      throws IOException {
+    if (dependent) {
+      writer.emitAnnotation(SuppressWarnings.class, JavaWriter.stringLiteral("unchecked"));
+    }
+    writer.beginMethod("Object", name, modifiers);
+    writer.beginControlFlow("switch (ordinal)");
+    for (int ordinal = start; ordinal < end; ordinal++) {
+      ExecutableElement providerMethod = providerMethods.get(ordinal);
+      StringBuilder args = new StringBuilder();
+      List<? extends VariableElement> parameters = providerMethod.getParameters();
+      for (int i = 0; i < parameters.size(); i++) {
+        if (i > 0) {
+          args.append(", ");
+        }
+        TypeMirror parameterType = parameters.get(i).asType();
+        String castType = parameterType.getKind().isPrimitive()
+            ? processingEnv.getTypeUtils().boxedClass((PrimitiveType) parameterType)
+                .getQualifiedName().toString()
+            : typeToString(parameterType);
+        args.append(String.format("(%s) dependencies[%s].get()",
+            writer.compressType(castType), i));
+      }
+      writer.emitStatement("case %s: return module.%s(%s)", ordinal,
+          providerMethod.getSimpleName(), args);
+    }
+    writer.emitStatement("default: throw new AssertionError(ordinal)");
+    writer.endControlFlow();
+    writer.endMethod();
+  }
+
   private String parameterName(Element parameter) {
     if (parameter.getSimpleName().contentEquals("module")) {
       return "parameter_" + parameter.getSimpleName().toString();
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import dagger.Module;
+import dagger.Provides;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Singleton;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+
+import static dagger.internal.codegen.Util.getAnnotation;
+import static dagger.internal.codegen.Util.isInterface;
+import static dagger.internal.codegen.Util.methodName;
+
+/**
+ * Everything that full graph analysis needs to know about a module: its
+ * annotation's attributes and the keys of its {@code @Provides} methods.
+ *
+ * <p>{@link ModuleAdapterProcessor} stores a summary of each module in string
+ * constants of its adapter. When a later compilation analyzes a graph that
+ * includes the module from a jar or an earlier build, {@link
+ * GraphAnalysisProcessor} reads those constants from the adapter's element
+ * instead of deriving the keys from the module's elements again. Reading
+ * elements, rather than resources on the class path, works wherever the
+ * processors run, including Gradle's incremental processing.
+ *
+ * <p>A summary is text with one tab-separated record per line. Backslashes,
+ * tabs and line breaks in values are escaped. It is split over as many
+ * constants as the class file format's limit on their length needs.
+ */
+final class ModuleSummary {
+  /** The first line of every summary. Changes whenever the format does. */
+  static final String FORMAT = "dagger-module-summary-1";
+  /** The names of the adapter's constants are this prefix followed by 0, 1, 2 and so on. */
+  static final String CONSTANT_PREFIX = "MODULE_SUMMARY_";
+  /** Short enough that the UTF-8 of each constant fits in a class file's constant pool. */
+  private static final int CONSTANT_LENGTH = 16384;
+
+  final boolean complete;
+  final boolean library;
+  final boolean overrides;
+  /** Qualified names of the included modules. */
+  final List<String> includes;
+  /** Qualified name of the module this one adds to, or null. */
+  final String addsTo;
+  /** Keys of the injectable types. */
+  final List<String> injects;
+  /** Qualified names of the types with static injections. */
+  final List<String> staticInjections;
+  final List<ProvidesMethod> providesMethods;
+  /** Values of {@code includes} that aren't types. Not part of the written summary. */
+  final List<Object> unexpectedIncludes;
+
+  ModuleSummary(boolean complete, boolean library, boolean overrides, List<String> includes,
+      String addsTo, List<String> injects, List<String> staticInjections,
+      List<ProvidesMethod> providesMethods, List<Object> unexpectedIncludes) {
+    this.complete = complete;
+    this.library = library;
+    this.overrides = overrides;
+    this.includes = includes;
+    this.addsTo = addsTo;
+    this.injects = injects;
+    this.staticInjections = staticInjections;
+    this.providesMethods = providesMethods;
+    this.unexpectedIncludes = unexpectedIncludes;
+  }
+
+  /**
+   * Returns the summary of {@code module}, derived from its elements, or null
+   * if it has no {@code @Module} annotation.
+   */
+  static ModuleSummary create(Types types, TypeElement module) {
+    Map<String, Object> annotation = getAnnotation(Module.class, module);
+    return annotation != null ? create(types, module, annotation) : null;
+  }
+
+  /** Returns the summary of {@code module}, whose {@code @Module} has {@code annotation}. */
+  static ModuleSummary create(Types types, TypeElement module, Map<String, Object> annotation) {
+
+    List<String> includes = new ArrayList<String>();
+    List<Object> unexpectedIncludes = new ArrayList<Object>();
+    for (Object include : (Object[]) annotation.get("includes")) {
+      if (include instanceof TypeMirror) {
+        includes.add(qualifiedName(types, (TypeMirror) include));
+      } else {
+        unexpectedIncludes.add(include);
+      }
+    }
+    String addsTo = null;
+    Object addsToValue = annotation.get("addsTo");
+    if (!addsToValue.equals(Void.class)) {
+      if (addsToValue instanceof TypeMirror) {
+        addsTo = qualifiedName(types, (TypeMirror) addsToValue);
+      } else {
+        unexpectedIncludes.add(addsToValue);
+      }
+    }
+
+    List<String> injects = new ArrayList<String>();
+    for (Object injectableTypeObject : (Object[]) annotation.get("injects")) {
+      TypeMirror injectableType = (TypeMirror) injectableTypeObject;
+      injects.add(isInterface(injectableType)
+          ? GeneratorKeys.get(injectableType)
+          : GeneratorKeys.rawMembersKey(injectableType));
+    }
+
+    List<String> staticInjections = new ArrayList<String>();
+    for (Object staticInjection : (Object[]) annotation.get("staticInjections")) {
+      staticInjections.add(qualifiedName(types, (TypeMirror) staticInjection));
+    }
+
+    List<ProvidesMethod> providesMethods = new ArrayList<ProvidesMethod>();
+    for (Element enclosed : module.getEnclosedElements()) {
+      Provides provides = enclosed.getAnnotation(Provides.class);
+      if (provides == null) {
+        continue;
+      }
+      ExecutableElement method = (ExecutableElement) enclosed;
+      List<String> parameterKeys = new ArrayList<String>();
+      for (VariableElement parameter : method.getParameters()) {
+        parameterKeys.add(GeneratorKeys.get(parameter));
+      }
+      providesMethods.add(new ProvidesMethod(provides.type(), GeneratorKeys.get(method),
+          provides.type() == Provides.Type.SET ? GeneratorKeys.getSetKey(method) : null,
+          method.getAnnotation(Singleton.class) != null, methodName(method), method.toString(),
+          parameterKeys, method));
+    }
+
+    return new ModuleSummary((Boolean) annotation.get("complete"),
+        (Boolean) annotation.get("library"), (Boolean) annotation.get("overrides"), includes,
+        addsTo, injects, staticInjections, providesMethods, unexpectedIncludes);
+  }
+
+  private static String qualifiedName(Types types, TypeMirror type) {
+    return ((TypeElement) types.asElement(type)).getQualifiedName().toString();
+  }
+
+  void write(Writer writer) throws IOException {
+    writeRecord(writer, FORMAT);
+    writeRecord(writer, "module", Boolean.toString(complete), Boolean.toString(library),
+        Boolean.toString(overrides));
+    for (String include : includes) {
+      writeRecord(writer, "includes", include);
+    }
+    if (addsTo != null) {
+      writeRecord(writer, "addsTo", addsTo);
+    }
+    for (String key : injects) {
+      writeRecord(writer, "injects", key);
+    }
+    for (String staticInjection : staticInjections) {
+      writeRecord(writer, "staticInjection", staticInjection);
+    }
+    for (ProvidesMethod method : providesMethods) {
+      writeRecord(writer, "provides", method.type.name(), method.key,
+          method.setKey != null ? method.setKey : "", Boolean.toString(method.singleton),
+          method.name, method.signature);
+      for (String parameterKey : method.parameterKeys) {
+        writeRecord(writer, "parameter", parameterKey);
+      }
+    }
+  }
+
+  /** Returns this summary split into the values of the adapter's constants. */
+  List<String> toConstants() throws IOException {
+    StringWriter writer = new StringWriter();
+    write(writer);
+    String summary = writer.toString();
+    List<String> result = new ArrayList<String>();
+    for (int start = 0; start < summary.length(); start += CONSTANT_LENGTH) {
+      result.add(summary.substring(start, Math.min(summary.length(), start + CONSTANT_LENGTH)));
+    }
+    return result;
+  }
+
+  /**
+   * Reads the summary stored in the constants of {@code adapter}, or returns
+   * null if it has none.
+   */
+  static ModuleSummary read(TypeElement adapter) throws IOException {
+    Map<String, String> constants = new HashMap<String, String>();
+    for (VariableElement field : ElementFilter.fieldsIn(adapter.getEnclosedElements())) {
+      String name = field.getSimpleName().toString();
+      Object value = field.getConstantValue();
+      if (name.startsWith(CONSTANT_PREFIX) && value instanceof String) {
+        constants.put(name, (String) value);
+      }
+    }
+    if (constants.isEmpty()) {
+      return null;
+    }
+    StringBuilder summary = new StringBuilder();
+    for (int i = 0; constants.containsKey(CONSTANT_PREFIX + i); i++) {
+      summary.append(constants.get(CONSTANT_PREFIX + i));
+    }
+    return read(new StringReader(summary.toString()));
+  }
+
+  /** Reads a summary written by {@link #write}. */
+  static ModuleSummary read(Reader reader) throws IOException {
+    BufferedReader lines = new BufferedReader(reader);
+    String format = lines.readLine();
+    if (!FORMAT.equals(format)) {
+      throw new IOException("Unexpected module summary format: " + format);
+    }
+
+    Boolean complete = null;
+    boolean library = false;
+    boolean overrides = false;
+    List<String> includes = new ArrayList<String>();
+    String addsTo = null;
+    List<String> injects = new ArrayList<String>();
+    List<String> staticInjections = new ArrayList<String>();
+    List<ProvidesMethod> providesMethods = new ArrayList<ProvidesMethod>();
+    List<String> parameterKeys = null;
+    for (String line; (line = lines.readLine()) != null;) {
+      String[] record = readRecord(line);
+      String kind = record[0];
+      if (kind.equals("module") && record.length == 4) {
+        complete = Boolean.valueOf(record[1]);
+        library = Boolean.parseBoolean(record[2]);
+        overrides = Boolean.parseBoolean(record[3]);
+      } else if (kind.equals("includes") && record.length == 2) {
+        includes.add(record[1]);
+      } else if (kind.equals("addsTo") && record.length == 2) {
+        addsTo = record[1];
+      } else if (kind.equals("injects") && record.length == 2) {
+        injects.add(record[1]);
+      } else if (kind.equals("staticInjection") && record.length == 2) {
+        staticInjections.add(record[1]);
+      } else if (kind.equals("provides") && record.length == 7) {
+        Provides.Type type;
+        try {
+          type = Provides.Type.valueOf(record[1]);
+        } catch (IllegalArgumentException e) {
+          throw new IOException("Unexpected provides type: " + record[1]);
+        }
+        parameterKeys = new ArrayList<String>();
+        providesMethods.add(new ProvidesMethod(type, record[2],
+            record[3].length() > 0 ? record[3] : null, Boolean.parseBoolean(record[4]),
+            record[5], record[6], parameterKeys, null));
+      } else if (kind.equals("parameter") && record.length == 2 && parameterKeys != null) {
+        parameterKeys.add(record[1]);
+      } else {
+        throw new IOException("Unexpected module summary record: " + line);
+      }
+    }
+    if (complete == null) {
+      throw new IOException("Module summary has no module record");
+    }
+    return new ModuleSummary(complete, library, overrides, includes, addsTo, injects,
+        staticInjections, providesMethods, Collections.<Object>emptyList());
+  }
+
+  private static void writeRecord(Writer writer, String... values) throws IOException {
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        writer.write('\t');
+      }
+      String value = values[i];
+      for (int c = 0; c < value.length(); c++) {
+        char ch = value.charAt(c);
+        switch (ch) {
+          case '\\':
+            writer.write("\\\\");
+            break;
+          case '\t':
+            writer.write("\\t");
+            break;
+          case '\n':
+            writer.write("\\n");
+            break;
+          case '\r':
+            writer.write("\\r");
+            break;
+          default:
+            writer.write(ch);
+        }
+      }
+    }
+    writer.write('\n');
+  }
+
+  private static String[] readRecord(String line) throws IOException {
+    List<String> values = new ArrayList<String>();
+    StringBuilder value = new StringBuilder();
+    for (int c = 0; c < line.length(); c++) {
+      char ch = line.charAt(c);
+      if (ch == '\t') {
+        values.add(value.toString());
+        value.setLength(0);
+      } else if (ch != '\\') {
+        value.append(ch);
+      } else if (++c == line.length()) {
+        throw new IOException("Unterminated escape: " + line);
+      } else {
+        switch (line.charAt(c)) {
+          case '\\':
+            value.append('\\');
+            break;
+          case 't':
+            value.append('\t');
+            break;
+          case 'n':
+            value.append('\n');
+            break;
+          case 'r':
+            value.append('\r');
+            break;
+          default:
+            throw new IOException("Unexpected escape: " + line);
+        }
+      }
+    }
+    values.add(value.toString());
+    return values.toArray(new String[values.size()]);
+  }
+
+  /** A {@code @Provides} method of a module. */
+  static final class ProvidesMethod {
+    final Provides.Type type;
+    /** The key of the provided type, or of the provided set's elements for {@code SET}. */
+    final String key;
+    /** For {@code SET} methods, the key of the set contributed to. Otherwise null. */
+    final String setKey;
+    final boolean singleton;
+    /** A user-presentable name like {@code coffee.CoffeeModule.provideHeater()}. */
+    final String name;
+    /** The method's signature, which requires its parameters' bindings. */
+    final String signature;
+    final List<String> parameterKeys;
+    /** The method, if this summary was derived from elements. Otherwise null. */
+    final ExecutableElement element;
+
+    ProvidesMethod(Provides.Type type, String key, String setKey, boolean singleton, String name,
+        String signature, List<String> parameterKeys, ExecutableElement element) {
+      this.type = type;
+      this.key = key;
+      this.setKey = setKey;
+      this.singleton = singleton;
+      this.name = name;
+      this.signature = signature;
+      this.parameterKeys = parameterKeys;
+      this.element = element;
+    }
+  }
+}
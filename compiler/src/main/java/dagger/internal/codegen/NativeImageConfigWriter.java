@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Emits a GraalVM {@code reflect-config.json} for a graph. Generated adapters
+ * are registered by name with their no-args constructor so that the runtime
+ * loader can instantiate them; types without adapters are registered for the
+ * reflective fallback bindings.
+ */
+final class NativeImageConfigWriter {
+  /** Registers a class for {@code Class.forName()} and its no-args constructor. */
+  private static final int ADAPTER = 1;
+  /** Registers a class's declared fields, as read by reflective injection. */
+  private static final int FIELDS = 2;
+  /** Registers a class's declared constructors, as read by reflective bindings. */
+  private static final int CONSTRUCTORS = 4;
+
+  private final Map<String, Integer> classes = new TreeMap<String, Integer>();
+
+  /** Registers a generated adapter class, like {@code Foo$$InjectAdapter}. */
+  public void adapter(String className) {
+    add(className, ADAPTER);
+  }
+
+  /** Registers a class whose injections are performed reflectively. */
+  public void reflectiveBinding(String className) {
+    add(className, FIELDS | CONSTRUCTORS);
+  }
+
+  /** Registers a supertype whose fields a reflective binding of a subclass injects. */
+  public void reflectiveSupertype(String className) {
+    add(className, FIELDS);
+  }
+
+  /** Registers a class whose static fields are injected reflectively. */
+  public void reflectiveStaticInjection(String className) {
+    add(className, FIELDS);
+  }
+
+  private void add(String className, int flags) {
+    Integer previous = classes.get(className);
+    classes.put(className, previous != null ? previous | flags : flags);
+  }
+
+  public void write(Writer writer) throws IOException {
+    writer.write("[");
+    String separator = "\n";
+    for (Map.Entry<String, Integer> entry : classes.entrySet()) {
+      int flags = entry.getValue();
+      writer.write(separator);
+      writer.write("  {\n    \"name\" : ");
+      writer.write(jsonString(entry.getKey()));
+      if ((flags & ADAPTER) != 0) {
+        writer.write(",\n    \"methods\" : "
+            + "[ { \"name\" : \"<init>\", \"parameterTypes\" : [ ] } ]");
+      }
+      if ((flags & CONSTRUCTORS) != 0) {
+        writer.write(",\n    \"allDeclaredConstructors\" : true");
+      }
+      if ((flags & FIELDS) != 0) {
+        writer.write(",\n    \"allDeclaredFields\" : true");
+      }
+      writer.write("\n  }");
+      separator = ",\n";
+    }
+    writer.write("\n]\n");
+  }
+
+  static String jsonString(String value) {
+    StringBuilder result = new StringBuilder().append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < 0x20) {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.append('"').toString();
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Statistics about a compilation, shared by Dagger's processors. Set {@code
+ * -Adagger.statsReport=name} to write them as JSON to the resource {@code
+ * name} in the class output, like {@code dagger-stats.json}, when processing
+ * is over. The report has the time spent in each processor and in
+ * each phase of graph analysis, the number of adapters generated, the bindings
+ * linked for each root module from the largest graph down, and the types that
+ * the most bindings were created for.
+ *
+ * <p>Phases that run on several threads, like linking with {@code
+ * -Adagger.graphAnalysisThreads}, report the sum of their time on each thread.
+ * Without the option, nothing is recorded.
+ */
+final class ProcessingStats {
+  static final String REPORT_OPTION = "dagger.statsReport";
+  private static final int MOST_REQUESTED_TYPES = 20;
+
+  /**
+   * Statistics by compilation. Build tools may give each processor its own
+   * wrapper of the processing environment, but the element utilities are the
+   * compiler's own.
+   */
+  private static final Map<Elements, ProcessingStats> STATS =
+      new WeakHashMap<Elements, ProcessingStats>();
+
+  /** The resource to write the report to, or null if statistics are off. */
+  private final String reportName;
+  /** The environment of the processor that writes the report, or null if there is none. */
+  private ProcessingEnvironment reportEnv;
+  /** The processors that have processed a round, and those whose last round is done. */
+  private final Set<String> processors = new HashSet<String>();
+  private final Set<String> finishedProcessors = new HashSet<String>();
+  /** The number of calls and the total nanoseconds of each phase, in order of first call. */
+  private final Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+  private final Map<String, Integer> adapters = new LinkedHashMap<String, Integer>();
+  private final List<RootModule> rootModules = new ArrayList<RootModule>();
+  private final Map<String, Integer> injectBindingsByType = new HashMap<String, Integer>();
+  private int typesAnalyzed;
+
+  private ProcessingStats(ProcessingEnvironment processingEnv) {
+    String path = processingEnv.getOptions().get(REPORT_OPTION);
+    this.reportName = path != null && path.trim().length() > 0 ? path.trim() : null;
+  }
+
+  /** Returns the statistics of the compilation that {@code processingEnv} belongs to. */
+  static ProcessingStats of(ProcessingEnvironment processingEnv) {
+    synchronized (STATS) {
+      ProcessingStats result = STATS.get(processingEnv.getElementUtils());
+      if (result == null) {
+        result = new ProcessingStats(processingEnv);
+        STATS.put(processingEnv.getElementUtils(), result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Writes the report with {@code processingEnv}'s {@code Filer}. Only an
+   * aggregating processor may call this: incremental builds reject files that
+   * an isolating processor creates without an originating element.
+   */
+  synchronized void writeReportWith(ProcessingEnvironment processingEnv) {
+    reportEnv = processingEnv;
+  }
+
+  synchronized void addTime(String phase, long nanos) {
+    if (reportName == null) {
+      return;
+    }
+    long[] totals = phases.get(phase);
+    if (totals == null) {
+      totals = new long[2];
+      phases.put(phase, totals);
+    }
+    totals[0]++;
+    totals[1] += nanos;
+  }
+
+  /**
+   * Records that {@code processor} spent {@code nanos} on {@code round}. The
+   * compiler gives the last round to every processor that processed an
+   * earlier one, so the report is written once the last of them is done, by
+   * the processor given to {@link #writeReportWith}.
+   */
+  synchronized void roundProcessed(Object processor, RoundEnvironment round, long nanos) {
+    if (reportName == null) {
+      return;
+    }
+    String name = processor.getClass().getSimpleName();
+    addTime(name, nanos);
+    processors.add(name);
+    if (round.processingOver() && finishedProcessors.add(name)
+        && finishedProcessors.size() == processors.size() && reportEnv != null) {
+      writeReport();
+    }
+  }
+
+  /** Records an adapter of {@code kind}, like {@code "inject"} or {@code "module"}. */
+  synchronized void adapterGenerated(String kind) {
+    if (reportName == null) {
+      return;
+    }
+    Integer count = adapters.get(kind);
+    adapters.put(kind, count != null ? count + 1 : 1);
+  }
+
+  synchronized void typeAnalyzed() {
+    if (reportName != null) {
+      typesAnalyzed++;
+    }
+  }
+
+  /** Records a graph analysis binding for {@code className}, for any root module. */
+  synchronized void injectBindingCreated(String className) {
+    if (reportName == null) {
+      return;
+    }
+    Integer count = injectBindingsByType.get(className);
+    injectBindingsByType.put(className, count != null ? count + 1 : 1);
+  }
+
+  synchronized void rootModuleLinked(String moduleName, int bindings, long nanos) {
+    if (reportName != null) {
+      rootModules.add(new RootModule(moduleName, bindings, nanos));
+    }
+  }
+
+  private void writeReport() {
+    try {
+      FileObject resource = reportEnv.getFiler()
+          .createResource(StandardLocation.CLASS_OUTPUT, "", reportName);
+      Writer writer = resource.openWriter();
+      try {
+        writeJson(writer);
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      reportEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          "Could not write " + REPORT_OPTION + " to " + reportName + ": " + e);
+    }
+  }
+
+  private void writeJson(Writer writer) throws IOException {
+    writer.write("{\n  \"phases\": [");
+    String separator = "\n";
+    for (Map.Entry<String, long[]> phase : phases.entrySet()) {
+      writer.write(separator + "    {\"phase\": " + quote(phase.getKey())
+          + ", \"calls\": " + phase.getValue()[0] + ", \"nanos\": " + phase.getValue()[1] + "}");
+      separator = ",\n";
+    }
+
+    writer.write("\n  ],\n  \"adapters\": {");
+    separator = "";
+    for (Map.Entry<String, Integer> adapter : adapters.entrySet()) {
+      writer.write(separator + quote(adapter.getKey()) + ": " + adapter.getValue());
+      separator = ", ";
+    }
+    writer.write("},\n  \"typesAnalyzed\": " + typesAnalyzed);
+
+    List<RootModule> largestFirst = new ArrayList<RootModule>(rootModules);
+    Collections.sort(largestFirst, new Comparator<RootModule>() {
+      @Override public int compare(RootModule a, RootModule b) {
+        return a.bindings != b.bindings ? (a.bindings > b.bindings ? -1 : 1)
+            : a.name.compareTo(b.name);
+      }
+    });
+    writer.write(",\n  \"rootModules\": [");
+    separator = "\n";
+    for (RootModule rootModule : largestFirst) {
+      writer.write(separator + "    {\"module\": " + quote(rootModule.name)
+          + ", \"bindings\": " + rootModule.bindings + ", \"linkNanos\": " + rootModule.nanos
+          + "}");
+      separator = ",\n";
+    }
+
+    List<Map.Entry<String, Integer>> mostRequested =
+        new ArrayList<Map.Entry<String, Integer>>(injectBindingsByType.entrySet());
+    Collections.sort(mostRequested, new Comparator<Map.Entry<String, Integer>>() {
+      @Override public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+        int result = b.getValue().compareTo(a.getValue());
+        return result != 0 ? result : a.getKey().compareTo(b.getKey());
+      }
+    });
+    writer.write("\n  ],\n  \"mostRequestedTypes\": [");
+    separator = "\n";
+    for (int i = 0; i < mostRequested.size() && i < MOST_REQUESTED_TYPES; i++) {
+      Map.Entry<String, Integer> type = mostRequested.get(i);
+      if (type.getValue() < 2) {
+        break;
+      }
+      writer.write(separator + "    {\"type\": " + quote(type.getKey())
+          + ", \"bindings\": " + type.getValue() + "}");
+      separator = ",\n";
+    }
+    writer.write("\n  ]\n}\n");
+  }
+
+  /** Returns {@code value} as a JSON string. */
+  static String quote(String value) {
+    StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          result.append("\\\"");
+          break;
+        case '\\':
+          result.append("\\\\");
+          break;
+        case '\n':
+          result.append("\\n");
+          break;
+        case '\r':
+          result.append("\\r");
+          break;
+        case '\t':
+          result.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            result.append(String.format("\\u%04x", (int) c));
+          } else {
+            result.append(c);
+          }
+      }
+    }
+    return result.append('"').toString();
+  }
+
+  private static final class RootModule {
+    final String name;
+    final int bindings;
+    final long nanos;
+
+    RootModule(String name, int bindings, long nanos) {
+      this.name = name;
+      this.bindings = bindings;
+      this.nanos = nanos;
+    }
+  }
+}
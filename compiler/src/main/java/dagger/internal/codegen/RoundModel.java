@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import dagger.Module;
+import dagger.Provides;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import javax.annotation.processing.RoundEnvironment;
+import javax.inject.Inject;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+
+import static dagger.internal.codegen.Util.getAnnotation;
+import static javax.lang.model.element.ElementKind.CONSTRUCTOR;
+import static javax.lang.model.element.ElementKind.METHOD;
+import static javax.lang.model.element.ElementKind.PACKAGE;
+
+/**
+ * The elements of a processing round that Dagger's processors look at,
+ * collected in a single pass over the round's root elements. Every processor
+ * gets the same model for a round, so the elements are scanned once per round
+ * instead of once per processor and annotation.
+ */
+final class RoundModel {
+  /** Models by round. Rounds are only reachable while javac processes them. */
+  private static final Map<RoundEnvironment, RoundModel> MODELS =
+      new WeakHashMap<RoundEnvironment, RoundModel>();
+
+  /** Every element of the round's root elements, including parameters, in scan order. */
+  final List<Element> allElements = new ArrayList<Element>();
+  /** The method or constructor of each parameter in {@link #allElements}. */
+  final Map<Element, Element> parametersToTheirMethods = new LinkedHashMap<Element, Element>();
+  final Set<Element> injectElements = new LinkedHashSet<Element>();
+  final Set<Element> moduleElements = new LinkedHashSet<Element>();
+  final Set<Element> providesElements = new LinkedHashSet<Element>();
+  private final Map<Element, Map<String, Object>> moduleAnnotations =
+      new IdentityHashMap<Element, Map<String, Object>>();
+
+  private RoundModel(RoundEnvironment env) {
+    for (Element element : env.getRootElements()) {
+      addAllEnclosed(element);
+    }
+  }
+
+  /** Returns the model of {@code env}, scanning its elements if this is the first request. */
+  static RoundModel of(RoundEnvironment env) {
+    synchronized (MODELS) {
+      RoundModel result = MODELS.get(env);
+      if (result == null) {
+        result = new RoundModel(env);
+        MODELS.put(env, result);
+      }
+      return result;
+    }
+  }
+
+  private void addAllEnclosed(Element element) {
+    add(element);
+    if (element.getKind() == PACKAGE) {
+      // A package's enclosed elements are all of its classes, not only this round's.
+      return;
+    }
+    for (Element enclosed : element.getEnclosedElements()) {
+      addAllEnclosed(enclosed);
+      if (enclosed.getKind() == METHOD || enclosed.getKind() == CONSTRUCTOR) {
+        for (Element parameter : ((ExecutableElement) enclosed).getParameters()) {
+          add(parameter);
+          parametersToTheirMethods.put(parameter, enclosed);
+        }
+      }
+    }
+  }
+
+  private void add(Element element) {
+    allElements.add(element);
+    if (element.getAnnotation(Inject.class) != null) {
+      injectElements.add(element);
+    }
+    if (element.getAnnotation(Module.class) != null) {
+      moduleElements.add(element);
+    }
+    if (element.getAnnotation(Provides.class) != null) {
+      providesElements.add(element);
+    }
+  }
+
+  /**
+   * Returns the attributes of {@code module}'s {@code @Module} annotation, or
+   * null if it has none. Like {@link Util#getAnnotation}, this throws
+   * IllegalStateException if the annotation refers to types that don't exist
+   * yet; such failures aren't remembered.
+   */
+  synchronized Map<String, Object> moduleAnnotation(TypeElement module) {
+    if (moduleAnnotations.containsKey(module)) {
+      return moduleAnnotations.get(module);
+    }
+    Map<String, Object> result = getAnnotation(Module.class, module);
+    moduleAnnotations.put(module, result != null ? Collections.unmodifiableMap(result) : null);
+    return moduleAnnotations.get(module);
+  }
+}
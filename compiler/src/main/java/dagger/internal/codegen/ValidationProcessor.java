@@ -18,10 +18,8 @@ package dagger.internal.codegen;
 
 import dagger.Module;
 import dagger.Provides;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
@@ -33,7 +31,6 @@ import javax.inject.Scope;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
-import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
 
@@ -60,17 +57,22 @@ public final class ValidationProcessor extends AbstractProcessor {
   }
 
   @Override public boolean process(Set<? extends TypeElement> types, RoundEnvironment env) {
-    List<Element> allElements = new ArrayList<Element>();
-    Map<Element, Element> parametersToTheirMethods = new LinkedHashMap<Element, Element>();
-    getAllElements(env, allElements, parametersToTheirMethods);
-    for (Element element : allElements) {
+    long start = System.nanoTime();
+    RoundModel model = RoundModel.of(env);
+    Map<Element, Element> parametersToTheirMethods = model.parametersToTheirMethods;
+    for (Element element : model.allElements) {
         validateProvides(element);
         validateScoping(element);
         validateQualifiers(element, parametersToTheirMethods);
     }
+    ProcessingStats.of(processingEnv).roundProcessed(this, env, System.nanoTime() - start);
     return false;
   }
 
+  @Override public Set<String> getSupportedOptions() {
+    return Collections.singleton(ProcessingStats.REPORT_OPTION);
+  }
+
   private void validateProvides(Element element) {
     if (element.getAnnotation(Provides.class) != null
         && element.getEnclosingElement().getAnnotation(Module.class) == null) {
@@ -157,27 +159,6 @@ public final class ValidationProcessor extends AbstractProcessor {
     }
   }
 
-  private void getAllElements(
-      RoundEnvironment env, List<Element> result, Map<Element, Element> parametersToTheirMethods) {
-    for (Element element : env.getRootElements()) {
-      addAllEnclosed(element, result, parametersToTheirMethods);
-    }
-  }
-
-  private void addAllEnclosed(
-      Element element, List<Element> result, Map<Element, Element> parametersToTheirMethods) {
-    result.add(element);
-    for (Element enclosed : element.getEnclosedElements()) {
-      addAllEnclosed(enclosed, result, parametersToTheirMethods);
-      if (enclosed.getKind() == METHOD || enclosed.getKind() == CONSTRUCTOR) {
-        for (Element parameter : ((ExecutableElement) enclosed).getParameters()) {
-          result.add(parameter);
-          parametersToTheirMethods.put(parameter, enclosed);
-        }
-      }
-    }
-  }
-
   private boolean isProvidesMethod(Element element) {
     return element.getKind() == METHOD && element.getAnnotation(Provides.class) != null;
   }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/** Root modules of a compilation share the analysis of their modules and types. */
+@RunWith(JUnit4.class)
+public final class GraphAnalysisProcessorTest {
+  private static final String[] ENGINE = {
+      "package test;",
+      "import javax.inject.Inject;",
+      "class Engine {",
+      "  @Inject Engine(Fuel fuel) {}",
+      "}" };
+  private static final String[] FUEL = {
+      "package test;",
+      "interface Fuel {",
+      "}" };
+  private static final String[] SHARED_MODULE = {
+      "package test;",
+      "import dagger.Module;",
+      "import dagger.Provides;",
+      "@Module(library = true)",
+      "class SharedModule {",
+      "  @Provides Fuel provideFuel() { return null; }",
+      "}" };
+
+  private static String[] rootModule(String name, String includes) {
+    return new String[] {
+        "package test;",
+        "import dagger.Module;",
+        "@Module(injects = Engine.class" + includes + ")",
+        "class " + name + " {",
+        "}" };
+  }
+
+  @Test public void errorsInSharedTypesAreReportedForEachRoot() throws IOException {
+    TestCompiler.Result result = new TestCompiler()
+        .source("test.Engine", ENGINE)
+        .source("test.Fuel", FUEL)
+        .source("test.FirstModule", rootModule("FirstModule", ""))
+        .source("test.SecondModule", rootModule("SecondModule", ""))
+        .compile();
+    assertThat(result.success).isFalse();
+    assertThat(errors(result)).containsOnly(
+        "No binding for test.Fuel required by test.Engine for test.FirstModule",
+        "No binding for test.Fuel required by test.Engine for test.SecondModule");
+  }
+
+  @Test public void rootsSharingModulesAndTypesAreEachAnalyzedInFull() throws IOException {
+    TestCompiler.Result alone = new TestCompiler()
+        .source("test.Engine", ENGINE)
+        .source("test.Fuel", FUEL)
+        .source("test.SharedModule", SHARED_MODULE)
+        .source("test.FirstModule",
+            rootModule("FirstModule", ", includes = SharedModule.class"))
+        .compile();
+    assertThat(alone.success).overridingErrorMessage(alone.toString()).isTrue();
+
+    TestCompiler.Result together = new TestCompiler()
+        .source("test.Engine", ENGINE)
+        .source("test.Fuel", FUEL)
+        .source("test.SharedModule", SHARED_MODULE)
+        .source("test.FirstModule",
+            rootModule("FirstModule", ", includes = SharedModule.class"))
+        .source("test.SecondModule",
+            rootModule("SecondModule", ", includes = SharedModule.class"))
+        .compile();
+    assertThat(together.success).overridingErrorMessage(together.toString()).isTrue();
+
+    String dot = alone.generatedSource("test/FirstModule.dot");
+    assertThat(dot).isNotNull();
+    assertThat(together.generatedSource("test/FirstModule.dot")).isEqualTo(dot);
+    assertThat(together.generatedSource("test/SecondModule.dot")).isEqualTo(dot);
+  }
+
+  @Test public void parallelAnalysisMatchesSequentialAnalysis() throws IOException {
+    TestCompiler.Result sequential = manyRoots(new TestCompiler()).compile();
+    TestCompiler.Result parallel = manyRoots(new TestCompiler())
+        .option("-A" + GraphAnalysisProcessor.THREADS_OPTION + "=4")
+        .compile();
+
+    assertThat(parallel.success).isFalse();
+    // Errors are reported in order of the root modules, regardless of which finished first.
+    assertThat(errors(parallel)).isEqualTo(errors(sequential));
+    assertThat(errors(parallel)).hasSize(4);
+    for (int i = 0; i < 8; i++) {
+      String dot = "test/Root" + i + "Module.dot";
+      assertThat(parallel.generatedSource(dot)).isEqualTo(sequential.generatedSource(dot));
+    }
+    assertThat(parallel.generatedSource("test/Root1Module.dot")).isNotNull();
+  }
+
+  @Test public void dotRootLimitsDotFilesToGraphsWithThatType() throws IOException {
+    TestCompiler.Result result = new TestCompiler()
+        .source("test.Engine", ENGINE)
+        .source("test.Fuel", FUEL)
+        .source("test.SharedModule", SHARED_MODULE)
+        .source("test.EngineModule",
+            rootModule("EngineModule", ", includes = SharedModule.class"))
+        .source("test.FuelModule", new String[] {
+            "package test;",
+            "import dagger.Module;",
+            "@Module(injects = Fuel.class, includes = SharedModule.class)",
+            "class FuelModule {",
+            "}" })
+        .option("-A" + GraphAnalysisProcessor.DOT_ROOT_OPTION + "=test.Engine")
+        .compile();
+    assertThat(result.success).overridingErrorMessage(result.toString()).isTrue();
+    assertThat(result.generatedSource("test/EngineModule.dot")).contains("Engine -> Fuel;");
+    assertThat(result.generatedSource("test/FuelModule.dot")).isNull();
+    assertThat(result.generatedSource("test/SharedModule.dot")).isNull();
+  }
+
+  /** Adds eight root modules to {@code compiler}. The even ones are missing a binding. */
+  private static TestCompiler manyRoots(TestCompiler compiler) {
+    compiler.source("test.Engine", ENGINE)
+        .source("test.Fuel", FUEL)
+        .source("test.SharedModule", SHARED_MODULE);
+    for (int i = 0; i < 8; i++) {
+      String name = "Root" + i + "Module";
+      compiler.source("test." + name,
+          rootModule(name, i % 2 == 0 ? "" : ", includes = SharedModule.class"));
+    }
+    return compiler;
+  }
+
+  private static List<String> errors(TestCompiler.Result result) {
+    List<String> errors = new ArrayList<String>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : result.diagnostics) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        errors.add(diagnostic.getMessage(null));
+      }
+    }
+    return errors;
+  }
+}
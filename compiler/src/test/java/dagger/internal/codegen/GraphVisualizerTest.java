@@ -15,8 +15,15 @@
  */
 package dagger.internal.codegen;
 
+import dagger.internal.Binding;
 import dagger.internal.Keys;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import javax.inject.Named;
@@ -77,6 +84,108 @@ public final class GraphVisualizerTest {
     assertThat(graphVisualizer.shortName(key)).isEqualTo("String");
   }
 
+  @Test public void writesWholeGraphSortedByName() throws IOException {
+    assertThat(write(new GraphVisualizer(), null)).isEqualTo(""
+        + "digraph G1 {\n"
+        + "  concentrate = true;\n"
+        + "  CoffeeMaker -> Heater;\n"
+        + "  CoffeeMaker -> Pump;\n"
+        + "  Pump -> Heater;\n"
+        + "  n2 [label=\"@Named String\"];\n"
+        + "  Thermosiphon -> n2;\n"
+        + "}\n");
+  }
+
+  @Test public void writesBindingsReachableFromRootsWithinMaxDepth() throws IOException {
+    assertThat(write(new GraphVisualizer(1, false), Arrays.asList("coffee.Pump")))
+        .isEqualTo(""
+        + "digraph G1 {\n"
+        + "  concentrate = true;\n"
+        + "  Pump -> Heater;\n"
+        + "}\n");
+    assertThat(write(new GraphVisualizer(0, false), Arrays.asList("members/coffee.CoffeeMaker")))
+        .isEqualTo(""
+        + "digraph G1 {\n"
+        + "  concentrate = true;\n"
+        + "}\n");
+  }
+
+  @Test public void clustersNodesByPackage() throws IOException {
+    assertThat(write(new GraphVisualizer(Integer.MAX_VALUE, true),
+        Collections.singletonList("members/coffee.CoffeeMaker"))).isEqualTo(""
+        + "digraph G1 {\n"
+        + "  concentrate = true;\n"
+        + "  subgraph cluster2 {\n"
+        + "    label = coffee;\n"
+        + "    CoffeeMaker;\n"
+        + "    Heater;\n"
+        + "    Pump;\n"
+        + "  }\n"
+        + "  CoffeeMaker -> Heater;\n"
+        + "  CoffeeMaker -> Pump;\n"
+        + "  Pump -> Heater;\n"
+        + "}\n");
+  }
+
+  @Test public void collidingShortNamesUseFullKeys() throws IOException {
+    TestBinding teaHeater = new TestBinding("tea.Heater", null);
+    TestBinding coffeeHeater = new TestBinding("coffee.Heater", null);
+    TestBinding kitchen = new TestBinding("Kitchen", null, teaHeater, coffeeHeater);
+    Map<String, Binding<?>> bindings = new LinkedHashMap<String, Binding<?>>();
+    for (TestBinding binding : Arrays.asList(teaHeater, kitchen, coffeeHeater)) {
+      bindings.put(binding.provideKey, binding);
+    }
+    assertThat(write(new GraphVisualizer(), bindings, null)).isEqualTo(""
+        + "digraph G1 {\n"
+        + "  concentrate = true;\n"
+        + "  n2 [label=\"tea.Heater\"];\n"
+        + "  Kitchen -> n2;\n"
+        + "  n3 [label=\"coffee.Heater\"];\n"
+        + "  Kitchen -> n3;\n"
+        + "}\n");
+  }
+
+  private String write(GraphVisualizer visualizer, Collection<String> rootKeys)
+      throws IOException {
+    return write(visualizer, coffeeBindings(), rootKeys);
+  }
+
+  private String write(GraphVisualizer visualizer, Map<String, Binding<?>> bindings,
+      Collection<String> rootKeys) throws IOException {
+    StringWriter writer = new StringWriter();
+    GraphVizWriter dotWriter = new GraphVizWriter(writer);
+    visualizer.write(bindings, rootKeys, dotWriter);
+    dotWriter.close();
+    return writer.toString();
+  }
+
+  /** A coffee maker that depends on a pump and a heater, and a thermosiphon on its own. */
+  private static Map<String, Binding<?>> coffeeBindings() {
+    TestBinding heater = new TestBinding("coffee.Heater", null);
+    TestBinding pump = new TestBinding("coffee.Pump", null, heater);
+    TestBinding coffeeMaker = new TestBinding(null, "members/coffee.CoffeeMaker", heater, pump);
+    TestBinding name = new TestBinding("@javax.inject.Named(value=name)/java.lang.String", null);
+    TestBinding thermosiphon = new TestBinding("Thermosiphon", null, name);
+    Map<String, Binding<?>> result = new LinkedHashMap<String, Binding<?>>();
+    for (TestBinding binding : Arrays.asList(thermosiphon, name, coffeeMaker, pump, heater)) {
+      result.put(binding.provideKey != null ? binding.provideKey : binding.membersKey, binding);
+    }
+    return result;
+  }
+
+  private static final class TestBinding extends Binding<Object> {
+    private final Binding<?>[] dependencies;
+
+    TestBinding(String provideKey, String membersKey, Binding<?>... dependencies) {
+      super(provideKey, membersKey, false, null);
+      this.dependencies = dependencies;
+    }
+
+    @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
+      Collections.addAll(get, dependencies);
+    }
+  }
+
   private String fieldKey(String fieldName) throws NoSuchFieldException {
     Field field = GraphVisualizerTest.class.getDeclaredField(fieldName);
     return Keys.get(field.getGenericType(), field.getAnnotations(), field);
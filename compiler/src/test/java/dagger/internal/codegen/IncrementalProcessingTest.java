@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Checks the requirements of incremental annotation processing: each generated
+ * file has one originating element, and recompiling only some sources against
+ * the output of a full build generates the same files for those sources.
+ */
+@RunWith(JUnit4.class)
+public final class IncrementalProcessingTest {
+  private static final String[] ENGINE = {
+      "package test;",
+      "import javax.inject.Inject;",
+      "class Engine {",
+      "  @Inject Engine() {}",
+      "}" };
+  private static final String[] VEHICLE = {
+      "package test;",
+      "import javax.inject.Inject;",
+      "class Vehicle {",
+      "  @Inject Engine engine;",
+      "}" };
+  private static final String[] CAR = {
+      "package test;",
+      "import javax.inject.Inject;",
+      "import javax.inject.Named;",
+      "class Car extends Vehicle {",
+      "  @Inject @Named(\"color\") String color;",
+      "  @Inject Car(Engine engine) {}",
+      "}" };
+  private static final String[] STATICS = {
+      "package test;",
+      "import javax.inject.Inject;",
+      "class Statics {",
+      "  @Inject static Engine engine;",
+      "}" };
+  private static final String[] CAR_MODULE = {
+      "package test;",
+      "import dagger.Module;",
+      "import dagger.Provides;",
+      "import javax.inject.Named;",
+      "@Module(injects = Car.class, staticInjections = Statics.class)",
+      "class CarModule {",
+      "  @Provides @Named(\"color\") String provideColor() { return \"red\"; }",
+      "}" };
+  private static final String[] APP_MODULE = {
+      "package test;",
+      "import dagger.Module;",
+      "@Module(includes = CarModule.class)",
+      "class AppModule {",
+      "}" };
+
+  private TestCompiler fullBuild() {
+    return new TestCompiler()
+        .source("test.Engine", ENGINE)
+        .source("test.Vehicle", VEHICLE)
+        .source("test.Car", CAR)
+        .source("test.Statics", STATICS)
+        .source("test.CarModule", CAR_MODULE);
+  }
+
+  @Test public void everyGeneratedFileHasOneOriginatingElement() throws IOException {
+    TestCompiler.Result result = fullBuild().compile();
+    assertThat(result.success).overridingErrorMessage(result.toString()).isTrue();
+
+    Map<String, List<String>> expected = new LinkedHashMap<String, List<String>>();
+    expected.put("test.Engine$$InjectAdapter", Arrays.asList("test.Engine"));
+    expected.put("test.Vehicle$$InjectAdapter", Arrays.asList("test.Vehicle"));
+    expected.put("test.Car$$InjectAdapter", Arrays.asList("test.Car"));
+    expected.put("test.Statics$$StaticInjection", Arrays.asList("test.Statics"));
+    expected.put("test.CarModule$$ModuleAdapter", Arrays.asList("test.CarModule"));
+    for (Map.Entry<String, List<String>> entry : expected.entrySet()) {
+      assertThat(result.originatingElements.get(entry.getKey()))
+          .overridingErrorMessage(entry.getKey() + ": " + result.originatingElements)
+          .isEqualTo(entry.getValue());
+    }
+    for (Map.Entry<String, List<String>> entry : result.originatingElements.entrySet()) {
+      assertThat(entry.getValue()).overridingErrorMessage(entry.getKey()).hasSize(1);
+    }
+  }
+
+  @Test public void partialRecompilationGeneratesSameAdapters() throws IOException {
+    TestCompiler.Result full = fullBuild().compile();
+    assertThat(full.success).overridingErrorMessage(full.toString()).isTrue();
+
+    // Like an incremental build, drop the changed sources' classes and generated classes.
+    File classpath = copyExcept(full.classesDir, "Car.class", "Car$$", "CarModule");
+    TestCompiler.Result partial = new TestCompiler()
+        .classpath(classpath)
+        .source("test.Car", CAR)
+        .source("test.CarModule", CAR_MODULE)
+        .compile();
+    assertThat(partial.success).overridingErrorMessage(partial.toString()).isTrue();
+
+    for (String path : Arrays.asList("test/Car$$InjectAdapter.java",
+        "test/CarModule$$ModuleAdapter.java")) {
+      String generated = partial.generatedSource(path);
+      assertThat(generated).overridingErrorMessage(path).isNotNull();
+      assertThat(generated).isEqualTo(full.generatedSource(path));
+    }
+    // Unchanged sources' adapters aren't regenerated, but graph analysis runs again in full.
+    assertThat(partial.originatingElements.keySet()).excludes("test.Engine$$InjectAdapter",
+        "test.Vehicle$$InjectAdapter", "test.Statics$$StaticInjection");
+    assertThat(partial.generatedSource("test/CarModule.dot")).isNotNull()
+        .isEqualTo(full.generatedSource("test/CarModule.dot"));
+  }
+
+  @Test public void summaryOfPrecompiledDependencyIsReadFromElements() throws Exception {
+    TestCompiler.Result full = fullBuild().source("test.AppModule", APP_MODULE).compile();
+    assertThat(full.success).overridingErrorMessage(full.toString()).isTrue();
+    TestCompiler.Result library = fullBuild().compile();
+    assertThat(library.success).overridingErrorMessage(library.toString()).isTrue();
+    ModuleSummary summary =
+        ModuleSummaryTest.readSummary(library.classesDir, "test.CarModule$$ModuleAdapter");
+    assertThat(summary.injects).isEqualTo(Arrays.asList("members/test.Car"));
+
+    TestCompiler.Result app = new TestCompiler()
+        .classpath(library.classesDir)
+        .source("test.AppModule", APP_MODULE)
+        .compile();
+    assertThat(app.success).overridingErrorMessage(app.toString()).isTrue();
+    // Gradle's incremental API rejects reading the class path through the Filer.
+    assertThat(app.resourcesRead).isEmpty();
+    assertThat(app.generatedSource("test/AppModule.dot")).isNotNull()
+        .isEqualTo(full.generatedSource("test/AppModule.dot"));
+  }
+
+  @Test public void incrementalProcessorsAreDeclared() throws IOException {
+    Map<String, String> declared = new LinkedHashMap<String, String>();
+    for (String line : readResource("META-INF/gradle/incremental.annotation.processors")) {
+      String[] parts = line.split(",");
+      declared.put(parts[0], parts[1]);
+    }
+    List<String> services =
+        readResource("META-INF/services/javax.annotation.processing.Processor");
+    assertThat(declared.keySet()).containsOnly(services.toArray());
+    assertThat(declared.get(GraphAnalysisProcessor.class.getName())).isEqualTo("aggregating");
+    assertThat(declared.get(InjectAdapterProcessor.class.getName())).isEqualTo("isolating");
+    assertThat(declared.get(ModuleAdapterProcessor.class.getName())).isEqualTo("isolating");
+    assertThat(declared.get(ValidationProcessor.class.getName())).isEqualTo("isolating");
+  }
+
+  private static List<String> readResource(String name) throws IOException {
+    InputStream in = IncrementalProcessingTest.class.getClassLoader().getResourceAsStream(name);
+    assertThat(in).overridingErrorMessage(name).isNotNull();
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+      List<String> lines = new ArrayList<String>();
+      for (String line; (line = reader.readLine()) != null;) {
+        if (line.trim().length() > 0) {
+          lines.add(line.trim());
+        }
+      }
+      return lines;
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Copies {@code directory}, skipping files whose names start with any of {@code prefixes}. */
+  private static File copyExcept(File directory, String... prefixes) throws IOException {
+    File result = File.createTempFile("dagger", "classpath");
+    if (!result.delete() || !result.mkdir()) {
+      throw new IOException("Unable to create temporary directory " + result);
+    }
+    copyExcept(directory, result, prefixes);
+    return result;
+  }
+
+  private static void copyExcept(File from, File to, String... prefixes) throws IOException {
+    files:
+    for (File file : from.listFiles()) {
+      for (String prefix : prefixes) {
+        if (file.getName().startsWith(prefix)) {
+          continue files;
+        }
+      }
+      File target = new File(to, file.getName());
+      if (file.isDirectory()) {
+        target.mkdir();
+        copyExcept(file, target, prefixes);
+        continue;
+      }
+      InputStream in = new FileInputStream(file);
+      try {
+        OutputStream out = new FileOutputStream(target);
+        try {
+          byte[] buffer = new byte[8192];
+          for (int count; (count = in.read(buffer)) != -1;) {
+            out.write(buffer, 0, count);
+          }
+        } finally {
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import dagger.Provides;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class ModuleSummaryTest {
+  private static final String ADAPTER = "lib.DriveModule$Inner$$ModuleAdapter";
+
+  private static final String[] ENGINE = {
+      "package lib;",
+      "import javax.inject.Inject;",
+      "public class Engine {",
+      "  @Inject public Engine() {}",
+      "}" };
+  private static final String[] DRIVE_MODULE = {
+      "package lib;",
+      "import dagger.Module;",
+      "import dagger.Provides;",
+      "import java.util.Set;",
+      "import javax.inject.Named;",
+      "import javax.inject.Singleton;",
+      "public class DriveModule {",
+      "  @Module(complete = false, library = true)",
+      "  public static class Inner {",
+      "    @Provides @Singleton @Named(\"wheels\") Integer provideWheels(Engine engine) {",
+      "      return 4;",
+      "    }",
+      "    @Provides(type = Provides.Type.SET) String provideName() { return \"car\"; }",
+      "  }",
+      "}" };
+  private static final String[] DRIVE_MODULE_WITHOUT_WHEELS = {
+      "package lib;",
+      "import dagger.Module;",
+      "import dagger.Provides;",
+      "public class DriveModule {",
+      "  @Module(complete = false, library = true)",
+      "  public static class Inner {",
+      "    @Provides(type = Provides.Type.SET) String provideName() { return \"car\"; }",
+      "  }",
+      "}" };
+  private static final String[] CAR = {
+      "package app;",
+      "import java.util.Set;",
+      "import javax.inject.Inject;",
+      "import javax.inject.Named;",
+      "public class Car {",
+      "  @Inject @Named(\"wheels\") Integer wheels;",
+      "  @Inject Set<String> names;",
+      "}" };
+  private static final String[] CAR_MODULE = {
+      "package app;",
+      "import dagger.Module;",
+      "@Module(injects = Car.class, includes = lib.DriveModule.Inner.class)",
+      "public class CarModule {",
+      "}" };
+
+  @Test public void summaryIsStoredInModuleAdapter() throws Exception {
+    ModuleSummary summary = readSummary(compileLibrary().classesDir, ADAPTER);
+    assertThat(summary.complete).isFalse();
+    assertThat(summary.library).isTrue();
+    assertThat(summary.overrides).isFalse();
+    assertThat(summary.providesMethods).hasSize(2);
+
+    ModuleSummary.ProvidesMethod wheels = summary.providesMethods.get(0);
+    assertThat(wheels.type).isEqualTo(Provides.Type.UNIQUE);
+    assertThat(wheels.key).isEqualTo("@javax.inject.Named(value=wheels)/java.lang.Integer");
+    assertThat(wheels.singleton).isTrue();
+    assertThat(wheels.name).isEqualTo("lib.DriveModule.Inner.provideWheels()");
+    assertThat(wheels.parameterKeys).isEqualTo(Arrays.asList("lib.Engine"));
+
+    ModuleSummary.ProvidesMethod name = summary.providesMethods.get(1);
+    assertThat(name.type).isEqualTo(Provides.Type.SET);
+    assertThat(name.setKey).isEqualTo("java.util.Set<java.lang.String>");
+    assertThat(name.singleton).isFalse();
+    assertThat(name.parameterKeys).isEmpty();
+  }
+
+  @Test public void escapedValuesSurviveRoundTrip() throws IOException {
+    String key = "@javax.inject.Named(value=a\tb\\n\nc)/java.lang.String";
+    ModuleSummary.ProvidesMethod method = new ModuleSummary.ProvidesMethod(
+        Provides.Type.SET_VALUES, key, null, false, "Module.provide()", "provide()",
+        Arrays.asList(key), null);
+    ModuleSummary summary = new ModuleSummary(true, false, true, Arrays.asList("a.Included"),
+        "a.Parent", Arrays.asList(key), Arrays.asList("a.Statics"), Arrays.asList(method),
+        Collections.emptyList());
+    StringWriter written = new StringWriter();
+    summary.write(written);
+
+    ModuleSummary read = ModuleSummary.read(new StringReader(written.toString()));
+    assertThat(read.complete).isTrue();
+    assertThat(read.overrides).isTrue();
+    assertThat(read.includes).isEqualTo(Arrays.asList("a.Included"));
+    assertThat(read.addsTo).isEqualTo("a.Parent");
+    assertThat(read.injects).isEqualTo(Arrays.asList(key));
+    assertThat(read.staticInjections).isEqualTo(Arrays.asList("a.Statics"));
+    assertThat(read.providesMethods.get(0).key).isEqualTo(key);
+    assertThat(read.providesMethods.get(0).setKey).isNull();
+    assertThat(read.providesMethods.get(0).parameterKeys).isEqualTo(Arrays.asList(key));
+  }
+
+  @Test public void analysisOfPrecompiledLibraryMatchesSourceAnalysis() throws IOException {
+    TestCompiler.Result together = new TestCompiler()
+        .source("lib.Engine", ENGINE)
+        .source("lib.DriveModule", DRIVE_MODULE)
+        .source("app.Car", CAR)
+        .source("app.CarModule", CAR_MODULE)
+        .compile();
+    assertThat(together.success).overridingErrorMessage(together.toString()).isTrue();
+
+    TestCompiler.Result app = compileApp(compileLibrary().classesDir);
+    assertThat(app.success).overridingErrorMessage(app.toString()).isTrue();
+    assertThat(app.generatedSource("app/CarModule.dot")).isNotNull()
+        .isEqualTo(together.generatedSource("app/CarModule.dot"));
+  }
+
+  @Test public void analysisOfPrecompiledLibraryReadsSummary() throws IOException {
+    TestCompiler.Result library = compileLibrary();
+    // Swap in the adapter of a module without the provides method for @Named("wheels"),
+    // which the app needs.
+    TestCompiler.Result withoutWheels = new TestCompiler()
+        .source("lib.Engine", ENGINE)
+        .source("lib.DriveModule", DRIVE_MODULE_WITHOUT_WHEELS)
+        .compile();
+    assertThat(withoutWheels.success).overridingErrorMessage(withoutWheels.toString()).isTrue();
+    for (File adapter : adapterFiles(library.classesDir)) {
+      assertThat(adapter.delete()).isTrue();
+    }
+    for (File adapter : adapterFiles(withoutWheels.classesDir)) {
+      assertThat(adapter.renameTo(new File(library.classesDir, "lib/" + adapter.getName())))
+          .isTrue();
+    }
+
+    TestCompiler.Result app = compileApp(library.classesDir);
+    assertThat(app.success).isFalse();
+    assertThat(app.toString()).contains("@javax.inject.Named(value=wheels)/java.lang.Integer");
+  }
+
+  @Test public void libraryWithoutSummaryIsAnalyzedFromElements() throws IOException {
+    TestCompiler.Result library = compileLibrary();
+    for (File adapter : adapterFiles(library.classesDir)) {
+      assertThat(adapter.delete()).isTrue();
+    }
+
+    TestCompiler.Result app = compileApp(library.classesDir);
+    assertThat(app.success).overridingErrorMessage(app.toString()).isTrue();
+  }
+
+  private TestCompiler.Result compileLibrary() throws IOException {
+    TestCompiler.Result result = new TestCompiler()
+        .source("lib.Engine", ENGINE)
+        .source("lib.DriveModule", DRIVE_MODULE)
+        .compile();
+    assertThat(result.success).overridingErrorMessage(result.toString()).isTrue();
+    return result;
+  }
+
+  private TestCompiler.Result compileApp(File library) throws IOException {
+    return new TestCompiler()
+        .classpath(library)
+        .source("app.Car", CAR)
+        .source("app.CarModule", CAR_MODULE)
+        .compile();
+  }
+
+  /** Returns the class files of the module adapter and its nested bindings. */
+  private static File[] adapterFiles(File classesDir) {
+    File[] result = new File(classesDir, "lib").listFiles(new FilenameFilter() {
+      @Override public boolean accept(File directory, String name) {
+        return name.startsWith(ADAPTER.substring("lib.".length()));
+      }
+    });
+    assertThat(result.length).isGreaterThan(0);
+    return result;
+  }
+
+  /** Reads the summary from the constants of the compiled module adapter. */
+  static ModuleSummary readSummary(File classesDir, String adapterName) throws Exception {
+    URLClassLoader loader = new URLClassLoader(new URL[] { classesDir.toURI().toURL() },
+        ModuleSummaryTest.class.getClassLoader());
+    Class<?> adapter = Class.forName(adapterName, false, loader);
+    StringBuilder summary = new StringBuilder();
+    for (int i = 0; ; i++) {
+      Field field;
+      try {
+        field = adapter.getDeclaredField(ModuleSummary.CONSTANT_PREFIX + i);
+      } catch (NoSuchFieldException e) {
+        break;
+      }
+      field.setAccessible(true);
+      summary.append(field.get(null));
+    }
+    return ModuleSummary.read(new StringReader(summary.toString()));
+  }
+}
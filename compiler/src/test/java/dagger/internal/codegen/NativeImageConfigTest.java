@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import java.io.StringWriter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class NativeImageConfigTest {
+  @Test public void writerEmitsSortedEntries() throws Exception {
+    NativeImageConfigWriter config = new NativeImageConfigWriter();
+    config.reflectiveBinding("b.Plain");
+    config.adapter("a.Foo$$InjectAdapter");
+    config.reflectiveStaticInjection("b.Plain");
+    StringWriter out = new StringWriter();
+    config.write(out);
+    assertThat(out.toString()).isEqualTo(""
+        + "[\n"
+        + "  {\n"
+        + "    \"name\" : \"a.Foo$$InjectAdapter\",\n"
+        + "    \"methods\" : [ { \"name\" : \"<init>\", \"parameterTypes\" : [ ] } ]\n"
+        + "  },\n"
+        + "  {\n"
+        + "    \"name\" : \"b.Plain\",\n"
+        + "    \"allDeclaredConstructors\" : true,\n"
+        + "    \"allDeclaredFields\" : true\n"
+        + "  }\n"
+        + "]\n");
+  }
+
+  @Test public void completeModuleGetsReflectionConfig() throws Exception {
+    TestCompiler.Result result = new TestCompiler()
+        .source("test.CoffeeModule",
+            "package test;",
+            "import dagger.Module;",
+            "import dagger.Provides;",
+            "@Module(injects = { CoffeeApp.class, Plain.class, Espresso.class },",
+            "    includes = PumpModule.class,",
+            "    staticInjections = Statics.class)",
+            "class CoffeeModule {",
+            "  @Provides Heater provideHeater() { return new Heater(); }",
+            "}")
+        .source("test.PumpModule",
+            "package test;",
+            "import dagger.Module;",
+            "@Module(complete = false, library = true)",
+            "class PumpModule {",
+            "}")
+        .source("test.CoffeeApp",
+            "package test;",
+            "import javax.inject.Inject;",
+            "class CoffeeApp {",
+            "  @Inject Heater heater;",
+            "  @Inject Pump pump;",
+            "}")
+        .source("test.Pump",
+            "package test;",
+            "import javax.inject.Inject;",
+            "class Pump {",
+            "  @Inject Pump() {}",
+            "}")
+        .source("test.Heater",
+            "package test;",
+            "class Heater {",
+            "}")
+        .source("test.Plain",
+            "package test;",
+            "class Plain {",
+            "}")
+        .source("test.Drink",
+            "package test;",
+            "import javax.inject.Inject;",
+            "class Drink {",
+            "  @Inject Heater heater;",
+            "}")
+        .source("test.Espresso",
+            "package test;",
+            "class Espresso extends Drink {",
+            "}")
+        .source("test.Statics",
+            "package test;",
+            "import javax.inject.Inject;",
+            "class Statics {",
+            "  @Inject static Pump pump;",
+            "}")
+        .compile();
+    assertThat(result.success).overridingErrorMessage(result.toString()).isTrue();
+
+    String config = result.classOutput(
+        "META-INF/native-image/dagger/test.CoffeeModule/reflect-config.json");
+    assertThat(config).contains("\"name\" : \"test.CoffeeModule$$ModuleAdapter\"");
+    assertThat(config).contains("\"name\" : \"test.PumpModule$$ModuleAdapter\"");
+    assertThat(config).contains("\"name\" : \"test.CoffeeApp$$InjectAdapter\"");
+    assertThat(config).contains("\"name\" : \"test.Pump$$InjectAdapter\"");
+    assertThat(config).contains("\"name\" : \"test.Statics$$StaticInjection\"");
+    assertThat(config).contains("\"name\" : \"test.Plain\",\n"
+        + "    \"allDeclaredConstructors\" : true,\n"
+        + "    \"allDeclaredFields\" : true");
+    assertThat(config).excludes("test.Heater");
+
+    // Reflective injection of a subclass reads the fields of its superclasses.
+    assertThat(config).contains("\"name\" : \"test.Espresso\",\n"
+        + "    \"allDeclaredConstructors\" : true,\n"
+        + "    \"allDeclaredFields\" : true");
+    assertThat(config).contains("\"name\" : \"test.Drink\",\n"
+        + "    \"allDeclaredFields\" : true");
+
+    // Incomplete modules are not roots of a graph.
+    assertThat(result.classOutput(
+        "META-INF/native-image/dagger/test.PumpModule/reflect-config.json")).isNull();
+  }
+}
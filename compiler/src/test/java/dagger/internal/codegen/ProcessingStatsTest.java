@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import java.io.IOException;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class ProcessingStatsTest {
+  @Test public void reportIsWrittenWhenRequested() throws IOException {
+    TestCompiler.Result result = new TestCompiler()
+        .source("test.Engine",
+            "package test;",
+            "import javax.inject.Inject;",
+            "class Engine {",
+            "  @Inject Engine(Fuel fuel) {}",
+            "}")
+        .source("test.Fuel",
+            "package test;",
+            "interface Fuel {",
+            "}")
+        .source("test.SharedModule",
+            "package test;",
+            "import dagger.Module;",
+            "import dagger.Provides;",
+            "@Module(library = true)",
+            "class SharedModule {",
+            "  @Provides Fuel provideFuel() { return null; }",
+            "}")
+        .source("test.SmallModule",
+            "package test;",
+            "import dagger.Module;",
+            "@Module(injects = Engine.class, includes = SharedModule.class)",
+            "class SmallModule {",
+            "}")
+        .source("test.LargeModule",
+            "package test;",
+            "import dagger.Module;",
+            "import dagger.Provides;",
+            "@Module(injects = Engine.class, includes = SharedModule.class, library = true)",
+            "class LargeModule {",
+            "  @Provides String provideName() { return \"large\"; }",
+            "}")
+        .option("-A" + ProcessingStats.REPORT_OPTION + "=stats/dagger-stats.json")
+        .compile();
+    assertThat(result.success).overridingErrorMessage(result.toString()).isTrue();
+    // Writing the report twice would fail to reopen the resource.
+    for (Diagnostic<? extends JavaFileObject> diagnostic : result.diagnostics) {
+      assertThat(diagnostic.getKind()).overridingErrorMessage(result.toString())
+          .isNotEqualTo(Diagnostic.Kind.WARNING);
+    }
+
+    // Isolating processors can't create files without originating elements.
+    assertThat(result.creators.get("stats/dagger-stats.json"))
+        .isEqualTo(GraphAnalysisProcessor.class.getSimpleName());
+    assertThat(result.originatingElements.get("stats/dagger-stats.json")).isEmpty();
+
+    String json = result.classOutput("stats/dagger-stats.json");
+    assertThat(json).contains("{\"phase\": \"ValidationProcessor\", \"calls\": ");
+    assertThat(json).contains("{\"phase\": \"GraphAnalysisProcessor.link\", \"calls\": 3, ");
+    assertThat(json).contains("\"adapters\": {\"inject\": 1, \"module\": 3}");
+    assertThat(json).contains("\"typesAnalyzed\": 1");
+    // The largest graph comes first. SharedModule is a complete module too.
+    assertThat(json.indexOf("\"module\": \"test.LargeModule\""))
+        .isLessThan(json.indexOf("\"module\": \"test.SmallModule\""));
+    // Both roots link Engine, and SmallModule links it again to check for unused bindings.
+    assertThat(json).contains("{\"type\": \"test.Engine\", \"bindings\": 3}");
+  }
+
+  @Test public void quoteEscapesControlCharacters() {
+    assertThat(ProcessingStats.quote("a\"b\\c")).isEqualTo("\"a\\\"b\\\\c\"");
+    assertThat(ProcessingStats.quote("\n\r\t\u0000\u001f "))
+        .isEqualTo("\"\\n\\r\\t\\u0000\\u001f \"");
+  }
+}
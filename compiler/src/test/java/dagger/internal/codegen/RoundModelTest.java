@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.processing.RoundEnvironment;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class RoundModelTest {
+  private final List<String> calls = new ArrayList<String>();
+
+  @Test public void roundIsScannedOnce() {
+    RoundEnvironment round = round();
+    RoundModel model = RoundModel.of(round);
+    assertThat(RoundModel.of(round)).isSameAs(model);
+    assertThat(calls).isEqualTo(Arrays.asList("getRootElements"));
+  }
+
+  @Test public void eachRoundHasItsOwnModel() {
+    RoundModel first = RoundModel.of(round());
+    RoundModel second = RoundModel.of(round());
+    assertThat(second).isNotSameAs(first);
+    assertThat(calls).isEqualTo(Arrays.asList("getRootElements", "getRootElements"));
+  }
+
+  /** Returns a round without elements that records the methods called on it. */
+  private RoundEnvironment round() {
+    return (RoundEnvironment) Proxy.newProxyInstance(RoundEnvironment.class.getClassLoader(),
+        new Class<?>[] { RoundEnvironment.class }, new InvocationHandler() {
+          @Override public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("hashCode")) {
+              return System.identityHashCode(proxy);
+            }
+            if (method.getName().equals("equals")) {
+              return proxy == args[0];
+            }
+            calls.add(method.getName());
+            if (method.getName().equals("getRootElements")) {
+              return Collections.emptySet();
+            }
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import dagger.ObjectGraph;
+import dagger.internal.ScopedBinding;
+import java.net.URL;
+import java.net.URLClassLoader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class ScopedAdaptersTest {
+  @Test public void singletonAdaptersHoldTheirInstance() throws Exception {
+    TestCompiler.Result result = new TestCompiler()
+        .source("test.Pump",
+            "package test;",
+            "import javax.inject.Inject;",
+            "import javax.inject.Singleton;",
+            "@Singleton public class Pump {",
+            "  @Inject public Pump() {}",
+            "}")
+        .source("test.Coffee",
+            "package test;",
+            "import javax.inject.Inject;",
+            "public class Coffee {",
+            "  @Inject public Pump pump;",
+            "  @Inject public StringBuilder log;",
+            "}")
+        .source("test.CoffeeModule",
+            "package test;",
+            "import dagger.Module;",
+            "import dagger.Provides;",
+            "import javax.inject.Singleton;",
+            "@Module(injects = Coffee.class)",
+            "public class CoffeeModule {",
+            "  @Provides @Singleton StringBuilder provideLog() { return new StringBuilder(); }",
+            "}")
+        .compile();
+    assertThat(result.success).overridingErrorMessage(result.toString()).isTrue();
+
+    ClassLoader loader = new URLClassLoader(new URL[] { result.classesDir.toURI().toURL() },
+        ObjectGraph.class.getClassLoader());
+    assertThat(ScopedBinding.class.isAssignableFrom(loader.loadClass("test.Pump$$InjectAdapter")))
+        .isTrue();
+    assertThat(ScopedBinding.class.isAssignableFrom(
+        loader.loadClass("test.CoffeeModule$$ModuleAdapter$ProvideLogProvidesAdapter"))).isTrue();
+
+    Class<?> coffeeClass = loader.loadClass("test.Coffee");
+    ObjectGraph graph = ObjectGraph.create(loader.loadClass("test.CoffeeModule").newInstance());
+    Object first = graph.get(coffeeClass);
+    Object second = graph.get(coffeeClass);
+    assertThat(coffeeClass.getField("pump").get(second))
+        .isSameAs(coffeeClass.getField("pump").get(first));
+    assertThat(coffeeClass.getField("log").get(second))
+        .isSameAs(coffeeClass.getField("log").get(first));
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import dagger.ObjectGraph;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class SwitchingBindingsTest {
+  @Test public void moduleHasOneBindingClass() throws Exception {
+    TestCompiler.Result result = new TestCompiler()
+        .source("test.Coffee",
+            "package test;",
+            "import java.util.Set;",
+            "import javax.inject.Inject;",
+            "public class Coffee {",
+            "  @Inject public String name;",
+            "  @Inject public Set<CharSequence> flavors;",
+            "  @Inject public StringBuilder log;",
+            "}")
+        .source("test.CoffeeModule",
+            "package test;",
+            "import dagger.Module;",
+            "import dagger.Provides;",
+            "import javax.inject.Singleton;",
+            "import static dagger.Provides.Type.SET;",
+            "@Module(injects = Coffee.class)",
+            "public class CoffeeModule {",
+            "  @Provides int provideStrength() { return 3; }",
+            "  @Provides @Singleton StringBuilder provideLog() { return new StringBuilder(); }",
+            "  @Provides String provideName(int strength, StringBuilder log) {",
+            "    log.append(strength);",
+            "    return \"coffee x\" + strength;",
+            "  }",
+            "  @Provides(type = SET) CharSequence provideFlavor() { return \"vanilla\"; }",
+            "}")
+        .option("-A" + ModuleAdapterProcessor.SWITCHING_BINDINGS_OPTION + "=true")
+        .compile();
+    assertThat(result.success).overridingErrorMessage(result.toString()).isTrue();
+
+    List<String> bindingClasses = new ArrayList<String>();
+    for (String file : new File(result.classesDir, "test").list()) {
+      if (file.startsWith("CoffeeModule$$ModuleAdapter$")) {
+        bindingClasses.add(file);
+      }
+    }
+    assertThat(bindingClasses).isEqualTo(Arrays.asList("CoffeeModule$$ModuleAdapter$"
+        + ModuleAdapterProcessor.SWITCHING_BINDING_CLASS + ".class"));
+
+    ClassLoader loader = new URLClassLoader(new URL[] { result.classesDir.toURI().toURL() },
+        ObjectGraph.class.getClassLoader());
+    Class<?> coffeeClass = loader.loadClass("test.Coffee");
+    ObjectGraph graph = ObjectGraph.create(loader.loadClass("test.CoffeeModule").newInstance());
+    Object first = graph.get(coffeeClass);
+    Object second = graph.get(coffeeClass);
+    assertThat(coffeeClass.getField("name").get(first)).isEqualTo("coffee x3");
+    assertThat(coffeeClass.getField("flavors").get(first))
+        .isEqualTo(Collections.singleton("vanilla"));
+    Object log = coffeeClass.getField("log").get(first);
+    assertThat(coffeeClass.getField("log").get(second)).isSameAs(log);
+    assertThat(log.toString()).isEqualTo("33");
+  }
+
+  @Test public void largeModuleSwitchesOnGroupsOfMethods() throws Exception {
+    int methods = ModuleAdapterProcessor.SWITCH_CASES_PER_METHOD * 2 + 1;
+    List<String> module = new ArrayList<String>();
+    module.add("package test;");
+    module.add("import dagger.Module;");
+    module.add("import dagger.Provides;");
+    module.add("import javax.inject.Named;");
+    module.add("@Module(injects = Numbers.class, library = true)");
+    module.add("public class NumbersModule {");
+    module.add("  @Provides int provideBase() { return 1000; }");
+    for (int i = 1; i < methods; i++) {
+      module.add("  @Provides @Named(\"n" + i + "\") Integer provide" + i + "(int base) {");
+      module.add("    return base + " + i + ";");
+      module.add("  }");
+    }
+    module.add("}");
+    TestCompiler.Result result = new TestCompiler()
+        .source("test.Numbers",
+            "package test;",
+            "import javax.inject.Inject;",
+            "import javax.inject.Named;",
+            "public class Numbers {",
+            "  @Inject @Named(\"n1\") public Integer first;",
+            "  @Inject @Named(\"n" + (methods / 2) + "\") public Integer middle;",
+            "  @Inject @Named(\"n" + (methods - 1) + "\") public Integer last;",
+            "}")
+        .source("test.NumbersModule", module.toArray(new String[module.size()]))
+        .option("-A" + ModuleAdapterProcessor.SWITCHING_BINDINGS_OPTION + "=true")
+        .compile();
+    assertThat(result.success).overridingErrorMessage(result.toString()).isTrue();
+
+    ClassLoader loader = new URLClassLoader(new URL[] { result.classesDir.toURI().toURL() },
+        ObjectGraph.class.getClassLoader());
+    Class<?> numbersClass = loader.loadClass("test.Numbers");
+    ObjectGraph graph = ObjectGraph.create(loader.loadClass("test.NumbersModule").newInstance());
+    Object numbers = graph.get(numbersClass);
+    assertThat(numbersClass.getField("first").get(numbers)).isEqualTo(1001);
+    assertThat(numbersClass.getField("middle").get(numbers)).isEqualTo(1000 + methods / 2);
+    assertThat(numbersClass.getField("last").get(numbers)).isEqualTo(999 + methods);
+  }
+}
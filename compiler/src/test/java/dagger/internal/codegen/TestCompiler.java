@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import dagger.ObjectGraph;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.inject.Inject;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles Java sources in-process with Dagger's annotation processors, so that
+ * tests can inspect generated files and diagnostics.
+ */
+final class TestCompiler {
+  private final Map<String, String> sources = new LinkedHashMap<String, String>();
+  private final List<File> classpath = new ArrayList<File>();
+  private final List<String> options = new ArrayList<String>();
+
+  TestCompiler() {
+    classpath.add(codeSource(ObjectGraph.class));
+    classpath.add(codeSource(Inject.class));
+  }
+
+  /** Adds a source file for the class {@code className} with the given lines. */
+  TestCompiler source(String className, String... lines) {
+    StringBuilder source = new StringBuilder();
+    for (String line : lines) {
+      source.append(line).append('\n');
+    }
+    sources.put(className, source.toString());
+    return this;
+  }
+
+  /** Adds the output of a previous compilation to the classpath. */
+  TestCompiler classpath(File directory) {
+    classpath.add(directory);
+    return this;
+  }
+
+  /** Adds an annotation processor option, like {@code -Akey=value}. */
+  TestCompiler option(String option) {
+    options.add(option);
+    return this;
+  }
+
+  Result compile() throws IOException {
+    File root = newTempDirectory();
+    File sourceDir = new File(root, "src");
+    File classesDir = new File(root, "classes");
+    File generatedDir = new File(root, "generated");
+    classesDir.mkdirs();
+    generatedDir.mkdirs();
+
+    List<File> files = new ArrayList<File>();
+    for (Map.Entry<String, String> entry : sources.entrySet()) {
+      File file = new File(sourceDir, entry.getKey().replace('.', '/') + ".java");
+      file.getParentFile().mkdirs();
+      write(file, entry.getValue());
+      files.add(file);
+    }
+
+    Map<String, List<String>> originatingElements = new LinkedHashMap<String, List<String>>();
+    Map<String, String> creators = new LinkedHashMap<String, String>();
+    List<String> resourcesRead = new ArrayList<String>();
+    List<Processor> processors = new ArrayList<Processor>();
+    for (Processor processor : Arrays.<Processor>asList(new ValidationProcessor(),
+        new InjectAdapterProcessor(), new ModuleAdapterProcessor(),
+        new GraphAnalysisProcessor())) {
+      processors.add(
+          new RecordingProcessor(processor, originatingElements, creators, resourcesRead));
+    }
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+    try {
+      fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+      fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(classesDir));
+      fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Arrays.asList(generatedDir));
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+          options, null, fileManager.getJavaFileObjectsFromFiles(files));
+      task.setProcessors(processors);
+      boolean success = task.call();
+      return new Result(success, diagnostics.getDiagnostics(), classesDir, generatedDir,
+          originatingElements, creators, resourcesRead);
+    } finally {
+      fileManager.close();
+    }
+  }
+
+  static final class Result {
+    final boolean success;
+    final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+    final File classesDir;
+    final File generatedDir;
+    /**
+     * The originating elements of each file created with the {@code Filer},
+     * keyed by the class name of sources and the relative path of resources.
+     */
+    final Map<String, List<String>> originatingElements;
+    /** The simple name of the processor that created each file, keyed the same way. */
+    final Map<String, String> creators;
+    /** The relative paths of the resources read with the {@code Filer}. */
+    final List<String> resourcesRead;
+
+    Result(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnostics,
+        File classesDir, File generatedDir, Map<String, List<String>> originatingElements,
+        Map<String, String> creators, List<String> resourcesRead) {
+      this.success = success;
+      this.diagnostics = diagnostics;
+      this.classesDir = classesDir;
+      this.generatedDir = generatedDir;
+      this.originatingElements = originatingElements;
+      this.creators = creators;
+      this.resourcesRead = resourcesRead;
+    }
+
+    /** Returns the contents of a file written to the class output, or null. */
+    String classOutput(String path) throws IOException {
+      return read(new File(classesDir, path));
+    }
+
+    /** Returns the contents of a file written to the source output, or null. */
+    String generatedSource(String path) throws IOException {
+      return read(new File(generatedDir, path));
+    }
+
+    @Override public String toString() {
+      return "success=" + success + " " + diagnostics;
+    }
+  }
+
+  /**
+   * Delegates to a processor, recording the originating elements of the files
+   * it creates, that it created them, and the resources it reads.
+   */
+  private static final class RecordingProcessor implements Processor {
+    private final Processor delegate;
+    private final Map<String, List<String>> originatingElements;
+    private final Map<String, String> creators;
+    private final List<String> resourcesRead;
+
+    RecordingProcessor(Processor delegate, Map<String, List<String>> originatingElements,
+        Map<String, String> creators, List<String> resourcesRead) {
+      this.delegate = delegate;
+      this.originatingElements = originatingElements;
+      this.creators = creators;
+      this.resourcesRead = resourcesRead;
+    }
+
+    @Override public void init(final ProcessingEnvironment processingEnv) {
+      final Filer filer = (Filer) Proxy.newProxyInstance(Filer.class.getClassLoader(),
+          new Class<?>[] { Filer.class }, new InvocationHandler() {
+            @Override public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+              if (method.getName().startsWith("create")) {
+                String name = !method.getName().equals("createResource")
+                    ? args[0].toString()
+                    : args[1].toString().length() > 0 ? args[1] + "/" + args[2]
+                    : args[2].toString();
+                List<String> elements = new ArrayList<String>();
+                for (Element element : (Element[]) args[args.length - 1]) {
+                  elements.add(element.toString());
+                }
+                originatingElements.put(name, elements);
+                creators.put(name, delegate.getClass().getSimpleName());
+              } else if (method.getName().equals("getResource")) {
+                resourcesRead.add(args[1].toString().length() > 0 ? args[1] + "/" + args[2]
+                    : args[2].toString());
+              }
+              return forward(processingEnv.getFiler(), method, args);
+            }
+          });
+      delegate.init((ProcessingEnvironment) Proxy.newProxyInstance(
+          ProcessingEnvironment.class.getClassLoader(),
+          new Class<?>[] { ProcessingEnvironment.class }, new InvocationHandler() {
+            @Override public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+              return method.getName().equals("getFiler")
+                  ? filer
+                  : forward(processingEnv, method, args);
+            }
+          }));
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    @Override public boolean process(Set<? extends TypeElement> annotations,
+        RoundEnvironment roundEnv) {
+      return delegate.process(annotations, roundEnv);
+    }
+
+    @Override public Set<String> getSupportedOptions() {
+      return delegate.getSupportedOptions();
+    }
+
+    @Override public Set<String> getSupportedAnnotationTypes() {
+      return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override public SourceVersion getSupportedSourceVersion() {
+      return delegate.getSupportedSourceVersion();
+    }
+
+    @Override public Iterable<? extends Completion> getCompletions(Element element,
+        AnnotationMirror annotation, ExecutableElement member, String userText) {
+      return delegate.getCompletions(element, annotation, member, userText);
+    }
+  }
+
+  private static File codeSource(Class<?> c) {
+    try {
+      return new File(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static File newTempDirectory() throws IOException {
+    File result = File.createTempFile("dagger", "compile");
+    if (!result.delete() || !result.mkdir()) {
+      throw new IOException("Unable to create temporary directory " + result);
+    }
+    return result;
+  }
+
+  private static void write(File file, String content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  static String read(File file) throws IOException {
+    if (!file.exists()) {
+      return null;
+    }
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      int count = 0;
+      while (count < bytes.length) {
+        int read = in.read(bytes, count, bytes.length - count);
+        if (read == -1) break;
+        count += read;
+      }
+      return new String(bytes, 0, count, "UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+}
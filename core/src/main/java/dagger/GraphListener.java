@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+/**
+ * Receives the timing of each phase of object graph startup. Install a
+ * listener with {@link ObjectGraph#createWith(GraphListener, Object...)}; graphs
+ * created by {@link ObjectGraph#plus} report to their parent's listener.
+ *
+ * <p>All durations are in nanoseconds, as measured by {@link System#nanoTime}.
+ * Methods are called synchronously by the thread doing the work, sometimes
+ * while the graph holds internal locks. Implementations should be fast and
+ * thread safe, and must not call back into the graph. Graphs created without a
+ * listener skip all timing.
+ *
+ * <p>The start of each phase is reported too, by the method whose name ends in
+ * "ing", on the thread that then reports its end. A phase that fails reports
+ * its start but not its end.
+ */
+public abstract class GraphListener {
+  /** Invoked before the adapter for {@code moduleType} is loaded. */
+  public void moduleAdapterLoading(Class<?> moduleType) {
+  }
+
+  /**
+   * Invoked when the adapter for {@code moduleType} has been loaded. This
+   * includes constructing the module if no instance was supplied.
+   */
+  public void moduleAdapterLoaded(Class<?> moduleType, long nanos) {
+  }
+
+  /** Invoked before the {@code @Provides} bindings of {@code moduleType} are collected. */
+  public void moduleBindingsCollecting(Class<?> moduleType) {
+  }
+
+  /**
+   * Invoked when the {@code @Provides} bindings of {@code moduleType} have been
+   * collected.
+   */
+  public void moduleBindingsCollected(Class<?> moduleType, int bindingCount, long nanos) {
+  }
+
+  /**
+   * Invoked before each attempt to link the binding for {@code key} to its
+   * dependencies. An attempt fails if a dependency must be linked first, and
+   * is then tried again later in the same pass.
+   *
+   * @param jit true if the binding was created just-in-time for an injected
+   *     class, rather than installed from a module.
+   */
+  public void bindingLinking(String key, boolean jit) {
+  }
+
+  /**
+   * Invoked when the binding for {@code key} has been linked to its
+   * dependencies.
+   *
+   * @param jit true if the binding was created just-in-time for an injected
+   *     class, rather than installed from a module. For these the duration
+   *     includes the binding's creation.
+   * @param reflective true if no generated adapter was found for the just-in-time
+   *     binding, so it was created using reflection.
+   */
+  public void bindingLinked(String key, boolean jit, boolean reflective, long nanos) {
+  }
+
+  /** Invoked before a pass links requested bindings and their transitive dependencies. */
+  public void linkPassStarting() {
+  }
+
+  /**
+   * Invoked when a pass linking requested bindings and their transitive
+   * dependencies has completed.
+   */
+  public void linkPassCompleted(int bindingsLinked, long nanos) {
+  }
+
+  /**
+   * Invoked before a graph is created.
+   *
+   * @param parent the graph that the new graph is created from using {@link
+   *     ObjectGraph#plus}, or null if it is a root graph.
+   */
+  public void graphCreating(ObjectGraph parent) {
+  }
+
+  /**
+   * Invoked when {@code graph} has been created.
+   *
+   * @param parent the graph that {@code graph} was created from using
+   *     {@link ObjectGraph#plus}, or null if it is a root graph.
+   */
+  public void graphCreated(ObjectGraph graph, ObjectGraph parent, long nanos) {
+  }
+
+  /** Invoked before {@link ObjectGraph#validate} validates {@code graph}. */
+  public void graphValidating(ObjectGraph graph) {
+  }
+
+  /** Invoked when {@link ObjectGraph#validate} on {@code graph} has succeeded. */
+  public void graphValidated(ObjectGraph graph, long nanos) {
+  }
+
+  /**
+   * Returns a recorder for the calls to the binding for {@code key}, or null to
+   * leave that binding uninstrumented. This is invoked once for each binding as
+   * it is installed or created. Instrumented bindings read the clock twice on
+   * every call, so only return a recorder when per-binding metrics are wanted.
+   */
+  public ProvisionRecorder provisionRecorder(String key) {
+    return null;
+  }
+
+  /**
+   * Returns a recorder for the calls to the binding for {@code key} in {@code
+   * graph}, or null to leave that binding uninstrumented. A graph and the
+   * graphs created from it with {@link ObjectGraph#plus} may each have a
+   * binding for the same key. By default this returns {@link
+   * #provisionRecorder(String)}, which doesn't tell those bindings apart.
+   */
+  public ProvisionRecorder provisionRecorder(ObjectGraph graph, String key) {
+    return provisionRecorder(key);
+  }
+}
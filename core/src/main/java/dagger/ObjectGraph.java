@@ -26,8 +26,19 @@ import dagger.internal.ProblemDetector;
 import dagger.internal.StaticInjection;
 import dagger.internal.ThrowingErrorHandler;
 import dagger.internal.UniqueMap;
+import dagger.internal.ValidationCache;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static dagger.internal.Modules.getAllModuleAdapters;
 
@@ -80,6 +91,27 @@ public abstract class ObjectGraph {
    */
   public abstract <T> T inject(T instance);
 
+  /**
+   * Injects the members of each of {@code instances}, like {@link #inject}.
+   * The members injector of each runtime type is looked up once, rather than
+   * once for each instance.
+   *
+   * @throws IllegalArgumentException if the runtime type of an instance is not
+   *     one of this object graph's {@link Module#injects injectable types}.
+   */
+  public abstract void injectAll(Iterable<?> instances);
+
+  /**
+   * Injects the members of each of {@code instances}, like {@link
+   * #injectAll(Iterable)}. If {@code executor} is non-null, large arrays are
+   * split into a chunk per processor, and the chunks are injected on {@code
+   * executor}. This returns once every instance has been injected.
+   *
+   * @throws IllegalArgumentException if the runtime type of an instance is not
+   *     one of this object graph's {@link Module#injects injectable types}.
+   */
+  public abstract void injectAll(Object[] instances, Executor executor);
+
   /**
    * Returns a new object graph that includes all of the objects in this graph,
    * plus additional objects in the {@literal @}{@link Module}-annotated
@@ -99,6 +131,19 @@ public abstract class ObjectGraph {
    * Do runtime graph problem detection. For fastest graph creation, rely on
    * build time tools for graph validation.
    *
+   * <p>Only bindings added since the previous call are checked, so validating
+   * again after {@link #get} or {@link #inject} created bindings is cheap. For
+   * a graph created with {@link #plus}, the bindings of the base graph are
+   * checked only for cycles through this graph's bindings, and are skipped
+   * entirely once the base graph has been validated.
+   *
+   * <p>If the system property {@code dagger.validationCache} names a
+   * directory when the graph is created, graphs that pass validation are
+   * recorded there by a fingerprint of their modules, along with the versions
+   * of the classes they created bindings for just in time. The first
+   * validation of an identical graph skips both linking and problem detection.
+   * Graphs with classes that weren't loaded from a file aren't recorded.
+   *
    * @throws IllegalStateException if this graph has problems.
    */
   public abstract void validate();
@@ -109,6 +154,32 @@ public abstract class ObjectGraph {
    */
   public abstract void injectStatics();
 
+  /**
+   * Replaces this graph's singletons that have already been created with
+   * constants, so that provisioning their dependents reads each instance from
+   * a final field instead of checking the singleton's initialization. Call
+   * this once the application has warmed up; singletons created later are
+   * folded by the next call. Singletons of a graph created with a {@link
+   * GraphListener} whose provisions are recorded aren't folded.
+   *
+   * <p>This doesn't change which instances are injected. Bindings of the base
+   * graph of a {@link #plus} graph are folded by calling this on the base.
+   */
+  public abstract void foldSingletons();
+
+  /**
+   * Links this graph entirely and then releases the state that is only needed
+   * to link it, for long-lived graphs. No bindings are created just in time
+   * afterwards, so calls to {@link #get} and {@link #inject} must be for types
+   * listed in the {@code injects} of this graph's modules. Graphs created by
+   * {@link #plus} on a sealed graph link their own bindings as usual.
+   *
+   * <p>Call {@link #validate} first if the graph should be validated. What
+   * required each binding is only released from a validated graph, and
+   * validating a sealed graph checks all of its bindings again.
+   */
+  public abstract void seal();
+
   /**
    * Returns a new dependency graph using the {@literal @}{@link
    * Module}-annotated modules.
@@ -123,39 +194,84 @@ public abstract class ObjectGraph {
    * the graph at runtime.
    */
   public static ObjectGraph create(Object... modules) {
-    return DaggerObjectGraph.makeGraph(null, new FailoverLoader(), modules);
+    return DaggerObjectGraph.makeGraph(null, new FailoverLoader(), null, modules);
+  }
+
+  /**
+   * Returns a new dependency graph using the {@literal @}{@link
+   * Module}-annotated modules, reporting the duration of each startup phase to
+   * {@code listener}. Graphs created from the returned graph with {@link #plus}
+   * report to the same listener.
+   *
+   * <p>See {@link #create} for guidance on injection and validation.
+   */
+  public static ObjectGraph createWith(GraphListener listener, Object... modules) {
+    if (listener == null) throw new NullPointerException("listener");
+    return DaggerObjectGraph.makeGraph(null, new FailoverLoader(), listener, modules);
   }
 
   // visible for testing
   static ObjectGraph createWith(Loader loader, Object... modules) {
-    return DaggerObjectGraph.makeGraph(null, loader, modules);
+    return DaggerObjectGraph.makeGraph(null, loader, null, modules);
+  }
+
+  // visible for testing
+  static ObjectGraph createWith(Loader loader, GraphListener listener, Object... modules) {
+    return DaggerObjectGraph.makeGraph(null, loader, listener, modules);
   }
 
   static class DaggerObjectGraph extends ObjectGraph {
+    /** The fewest instances that {@link #injectAll(Object[], Executor)} injects on a thread. */
+    private static final int MIN_INJECT_ALL_CHUNK = 256;
+
     private final DaggerObjectGraph base;
     private final Linker linker;
     private final Map<Class<?>, StaticInjection> staticInjections;
     private final Map<String, Class<?>> injectableTypes;
     private final Loader plugin;
+    private final GraphListener listener;
+    /** Identifies this graph in {@link #validationCache}, or null if it isn't cached. */
+    private final String fingerprint;
+    private final ValidationCache validationCache;
+    /** Loads the classes of a cached validation's JIT bindings, or null if it isn't cached. */
+    private final Collection<ClassLoader> classLoaders;
+    /** True once a validation has consulted the cache; later ones run in full. */
+    private boolean validationCacheChecked;
 
     DaggerObjectGraph(DaggerObjectGraph base,
-        Linker linker,
         Loader plugin,
+        GraphListener listener,
         Map<Class<?>, StaticInjection> staticInjections,
-        Map<String, Class<?>> injectableTypes) {
-      if (linker == null) throw new NullPointerException("linker");
+        Map<String, Class<?>> injectableTypes,
+        ValidationCache validationCache,
+        String fingerprint,
+        Collection<ClassLoader> classLoaders) {
       if (plugin == null) throw new NullPointerException("plugin");
       if (staticInjections == null) throw new NullPointerException("staticInjections");
       if (injectableTypes == null) throw new NullPointerException("injectableTypes");
 
       this.base = base;
-      this.linker = linker;
+      // The linker reports this graph to the listener along with its bindings.
+      this.linker = new Linker((base != null) ? base.linker : null, plugin,
+          new ThrowingErrorHandler(), listener, this);
       this.plugin = plugin;
+      this.listener = listener;
       this.staticInjections = staticInjections;
       this.injectableTypes = injectableTypes;
+      this.validationCache = fingerprint != null ? validationCache : null;
+      this.fingerprint = fingerprint;
+      this.classLoaders = fingerprint != null ? classLoaders : null;
+      if (fingerprint != null) {
+        linker.recordJitClasses();
+      }
     }
 
-    private static ObjectGraph makeGraph(DaggerObjectGraph base, Loader plugin, Object... modules) {
+    private static ObjectGraph makeGraph(DaggerObjectGraph base, Loader plugin,
+        GraphListener listener, Object... modules) {
+      if (listener != null) {
+        listener.graphCreating(base);
+      }
+      long start = listener != null ? System.nanoTime() : 0L;
       Map<String, Class<?>> injectableTypes = new LinkedHashMap<String, Class<?>>();
       Map<Class<?>, StaticInjection> staticInjections
           = new LinkedHashMap<Class<?>, StaticInjection>();
@@ -164,30 +280,62 @@ public abstract class ObjectGraph {
       // duplicates are permitted.
       Map<String, Binding<?>> baseBindings = new UniqueMap<String, Binding<?>>();
       Map<String, Binding<?>> overrideBindings = new UniqueMap<String, Binding<?>>();
-      for (ModuleAdapter<?> moduleAdapter : getAllModuleAdapters(plugin, modules).values()) {
+      Collection<ModuleAdapter<?>> moduleAdapters =
+          getAllModuleAdapters(plugin, listener, modules).values();
+      for (ModuleAdapter<?> moduleAdapter : moduleAdapters) {
         for (String key : moduleAdapter.injectableTypes) {
-          injectableTypes.put(key, moduleAdapter.getModule().getClass());
+          injectableTypes.put(key, moduleAdapter.getModuleClass());
         }
         for (Class<?> c : moduleAdapter.staticInjections) {
           staticInjections.put(c, null);
         }
         Map<String, Binding<?>> addTo = moduleAdapter.overrides ? overrideBindings : baseBindings;
-        moduleAdapter.getBindings(addTo);
+        if (listener != null) {
+          listener.moduleBindingsCollecting(moduleAdapter.getModuleClass());
+          long bindingsStart = System.nanoTime();
+          int size = addTo.size();
+          moduleAdapter.getBindings(addTo);
+          listener.moduleBindingsCollected(moduleAdapter.getModuleClass(),
+              addTo.size() - size, System.nanoTime() - bindingsStart);
+        } else {
+          moduleAdapter.getBindings(addTo);
+        }
       }
 
-      // Create a linker and install all of the user's bindings
-      Linker linker = new Linker((base != null) ? base.linker : null, plugin,
-          new ThrowingErrorHandler());
-      linker.installBindings(baseBindings);
-      linker.installBindings(overrideBindings);
+      // Fingerprint the graph before linking, so that a cached validation can skip linking.
+      ValidationCache validationCache = ValidationCache.fromSystemProperty();
+      String fingerprint = null;
+      Set<ClassLoader> classLoaders = null;
+      if (validationCache != null && (base == null || base.fingerprint != null)) {
+        List<String> keys = new ArrayList<String>(baseBindings.keySet());
+        keys.addAll(overrideBindings.keySet());
+        fingerprint = validationCache.fingerprint(
+            base != null ? base.fingerprint : null, moduleAdapters, keys);
+        classLoaders = new LinkedHashSet<ClassLoader>();
+        for (ModuleAdapter<?> moduleAdapter : moduleAdapters) {
+          classLoaders.add(moduleAdapter.getModuleClass().getClassLoader());
+        }
+        if (base != null && base.classLoaders != null) {
+          classLoaders.addAll(base.classLoaders);
+        }
+      }
+
+      // Create the graph and install all of the user's bindings in its linker.
+      DaggerObjectGraph result = new DaggerObjectGraph(base, plugin, listener,
+          staticInjections, injectableTypes, validationCache, fingerprint, classLoaders);
+      result.linker.installBindings(baseBindings);
+      result.linker.installBindings(overrideBindings);
 
-      return new DaggerObjectGraph(base, linker, plugin, staticInjections, injectableTypes);
+      if (listener != null) {
+        listener.graphCreated(result, base, System.nanoTime() - start);
+      }
+      return result;
     }
 
 
     @Override public ObjectGraph plus(Object... modules) {
       linkEverything();
-      return makeGraph(this, plugin, modules);
+      return makeGraph(this, plugin, listener, modules);
     }
 
     private void linkStaticInjections() {
@@ -209,18 +357,54 @@ public abstract class ObjectGraph {
     }
 
     @Override public void validate() {
-      Map<String, Binding<?>> allBindings = linkEverything();
-      new ProblemDetector().detectProblems(allBindings.values());
+      if (listener != null) {
+        listener.graphValidating(this);
+      }
+      long start = listener != null ? System.nanoTime() : 0L;
+      synchronized (linker) {
+        boolean checkCache = validationCache != null && !validationCacheChecked;
+        validationCacheChecked = true;
+        // If an identical graph passed validation before, its bindings link on demand.
+        if (!checkCache || !validationCache.contains(fingerprint, classLoaders)) {
+          linkEverything();
+          new ProblemDetector().detectProblems(linker.unvalidatedBindings());
+          linker.markValidated();
+          if (checkCache) {
+            validationCache.put(fingerprint, jitClasses());
+          }
+        }
+      }
+      if (listener != null) {
+        listener.graphValidated(this, System.nanoTime() - start);
+      }
+    }
+
+    /**
+     * Returns the classes that this graph and the graphs it was created from
+     * created JIT bindings for, with the class loaders they were loaded from.
+     */
+    private Map<String, ClassLoader> jitClasses() {
+      Map<String, ClassLoader> result = new LinkedHashMap<String, ClassLoader>();
+      for (DaggerObjectGraph graph = this; graph != null; graph = graph.base) {
+        synchronized (graph.linker) {
+          for (Map.Entry<String, ClassLoader> entry : graph.linker.getJitClasses().entrySet()) {
+            if (!result.containsKey(entry.getKey())) {
+              result.put(entry.getKey(), entry.getValue());
+            }
+          }
+        }
+      }
+      return result;
     }
 
     /**
      * Links all bindings, injectable types and static injections.
      */
-    private Map<String, Binding<?>> linkEverything() {
+    private void linkEverything() {
       synchronized (linker) {
         linkStaticInjections();
         linkInjectableTypes();
-        return linker.linkAll();
+        linker.linkAll();
       }
     }
 
@@ -241,6 +425,19 @@ public abstract class ObjectGraph {
       }
     }
 
+    @Override public void foldSingletons() {
+      synchronized (linker) {
+        linker.foldSingletons();
+      }
+    }
+
+    @Override public void seal() {
+      synchronized (linker) {
+        linkEverything();
+        linker.seal();
+      }
+    }
+
     @Override public <T> T get(Class<T> type) {
       String key = Keys.get(type);
       String injectableTypeKey = type.isInterface() ? key : Keys.getMembersKey(type);
@@ -252,15 +449,114 @@ public abstract class ObjectGraph {
     }
 
     @Override public <T> T inject(T instance) {
-      String membersKey = Keys.getMembersKey(instance.getClass());
-      ClassLoader classLoader = instance.getClass().getClassLoader();
-      @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
-      Binding<T> binding =
-          (Binding<T>) getInjectableTypeBinding(classLoader, membersKey, membersKey);
-      binding.injectMembers(instance);
+      membersBinding(instance.getClass()).injectMembers(instance);
       return instance;
     }
 
+    @Override public void injectAll(Iterable<?> instances) {
+      MembersBindings bindings = new MembersBindings();
+      for (Object instance : instances) {
+        bindings.get(instance.getClass()).injectMembers(instance);
+      }
+    }
+
+    @Override public void injectAll(Object[] instances, Executor executor) {
+      int chunks = Math.min(Runtime.getRuntime().availableProcessors(),
+          instances.length / MIN_INJECT_ALL_CHUNK);
+      if (executor == null || chunks < 2) {
+        injectAll(Arrays.asList(instances));
+        return;
+      }
+
+      // Look up every binding on this thread, so the chunks don't contend for the linker.
+      final MembersBindings bindings = new MembersBindings();
+      for (Object instance : instances) {
+        bindings.get(instance.getClass());
+      }
+
+      final CountDownLatch done = new CountDownLatch(chunks);
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      for (int c = 0; c < chunks; c++) {
+        final List<Object> chunk = Arrays.asList(instances).subList(
+            (int) ((long) instances.length * c / chunks),
+            (int) ((long) instances.length * (c + 1) / chunks));
+        executor.execute(new Runnable() {
+          @Override public void run() {
+            try {
+              MembersBindings chunkBindings = bindings.copy();
+              for (Object instance : chunk) {
+                chunkBindings.get(instance.getClass()).injectMembers(instance);
+              }
+            } catch (Throwable t) {
+              failure.compareAndSet(null, t);
+            } finally {
+              done.countDown();
+            }
+          }
+        });
+      }
+
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while injecting members", e);
+      }
+      Throwable t = failure.get();
+      if (t instanceof RuntimeException) {
+        throw (RuntimeException) t;
+      } else if (t instanceof Error) {
+        throw (Error) t;
+      } else if (t != null) {
+        throw new RuntimeException(t);
+      }
+    }
+
+    /** Returns the linked members injection binding of {@code type}. */
+    @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
+    private Binding<Object> membersBinding(Class<?> type) {
+      String membersKey = Keys.getMembersKey(type);
+      return (Binding<Object>)
+          getInjectableTypeBinding(type.getClassLoader(), membersKey, membersKey);
+    }
+
+    /**
+     * The members injection bindings of the runtime types seen by one call to
+     * {@code injectAll()}. Batches usually hold one type, so the last type's
+     * binding is checked before the map.
+     */
+    private final class MembersBindings {
+      private final Map<Class<?>, Binding<Object>> byType;
+      private Class<?> lastType;
+      private Binding<Object> lastBinding;
+
+      MembersBindings() {
+        this(new HashMap<Class<?>, Binding<Object>>());
+      }
+
+      private MembersBindings(Map<Class<?>, Binding<Object>> byType) {
+        this.byType = byType;
+      }
+
+      Binding<Object> get(Class<?> type) {
+        if (type != lastType) {
+          Binding<Object> binding = byType.get(type);
+          if (binding == null) {
+            binding = membersBinding(type);
+            byType.put(type, binding);
+          }
+          lastType = type;
+          lastBinding = binding;
+        }
+        return lastBinding;
+      }
+
+      /** Returns bindings for another thread, which share this one's already looked up. */
+      MembersBindings copy() {
+        return new MembersBindings(new HashMap<Class<?>, Binding<Object>>(byType));
+      }
+    }
+
     /**
      * @param classLoader the {@code ClassLoader} used to load dependent bindings.
      * @param injectableKey the key used to store the injectable type. This
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+/**
+ * Receives the duration of each call to a single binding. Recorders are
+ * returned by {@link GraphListener#provisionRecorder} and are called
+ * concurrently by every thread that uses the binding, so implementations must
+ * be thread safe and should not contend.
+ *
+ * <p>Durations are in nanoseconds and include the time spent in the binding's
+ * dependencies.
+ */
+public abstract class ProvisionRecorder {
+  /** Invoked after the binding has provided an instance. */
+  public void provisioned(long nanos) {
+  }
+
+  /** Invoked after the binding has injected the members of an instance. */
+  public void injected(long nanos) {
+  }
+
+  /**
+   * Invoked when a thread waited for another thread to finish creating the
+   * binding's singleton instance.
+   */
+  public void singletonWaited(long nanos) {
+  }
+}
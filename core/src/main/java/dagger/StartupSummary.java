@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A listener that totals the time spent in each startup phase, and remembers
+ * the bindings that were slowest to link. Use it to find where startup time
+ * goes:
+ * <pre>   {@code
+ *
+ *   StartupSummary summary = new StartupSummary();
+ *   ObjectGraph objectGraph = ObjectGraph.createWith(summary, new CoffeeModule());
+ *   objectGraph.get(CoffeeApp.class).run();
+ *   System.out.println(summary);
+ * }</pre>
+ */
+public final class StartupSummary extends GraphListener {
+  private static final int SLOWEST_BINDING_COUNT = 10;
+
+  private int graphCount;
+  private long graphNanos;
+  private int moduleCount;
+  private long moduleNanos;
+  private int collectedBindingCount;
+  private long collectNanos;
+  private int installedCount;
+  private long installedNanos;
+  private int jitCount;
+  private long jitNanos;
+  private int reflectiveCount;
+  private long reflectiveNanos;
+  private int linkPassCount;
+  private long linkPassNanos;
+  private int validationCount;
+  private long validationNanos;
+
+  /** The slowest linked bindings, slowest first. */
+  private final List<SlowBinding> slowestBindings = new ArrayList<SlowBinding>();
+
+  @Override public synchronized void moduleAdapterLoaded(Class<?> moduleType, long nanos) {
+    moduleCount++;
+    moduleNanos += nanos;
+  }
+
+  @Override public synchronized void moduleBindingsCollected(
+      Class<?> moduleType, int bindingCount, long nanos) {
+    collectedBindingCount += bindingCount;
+    collectNanos += nanos;
+  }
+
+  @Override public synchronized void bindingLinked(
+      String key, boolean jit, boolean reflective, long nanos) {
+    if (!jit) {
+      installedCount++;
+      installedNanos += nanos;
+    } else if (!reflective) {
+      jitCount++;
+      jitNanos += nanos;
+    } else {
+      reflectiveCount++;
+      reflectiveNanos += nanos;
+    }
+
+    int i = slowestBindings.size();
+    while (i > 0 && slowestBindings.get(i - 1).nanos < nanos) {
+      i--;
+    }
+    if (i < SLOWEST_BINDING_COUNT) {
+      slowestBindings.add(i, new SlowBinding(key, reflective, nanos));
+      if (slowestBindings.size() > SLOWEST_BINDING_COUNT) {
+        slowestBindings.remove(SLOWEST_BINDING_COUNT);
+      }
+    }
+  }
+
+  @Override public synchronized void linkPassCompleted(int bindingsLinked, long nanos) {
+    linkPassCount++;
+    linkPassNanos += nanos;
+  }
+
+  @Override public synchronized void graphCreated(
+      ObjectGraph graph, ObjectGraph parent, long nanos) {
+    graphCount++;
+    graphNanos += nanos;
+  }
+
+  @Override public synchronized void graphValidated(ObjectGraph graph, long nanos) {
+    validationCount++;
+    validationNanos += nanos;
+  }
+
+  /** Returns a human-readable report of the startup phases observed so far. */
+  @Override public synchronized String toString() {
+    StringBuilder result = new StringBuilder();
+    line(result, "graphs created", graphCount, graphNanos);
+    line(result, "module adapters loaded", moduleCount, moduleNanos);
+    line(result, "module bindings collected", collectedBindingCount, collectNanos);
+    line(result, "installed bindings linked", installedCount, installedNanos);
+    line(result, "generated JIT bindings linked", jitCount, jitNanos);
+    line(result, "reflective JIT bindings linked", reflectiveCount, reflectiveNanos);
+    line(result, "link passes", linkPassCount, linkPassNanos);
+    line(result, "validations", validationCount, validationNanos);
+    if (!slowestBindings.isEmpty()) {
+      result.append("slowest bindings:\n");
+      for (SlowBinding binding : slowestBindings) {
+        result.append(String.format(Locale.US, "  %10.3f ms  %s%s\n", binding.nanos / 1e6,
+            binding.key, binding.reflective ? " (reflective)" : ""));
+      }
+    }
+    return result.toString();
+  }
+
+  private static void line(StringBuilder result, String phase, int count, long nanos) {
+    result.append(String.format(Locale.US, "%-31s %6d %10.3f ms\n", phase, count, nanos / 1e6));
+  }
+
+  private static class SlowBinding {
+    final String key;
+    final boolean reflective;
+    final long nanos;
+
+    SlowBinding(String key, boolean reflective, long nanos) {
+      this.key = key;
+      this.reflective = reflective;
+      this.nanos = nanos;
+    }
+  }
+}
@@ -59,7 +59,11 @@ public abstract class Binding<T> implements Provider<T>, MembersInjector<T> {
   /** Bitfield of states like SINGLETON and LINKED. */
   private int bits;
 
-  public final Object requiredBy;
+  /**
+   * What requested this binding, for error messages. Cleared once the graph is
+   * validated and {@linkplain Linker#seal sealed}.
+   */
+  public Object requiredBy;
 
   protected Binding(String provideKey, String membersKey, boolean singleton, Object requiredBy) {
     if (singleton && provideKey == null) {
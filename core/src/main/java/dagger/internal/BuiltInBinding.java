@@ -20,8 +20,9 @@ package dagger.internal;
  * Injects a Provider or a MembersInjector.
  */
 final class BuiltInBinding<T> extends Binding<T> {
-  private final String delegateKey;
-  private final ClassLoader classLoader;
+  /** The key of the delegate binding. Null once the delegate is attached. */
+  private String delegateKey;
+  private ClassLoader classLoader;
   private Binding<?> delegate;
 
   public BuiltInBinding(
@@ -32,7 +33,16 @@ final class BuiltInBinding<T> extends Binding<T> {
   }
 
   @Override public void attach(Linker linker) {
+    if (delegateKey == null) {
+      delegate = linker.getFoldedBinding(delegate);
+      return;
+    }
     delegate = linker.requestBinding(delegateKey, requiredBy, classLoader);
+    if (delegate != null) {
+      // Later calls only swap in a folded singleton, so the key is only garbage.
+      delegateKey = null;
+      classLoader = null;
+    }
   }
 
   @Override public void injectMembers(T t) {
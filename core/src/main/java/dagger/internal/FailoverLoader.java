@@ -41,7 +41,11 @@ public final class FailoverLoader extends Loader {
       throw new IllegalStateException("Module adapter for " + type + " could not be loaded. "
           + "Please ensure that code generation was run for this module.");
     }
-    result.module = (instance != null) ? instance : result.newModule();
+    result.moduleClass = type;
+    result.module = instance;
+    if (instance == null && !result.canCreateModule()) {
+      result.module = result.newModule(); // Fail now if the module can't be created later.
+    }
     return result;
   }
 
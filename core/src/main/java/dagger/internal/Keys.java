@@ -19,9 +19,17 @@ package dagger.internal;
 import dagger.Lazy;
 import dagger.MembersInjector;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
 import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 import javax.inject.Provider;
 import javax.inject.Qualifier;
@@ -75,7 +83,8 @@ public final class Keys {
     }
     StringBuilder result = new StringBuilder();
     if (annotation != null) {
-      result.append(annotation).append("/");
+      qualifierToString(annotation, result);
+      result.append("/");
     }
     typeToString(type, result, true);
     return result.toString();
@@ -93,7 +102,8 @@ public final class Keys {
     type = boxIfPrimitive(type);
     StringBuilder result = new StringBuilder();
     if (qualifier != null) {
-      result.append(qualifier).append("/");
+      qualifierToString(qualifier, result);
+      result.append("/");
     }
     result.append(SET_PREFIX);
     typeToString(type, result, true);
@@ -131,6 +141,66 @@ public final class Keys {
     return qualifier;
   }
 
+  /**
+   * Formats {@code qualifier} like {@code @com.square.Bar(value=baz)}, which is
+   * the format of generated adapters' keys. This is what {@code toString()}
+   * returns on Java 6, but later JVMs format annotations differently. Static
+   * and synthetic methods, like those added by coverage tools, aren't members.
+   */
+  private static void qualifierToString(Annotation qualifier, StringBuilder result) {
+    Class<? extends Annotation> annotationType = qualifier.annotationType();
+    List<Method> members = new ArrayList<Method>();
+    for (Method method : annotationType.getDeclaredMethods()) {
+      if (!Modifier.isStatic(method.getModifiers()) && !method.isSynthetic()
+          && method.getParameterTypes().length == 0) {
+        members.add(method);
+      }
+    }
+    Collections.sort(members, new Comparator<Method>() {
+      @Override public int compare(Method a, Method b) {
+        return a.getName().compareTo(b.getName());
+      }
+    });
+    result.append('@').append(annotationType.getName()).append('(');
+    for (int i = 0; i < members.size(); i++) {
+      if (i != 0) {
+        result.append(", ");
+      }
+      Method member = members.get(i);
+      result.append(member.getName()).append('=');
+      memberValueToString(memberValue(qualifier, member), result);
+    }
+    result.append(')');
+  }
+
+  private static Object memberValue(Annotation annotation, Method member) {
+    try {
+      member.setAccessible(true);
+      return member.invoke(annotation);
+    } catch (IllegalAccessException e) {
+      throw new AssertionError(e);
+    } catch (InvocationTargetException e) {
+      throw new IllegalStateException("Failed to read " + member, e.getCause());
+    }
+  }
+
+  private static void memberValueToString(Object value, StringBuilder result) {
+    if (value.getClass().isArray()) {
+      result.append('[');
+      for (int i = 0, length = Array.getLength(value); i < length; i++) {
+        if (i != 0) {
+          result.append(", ");
+        }
+        memberValueToString(Array.get(value, i), result);
+      }
+      result.append(']');
+    } else if (value instanceof Annotation) {
+      qualifierToString((Annotation) value, result);
+    } else {
+      result.append(value);
+    }
+  }
+
   /**
    * @param topLevel true if this is a top-level type where primitive types
    *     like 'int' are forbidden. Recursive calls pass 'false' to support
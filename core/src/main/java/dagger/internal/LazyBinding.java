@@ -25,8 +25,9 @@ final class LazyBinding<T> extends Binding<Lazy<T>> {
 
   private final static Object NOT_PRESENT = new Object();
 
-  private final String lazyKey;
-  private final ClassLoader loader;
+  /** The key of the delegate binding. Null once the delegate is attached. */
+  private String lazyKey;
+  private ClassLoader loader;
   private Binding<T> delegate;
 
   public LazyBinding(String key, Object requiredBy, ClassLoader loader, String lazyKey) {
@@ -38,7 +39,16 @@ final class LazyBinding<T> extends Binding<Lazy<T>> {
   @SuppressWarnings("unchecked") // At runtime we know it's a Binding<Lazy<T>>.
   @Override
   public void attach(Linker linker) {
+    if (lazyKey == null) {
+      delegate = (Binding<T>) linker.getFoldedBinding(delegate);
+      return;
+    }
     delegate = (Binding<T>) linker.requestBinding(lazyKey, requiredBy, loader);
+    if (delegate != null) {
+      // Later calls only swap in a folded singleton, so the key is only garbage.
+      lazyKey = null;
+      loader = null;
+    }
   }
 
   @Override public void injectMembers(Lazy<T> t) {
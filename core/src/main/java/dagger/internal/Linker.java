@@ -15,8 +15,17 @@
  */
 package dagger.internal;
 
+import dagger.GraphListener;
+import dagger.ObjectGraph;
+import dagger.ProvisionRecorder;
+import dagger.internal.loaders.ReflectiveAtInjectBinding;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -36,39 +45,121 @@ public final class Linker {
    */
   private final Linker base;
 
-  /** Bindings requiring a call to attach(). May contain deferred bindings. */
-  private final Queue<Binding<?>> toLink = new LinkedList<Binding<?>>();
+  /**
+   * Bindings requiring a call to attach(). May contain deferred bindings. Null
+   * once this linker is sealed.
+   */
+  private Queue<Binding<?>> toLink = new LinkedList<Binding<?>>();
 
   /** True unless calls to requestBinding() were unable to satisfy the binding. */
   private boolean attachSuccess = true;
 
-  /** All errors encountered during injection. */
-  private final List<String> errors = new ArrayList<String>();
+  /** All errors encountered during injection. Null once this linker is sealed. */
+  private List<String> errors = new ArrayList<String>();
 
   /** All of the object graph's bindings. This may contain unlinked bindings. */
   private final Map<String, Binding<?>> bindings = new HashMap<String, Binding<?>>();
 
-  private final Loader plugin;
+  /**
+   * The bindings added to {@code bindings} that are not yet linked by {@link
+   * #linkAll} or, once {@link #markValidated} has been called, not yet
+   * validated, in the order added. A placeholder stays in this list after its
+   * binding is added.
+   */
+  private final ArrayList<Binding<?>> added = new ArrayList<Binding<?>>();
+
+  /** Installed bindings that were replaced by overrides, or null if there are none. */
+  private Set<Binding<?>> replaced;
+
+  /** The number of bindings in {@code added} that {@link #linkAll} has linked. */
+  private int linkedThrough;
 
-  private final ErrorHandler errorHandler;
+  /** The number of bindings in {@code added} that {@link #markValidated} has covered. */
+  private int validatedThrough;
+
+  /**
+   * True if the bindings in {@code added} after {@code validatedThrough} are
+   * all that haven't been validated. Until then every binding is unvalidated,
+   * and {@code added} only keeps the bindings that aren't linked yet, so that
+   * graphs that are never validated don't retain placeholders and overridden
+   * bindings.
+   */
+  private boolean tracksUnvalidated;
+
+  /** Creates just-in-time bindings. Null once this linker is sealed. */
+  private Loader plugin;
+
+  /** Null once this linker is sealed. */
+  private ErrorHandler errorHandler;
+
+  /** True if this linker's link-time state has been released by {@link #seal}. */
+  private boolean sealed;
+
+  /** Receives link timings, or null to skip timing entirely. */
+  private final GraphListener listener;
+
+  /** The graph whose bindings this links, as reported to the listener. May be null. */
+  private final ObjectGraph graph;
+
+  /**
+   * The creation time of JIT bindings that haven't yet been linked. Only
+   * populated if there is a listener and this linker isn't sealed.
+   */
+  private Map<Binding<?>, JitTiming> jitTimings;
+
+  /** Folded singletons and their constants while {@link #foldSingletons} runs, otherwise null. */
+  private Map<Binding<?>, Binding<?>> folded;
+
+  /**
+   * The classes that JIT bindings were created for, with the class loaders
+   * they were requested from, or null unless {@link #recordJitClasses} was
+   * called.
+   */
+  private Map<String, ClassLoader> jitClasses;
 
   public Linker(Linker base, Loader plugin, ErrorHandler errorHandler) {
+    this(base, plugin, errorHandler, null);
+  }
+
+  public Linker(Linker base, Loader plugin, ErrorHandler errorHandler, GraphListener listener) {
+    this(base, plugin, errorHandler, listener, null);
+  }
+
+  public Linker(Linker base, Loader plugin, ErrorHandler errorHandler, GraphListener listener,
+      ObjectGraph graph) {
     if (plugin == null) throw new NullPointerException("plugin");
     if (errorHandler == null) throw new NullPointerException("errorHandler");
 
     this.base = base;
     this.plugin = plugin;
     this.errorHandler = errorHandler;
+    this.listener = listener;
+    this.graph = graph;
+    this.jitTimings = listener != null ? new IdentityHashMap<Binding<?>, JitTiming>() : null;
   }
 
   /**
    * Adds all bindings in {@code toInstall}. The caller must call either {@link
    * #linkAll} or {@link #requestBinding} and {@link #linkRequested} before the
-   * bindings can be used.
+   * bindings can be used. Placeholders from {@link ModuleAdapter#lazyBinding}
+   * are installed as they are, and replaced by their bindings when needed.
    */
   public void installBindings(Map<String, ? extends Binding<?>> toInstall) {
+    if (sealed) {
+      throw new IllegalStateException("Cannot install bindings in a sealed linker");
+    }
     for (Map.Entry<String, ? extends Binding<?>> entry : toInstall.entrySet()) {
-      bindings.put(entry.getKey(), scope(entry.getValue()));
+      Binding<?> binding = entry.getValue() instanceof PendingBinding
+          ? entry.getValue()
+          : instrument(scope(entry.getValue()));
+      Binding<?> previous = bindings.put(entry.getKey(), binding);
+      if (previous != null) {
+        if (replaced == null) {
+          replaced = Collections.newSetFromMap(new IdentityHashMap<Binding<?>, Boolean>());
+        }
+        replaced.add(previous);
+      }
+      added.add(binding);
     }
   }
 
@@ -80,22 +171,107 @@ public final class Linker {
    * @return all bindings known by this linker, which will all be linked.
    */
   public Map<String, Binding<?>> linkAll() {
-    for (Binding<?> binding : bindings.values()) {
-      if (!binding.isLinked()) {
+    // Bindings added before the last call are linked, and stay linked.
+    for (int i = linkedThrough; i < added.size(); i++) {
+      Binding<?> binding = added.get(i);
+      if (binding instanceof PendingBinding) {
+        // The binding is added after the placeholder, so this loop reaches it too.
+        if (bindings.get(binding.provideKey) == binding) {
+          materialize((PendingBinding) binding);
+        }
+      } else if (!binding.isLinked() && isInstalled(binding)) {
         toLink.add(binding);
       }
     }
     linkRequested();
+    linkedThrough = added.size();
+    dropSettled();
     return bindings;
   }
 
+  /**
+   * Returns the bindings added to this linker since the last call to {@link
+   * #markValidated}. These are all of its bindings for a linker that hasn't
+   * been validated, and the just-in-time bindings created since for a
+   * validated one. Bindings of the base linker aren't included.
+   */
+  public List<Binding<?>> unvalidatedBindings() {
+    assertLockHeld();
+    if (!tracksUnvalidated) {
+      Set<Binding<?>> result = new LinkedHashSet<Binding<?>>();
+      for (Binding<?> binding : bindings.values()) {
+        if (binding != Binding.UNRESOLVED && !(binding instanceof PendingBinding)) {
+          result.add(binding);
+        }
+      }
+      return new ArrayList<Binding<?>>(result);
+    }
+    List<Binding<?>> result = new ArrayList<Binding<?>>(added.size() - validatedThrough);
+    for (int i = validatedThrough; i < added.size(); i++) {
+      Binding<?> binding = added.get(i);
+      if (isInstalled(binding) && !(binding instanceof PendingBinding)) {
+        result.add(binding);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Records that the bindings returned by {@link #unvalidatedBindings} are
+   * free of problems, so that later validations can skip them.
+   */
+  public void markValidated() {
+    assertLockHeld();
+    tracksUnvalidated = true;
+    validatedThrough = added.size();
+    dropSettled();
+  }
+
+  /**
+   * Forgets the bindings in {@code added} that are settled: linked, and
+   * validated if validations are tracked. Placeholders and overridden
+   * bindings can then be collected once the graph no longer needs them.
+   */
+  private void dropSettled() {
+    int settled = tracksUnvalidated ? Math.min(linkedThrough, validatedThrough) : linkedThrough;
+    if (settled == 0) {
+      return;
+    }
+    List<Binding<?>> dropped = added.subList(0, settled);
+    if (replaced != null) {
+      for (Binding<?> binding : dropped) {
+        replaced.remove(binding);
+      }
+      if (replaced.isEmpty()) {
+        replaced = null;
+      }
+    }
+    dropped.clear();
+    added.trimToSize();
+    linkedThrough -= settled;
+    validatedThrough = Math.max(validatedThrough - settled, 0);
+  }
+
+  /** Returns false if {@code binding} was replaced by an override. */
+  private boolean isInstalled(Binding<?> binding) {
+    return replaced == null || !replaced.contains(binding);
+  }
+
   /**
    * Links all requested bindings plus their transitive dependencies. This
    * creates JIT bindings as necessary to fill in the gaps.
    */
   public void linkRequested() {
     assertLockHeld();
+    if (sealed) {
+      return; // Requests are answered by linked bindings, or fail.
+    }
 
+    if (listener != null) {
+      listener.linkPassStarting();
+    }
+    long start = listener != null ? System.nanoTime() : 0L;
+    int linkedCount = 0;
     Binding<?> binding;
     while ((binding = toLink.poll()) != null) {
       if (binding instanceof DeferredBinding) {
@@ -106,6 +282,7 @@ public final class Linker {
           continue; // A binding for this key has since been linked.
         }
         try {
+          long jitStart = listener != null ? System.nanoTime() : 0L;
           Binding<?> jitBinding =
               createJitBinding(key, binding.requiredBy, deferred.classLoader, mustHaveInjections);
           jitBinding.setLibrary(binding.library());
@@ -115,9 +292,13 @@ public final class Linker {
             throw new IllegalStateException("Unable to create binding for " + key);
           }
           // Enqueue the JIT binding so its own dependencies can be linked.
-          Binding<?> scopedJitBinding = scope(jitBinding);
+          Binding<?> scopedJitBinding = instrument(scope(jitBinding));
           toLink.add(scopedJitBinding);
           putBinding(scopedJitBinding);
+          if (listener != null) {
+            jitTimings.put(scopedJitBinding, new JitTiming(
+                jitBinding instanceof ReflectiveAtInjectBinding, System.nanoTime() - jitStart));
+          }
         } catch (Exception e) {
           if (e.getMessage() != null) {
             addError(e.getMessage() + " required by " + binding.requiredBy);
@@ -133,15 +314,30 @@ public final class Linker {
         // is not available, the attach will fail. We'll enqueue creation of
         // that dependency and retry the attachment later.
         attachSuccess = true;
+        boolean wasLinked = binding.isLinked();
+        if (listener != null && !wasLinked) {
+          listener.bindingLinking(key(binding), jitTimings.containsKey(binding));
+        }
+        long attachStart = listener != null ? System.nanoTime() : 0L;
         binding.attach(this);
         if (attachSuccess) {
           binding.setLinked();
+          if (!wasLinked) {
+            linkedCount++;
+            if (listener != null) {
+              reportLinked(binding, System.nanoTime() - attachStart);
+            }
+          }
         } else {
           toLink.add(binding);
         }
       }
     }
 
+    if (listener != null) {
+      listener.linkPassCompleted(linkedCount, System.nanoTime() - start);
+    }
+
     try {
       errorHandler.handleErrors(errors);
     } finally {
@@ -149,6 +345,16 @@ public final class Linker {
     }
   }
 
+  private void reportLinked(Binding<?> binding, long attachNanos) {
+    String key = key(binding);
+    JitTiming jitTiming = jitTimings.remove(binding);
+    if (jitTiming != null) {
+      listener.bindingLinked(key, true, jitTiming.reflective, jitTiming.nanos + attachNanos);
+    } else {
+      listener.bindingLinked(key, false, false, attachNanos);
+    }
+  }
+
   /**
    * Don't permit bindings to be linked without a lock. Callers should lock
    * before requesting any bindings, link the requested bindings, retrieve
@@ -184,6 +390,9 @@ public final class Linker {
       Binding<?> binding =
           plugin.getAtInjectBinding(key, className, classLoader, mustHaveInjections);
       if (binding != null) {
+        if (jitClasses != null && !jitClasses.containsKey(className)) {
+          jitClasses.put(className, classLoader);
+        }
         return binding;
       }
     }
@@ -234,11 +443,21 @@ public final class Linker {
     for (Linker linker = this; linker != null; linker = linker.base) {
       binding = linker.bindings.get(key);
       if (binding != null) {
+        // A base linker was linked entirely before this one was created, so
+        // only this linker still has placeholders to materialize.
         if (linker != this && !binding.isLinked()) throw new AssertionError();
+        if (binding instanceof PendingBinding) {
+          binding = materialize((PendingBinding) binding);
+        }
         break;
       }
     }
 
+    if (binding == null && sealed) {
+      throw new IllegalStateException("No binding for " + key + " required by " + requiredBy
+          + ". The graph is sealed, so bindings can't be created just in time.");
+    }
+
     if (binding == null) {
       // We can't satisfy this binding. Make sure it'll work next time!
       Binding<?> deferredBinding =
@@ -259,7 +478,170 @@ public final class Linker {
     return binding;
   }
 
+  /**
+   * Links every binding, then releases the state that only linking needs: the
+   * link queue, the error list, the error handler, the loader, the
+   * placeholders of unresolved keys, and the bindings added and replaced so
+   * far, including materialized placeholders and overridden bindings.
+   * Afterwards, requesting a key without a binding fails instead of creating a
+   * just-in-time binding. Linkers that use this one as their base still link
+   * their own bindings.
+   *
+   * <p>If every binding has been validated, what required each binding is
+   * forgotten too. Otherwise {@link #unvalidatedBindings} returns all bindings
+   * of the sealed linker, as for a linker that hasn't been validated.
+   */
+  public void seal() {
+    assertLockHeld();
+    if (sealed) {
+      return;
+    }
+    linkAll();
+    for (Iterator<Binding<?>> i = bindings.values().iterator(); i.hasNext(); ) {
+      if (i.next() == Binding.UNRESOLVED) {
+        i.remove();
+      }
+    }
+    sealed = true;
+    toLink = null;
+    errors = null;
+    errorHandler = null;
+    plugin = null;
+    jitTimings = null;
+
+    // Nothing is linked or added from now on, so only validation uses these.
+    tracksUnvalidated = tracksUnvalidated && validatedThrough == added.size();
+    added.clear();
+    added.trimToSize();
+    replaced = null;
+    linkedThrough = 0;
+    validatedThrough = 0;
+    if (tracksUnvalidated) {
+      for (Binding<?> binding : bindings.values()) {
+        forgetRequiredBy(binding);
+      }
+    }
+  }
+
+  /** Clears what required {@code binding} and the bindings that it wraps. */
+  private static void forgetRequiredBy(Binding<?> binding) {
+    while (binding != null) {
+      binding.requiredBy = null;
+      if (binding instanceof SingletonBinding) {
+        binding = ((SingletonBinding<?>) binding).binding;
+      } else if (binding instanceof InstrumentedBinding) {
+        binding = ((InstrumentedBinding<?>) binding).binding;
+      } else if (binding instanceof ConstantBinding) {
+        binding = ((ConstantBinding<?>) binding).binding;
+      } else {
+        binding = null;
+      }
+    }
+  }
+
+  /**
+   * Replaces each linked singleton binding whose instance has been created
+   * with a binding of that instance, then attaches every linked binding again
+   * so that dependents hold the constant binding instead of the singleton.
+   * Singletons that are instrumented for a listener are left as they are.
+   * Bindings that don't request their dependencies again when attached swap
+   * them with {@link #getFoldedBinding}.
+   *
+   * @return the number of singletons folded.
+   */
+  public int foldSingletons() {
+    assertLockHeld();
+    Map<Binding<?>, Binding<?>> folded = new IdentityHashMap<Binding<?>, Binding<?>>();
+    for (Map.Entry<String, Binding<?>> entry : bindings.entrySet()) {
+      Binding<?> singleton = entry.getValue();
+      if (!singleton.isLinked()) {
+        continue;
+      }
+      Binding<?> constant = folded.get(singleton);
+      if (constant == null) {
+        if (singleton instanceof SingletonBinding) {
+          SingletonBinding<?> wrapper = (SingletonBinding<?>) singleton;
+          Object instance = wrapper.onlyInstance;
+          if (instance == UNINITIALIZED) {
+            continue;
+          }
+          constant = new ConstantBinding<Object>(wrapper, wrapper.binding, instance);
+        } else if (singleton instanceof ScopedBinding) {
+          ScopedBinding<?> scoped = (ScopedBinding<?>) singleton;
+          if (!scoped.isCreated()) {
+            continue;
+          }
+          constant = new ConstantBinding<Object>(scoped, scoped, scoped.get());
+        } else {
+          continue;
+        }
+        folded.put(singleton, constant);
+      }
+      entry.setValue(constant);
+    }
+    if (folded.isEmpty()) {
+      return 0;
+    }
+
+    Set<Binding<?>> linked = Collections.newSetFromMap(new IdentityHashMap<Binding<?>, Boolean>());
+    this.folded = folded;
+    try {
+      for (Binding<?> binding : bindings.values()) {
+        if (binding.isLinked() && linked.add(binding)) {
+          binding.attach(this); // Every dependency is linked, so this only swaps in constants.
+        }
+      }
+    } finally {
+      this.folded = null;
+    }
+    return folded.size();
+  }
+
+  /**
+   * Records the class of each JIT binding created from now on, for {@link
+   * #getJitClasses}.
+   */
+  public void recordJitClasses() {
+    if (jitClasses == null) {
+      jitClasses = new LinkedHashMap<String, ClassLoader>();
+    }
+  }
+
+  /**
+   * Returns the names of the classes that JIT bindings were created for since
+   * {@link #recordJitClasses}, with the class loaders they were requested
+   * from. Returns an empty map if this linker doesn't record them.
+   */
+  public Map<String, ClassLoader> getJitClasses() {
+    assertLockHeld();
+    return jitClasses != null
+        ? Collections.unmodifiableMap(jitClasses)
+        : Collections.<String, ClassLoader>emptyMap();
+  }
+
+  /**
+   * Returns the constant that replaced {@code binding} if the current call to
+   * {@link #foldSingletons} folded it, or {@code binding} otherwise.
+   */
+  public Binding<?> getFoldedBinding(Binding<?> binding) {
+    Binding<?> constant = folded != null ? folded.get(binding) : null;
+    return constant != null ? constant : binding;
+  }
+
+  /**
+   * Replaces the placeholder {@code pending}, which must be installed in this
+   * linker, with a new binding for its method, and returns that binding.
+   */
+  private Binding<?> materialize(PendingBinding pending) {
+    if (bindings.get(pending.provideKey) != pending) throw new AssertionError();
+    Binding<?> binding = instrument(scope(pending.create()));
+    bindings.put(pending.provideKey, binding);
+    added.add(binding);
+    return binding;
+  }
+
   private <T> void putBinding(final Binding<T> binding) {
+    added.add(binding);
 
     // At binding insertion time it's possible that another binding for the same
     // key to already exist. This occurs when an @Provides method returns a type T
@@ -276,13 +658,39 @@ public final class Linker {
    * Returns a scoped binding for {@code binding}.
    */
   static <T> Binding<T> scope(final Binding<T> binding) {
-    if (!binding.isSingleton()) {
+    if (!binding.isSingleton() || binding instanceof ScopedBinding) {
       return binding;
     }
     if (binding instanceof SingletonBinding) throw new AssertionError();
     return new SingletonBinding<T>(binding);
   }
 
+  /**
+   * Returns a binding that reports its calls to the listener's recorder for
+   * its key, or {@code binding} itself if there is no such recorder.
+   */
+  private <T> Binding<T> instrument(Binding<T> binding) {
+    if (listener == null) {
+      return binding;
+    }
+    ProvisionRecorder recorder = listener.provisionRecorder(graph, key(binding));
+    if (recorder == null) {
+      return binding;
+    }
+    if (binding instanceof ScopedBinding) {
+      binding = new SingletonBinding<T>(binding); // Report the time spent waiting on its lock.
+    }
+    if (binding instanceof SingletonBinding) {
+      ((SingletonBinding<T>) binding).recorder = recorder;
+    }
+    return new InstrumentedBinding<T>(binding, recorder);
+  }
+
+  /** Returns the key that identifies {@code binding} to the listener. */
+  private static String key(Binding<?> binding) {
+    return binding.provideKey != null ? binding.provideKey : binding.membersKey;
+  }
+
   /**
    * Puts the mapping {@code key, value} in {@code map} if no mapping for {@code
    * key} already exists.
@@ -305,6 +713,8 @@ public final class Linker {
   private static class SingletonBinding<T> extends Binding<T> {
     private final Binding<T> binding;
     private volatile Object onlyInstance = UNINITIALIZED;
+    /** Receives the time threads wait on another thread's initialization, or null. */
+    private ProvisionRecorder recorder;
 
     private SingletonBinding(Binding<T> binding) {
       super(binding.provideKey, binding.membersKey, true, binding.requiredBy);
@@ -322,9 +732,12 @@ public final class Linker {
     @SuppressWarnings("unchecked") // onlyInstance is either 'UNINITIALIZED' or a 'T'.
     @Override public T get() {
       if (onlyInstance == UNINITIALIZED) {
+        long start = recorder != null ? System.nanoTime() : 0L;
         synchronized (this) {
           if (onlyInstance == UNINITIALIZED) {
             onlyInstance = binding.get();
+          } else if (recorder != null) {
+            recorder.singletonWaited(System.nanoTime() - start);
           }
         }
       }
@@ -384,6 +797,141 @@ public final class Linker {
     }
   }
 
+  /**
+   * A binding of a singleton's instance, which replaces the singleton's
+   * binding once the instance exists. Getting the instance is a read of a
+   * final field.
+   */
+  private static class ConstantBinding<T> extends Binding<T> {
+    private final Binding<?> binding;
+    private final T instance;
+
+    private ConstantBinding(Binding<?> singleton, Binding<?> binding, T instance) {
+      super(singleton.provideKey, singleton.membersKey, true, singleton.requiredBy);
+      this.binding = binding;
+      this.instance = instance;
+      setLinked();
+      setCycleFree(singleton.isCycleFree());
+      setLibrary(singleton.library());
+      setDependedOn(singleton.dependedOn());
+    }
+
+    @Override public void attach(Linker linker) {
+      binding.attach(linker);
+    }
+
+    @Override public T get() {
+      return instance;
+    }
+
+    @SuppressWarnings("unchecked") // Members of the singleton's type are injected.
+    @Override public void injectMembers(T t) {
+      ((Binding<T>) binding).injectMembers(t);
+    }
+
+    @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
+      binding.getDependencies(get, injectMembers);
+    }
+
+    @Override public String toString() {
+      return "@Constant/" + binding.toString();
+    }
+  }
+
+  /**
+   * A binding that reports the duration of each call to an existing binding.
+   */
+  private static class InstrumentedBinding<T> extends Binding<T> {
+    private final Binding<T> binding;
+    private final ProvisionRecorder recorder;
+
+    private InstrumentedBinding(Binding<T> binding, ProvisionRecorder recorder) {
+      super(binding.provideKey, binding.membersKey, binding.isSingleton(), binding.requiredBy);
+      this.binding = binding;
+      this.recorder = recorder;
+    }
+
+    @Override public void attach(Linker linker) {
+      binding.attach(linker);
+    }
+
+    @Override public T get() {
+      long start = System.nanoTime();
+      T result = binding.get();
+      recorder.provisioned(System.nanoTime() - start);
+      return result;
+    }
+
+    @Override public void injectMembers(T t) {
+      long start = System.nanoTime();
+      binding.injectMembers(t);
+      recorder.injected(System.nanoTime() - start);
+    }
+
+    @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
+      binding.getDependencies(get, injectMembers);
+    }
+
+    @Override public boolean isCycleFree() {
+      return binding.isCycleFree();
+    }
+
+    @Override public boolean isLinked() {
+      return binding.isLinked();
+    }
+
+    @Override public boolean isVisiting() {
+      return binding.isVisiting();
+    }
+
+    @Override public boolean library() {
+      return binding.library();
+    }
+
+    @Override public boolean dependedOn() {
+      return binding.dependedOn();
+    }
+
+    @Override public void setCycleFree(boolean cycleFree) {
+      binding.setCycleFree(cycleFree);
+    }
+
+    @Override public void setVisiting(boolean visiting) {
+      binding.setVisiting(visiting);
+    }
+
+    @Override public void setLibrary(boolean library) {
+      binding.setLibrary(library);
+    }
+
+    @Override public void setDependedOn(boolean dependedOn) {
+      binding.setDependedOn(dependedOn);
+    }
+
+    @Override protected boolean isSingleton() {
+      return binding.isSingleton();
+    }
+
+    @Override protected void setLinked() {
+      binding.setLinked();
+    }
+
+    @Override public String toString() {
+      return "@Instrumented/" + binding.toString();
+    }
+  }
+
+  /** The creation time of a JIT binding, reported once the binding is linked. */
+  private static class JitTiming {
+    final boolean reflective;
+    final long nanos;
+
+    JitTiming(boolean reflective, long nanos) {
+      this.reflective = reflective;
+      this.nanos = nanos;
+    }
+  }
+
   /** Handles linker errors appropriately. */
   public interface ErrorHandler {
     ErrorHandler NULL = new ErrorHandler() {
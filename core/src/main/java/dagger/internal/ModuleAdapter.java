@@ -29,7 +29,10 @@ public abstract class ModuleAdapter<T> {
   public final Class<?>[] includes;
   public final boolean complete;
   public final boolean library;
+  /** The module, or null until it is first used if the loader wasn't given an instance. */
   protected T module;
+  /** The class of the module, set by the loader. */
+  Class<?> moduleClass;
 
   protected ModuleAdapter(String[] injectableTypes, Class<?>[] staticInjections, boolean overrides,
       Class<?>[] includes, boolean complete, boolean library) {
@@ -49,6 +52,25 @@ public abstract class ModuleAdapter<T> {
     // no-op;
   }
 
+  /**
+   * Returns a placeholder for the binding of the {@code @Provides} method at
+   * {@code ordinal}, which provides {@code key}. Adapters may put placeholders
+   * in {@link #getBindings} instead of bindings. The linker replaces each one
+   * with {@link #newBinding} when the key is first requested or linked.
+   */
+  protected final Binding<?> lazyBinding(String key, int ordinal) {
+    return new PendingBinding(this, key, ordinal);
+  }
+
+  /**
+   * Returns a new binding for the {@code @Provides} method at {@code ordinal},
+   * for which {@link #getBindings} returned a {@link #lazyBinding placeholder}.
+   */
+  protected Binding<?> newBinding(int ordinal) {
+    throw new UnsupportedOperationException(
+        "No binding " + ordinal + " on " + getClass().getName());
+  }
+
   /**
    * Returns a new instance of the module class created using a no-args
    * constructor. Only used when a manually-constructed module is not supplied.
@@ -57,7 +79,30 @@ public abstract class ModuleAdapter<T> {
     throw new UnsupportedOperationException("No no-args constructor on " + getClass().getName());
   }
 
-  public T getModule() {
+  /**
+   * Returns true if {@link #newModule} can create the module, so that the
+   * loader may leave that until the module is first used. Otherwise the loader
+   * calls {@code newModule()} right away, which reports a module that can't be
+   * created when the graph is.
+   */
+  protected boolean canCreateModule() {
+    return false;
+  }
+
+  /**
+   * Returns the module, creating it with {@link #newModule} if the graph
+   * wasn't given an instance. Included modules are created on first use, when
+   * one of their bindings is.
+   */
+  public synchronized T getModule() {
+    if (module == null) {
+      module = newModule();
+    }
     return module;
   }
+
+  /** Returns the class of the module, without creating the module. */
+  public Class<?> getModuleClass() {
+    return moduleClass != null ? moduleClass : getModule().getClass();
+  }
 }
@@ -17,6 +17,7 @@
 package dagger.internal;
 
 
+import dagger.GraphListener;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -33,14 +34,25 @@ public final class Modules {
    */
   public static Map<Class<?>, ModuleAdapter<?>> getAllModuleAdapters(Loader plugin,
       Object[] seedModules) {
+    return getAllModuleAdapters(plugin, null, seedModules);
+  }
+
+  /**
+   * Returns a full set of module adapters, including module adapters for included
+   * modules. The load time of each adapter is reported to {@code listener}, if
+   * it is non-null.
+   */
+  public static Map<Class<?>, ModuleAdapter<?>> getAllModuleAdapters(Loader plugin,
+      GraphListener listener, Object[] seedModules) {
     // Create a module adapter for each seed module.
     ModuleAdapter<?>[] seedAdapters = new ModuleAdapter<?>[seedModules.length];
     int s = 0;
     for (Object module : seedModules) {
       if (module instanceof Class) {
-        seedAdapters[s++] = plugin.getModuleAdapter((Class<?>) module, null); // Loader constructs.
+        // Loader constructs.
+        seedAdapters[s++] = getModuleAdapter(plugin, listener, (Class<?>) module, null);
       } else {
-        seedAdapters[s++] = plugin.getModuleAdapter(module.getClass(), module);
+        seedAdapters[s++] = getModuleAdapter(plugin, listener, module.getClass(), module);
       }
     }
 
@@ -50,13 +62,13 @@ public final class Modules {
     // Add the adapters that we have module instances for. This way we won't
     // construct module objects when we have a user-supplied instance.
     for (ModuleAdapter<?> adapter : seedAdapters) {
-      adaptersByModuleType.put(adapter.getModule().getClass(), adapter);
+      adaptersByModuleType.put(adapter.getModuleClass(), adapter);
     }
 
-    // Next add adapters for the modules that we need to construct. This creates
-    // instances of modules as necessary.
+    // Next add adapters for the modules that we need to construct. Their
+    // instances are created when their bindings are first used.
     for (ModuleAdapter<?> adapter : seedAdapters) {
-      collectIncludedModulesRecursively(plugin, adapter, adaptersByModuleType);
+      collectIncludedModulesRecursively(plugin, listener, adapter, adaptersByModuleType);
     }
 
     return adaptersByModuleType;
@@ -66,15 +78,28 @@ public final class Modules {
    * Fills {@code result} with the module adapters for the includes of {@code
    * adapter}, and their includes recursively.
    */
-  private static void collectIncludedModulesRecursively(Loader plugin, ModuleAdapter<?> adapter,
-      Map<Class<?>, ModuleAdapter<?>> result) {
+  private static void collectIncludedModulesRecursively(Loader plugin, GraphListener listener,
+      ModuleAdapter<?> adapter, Map<Class<?>, ModuleAdapter<?>> result) {
     for (Class<?> include : adapter.includes) {
       if (!result.containsKey(include)) {
-        ModuleAdapter<Object> includedModuleAdapter = plugin.getModuleAdapter(include, null);
+        ModuleAdapter<Object> includedModuleAdapter =
+            getModuleAdapter(plugin, listener, include, null);
         result.put(include, includedModuleAdapter);
-        collectIncludedModulesRecursively(plugin, includedModuleAdapter, result);
+        collectIncludedModulesRecursively(plugin, listener, includedModuleAdapter, result);
       }
     }
   }
 
+  private static <T> ModuleAdapter<T> getModuleAdapter(Loader plugin, GraphListener listener,
+      Class<? extends T> moduleClass, T module) {
+    if (listener == null) {
+      return plugin.getModuleAdapter(moduleClass, module);
+    }
+    listener.moduleAdapterLoading(moduleClass);
+    long start = System.nanoTime();
+    ModuleAdapter<T> result = plugin.getModuleAdapter(moduleClass, module);
+    listener.moduleAdapterLoaded(moduleClass, System.nanoTime() - start);
+    return result;
+  }
+
 }
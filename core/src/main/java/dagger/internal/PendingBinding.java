@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+/**
+ * Stands in for the binding of a module's {@code @Provides} method until the
+ * linker first requests or links it. Only then is the binding created, so a
+ * graph pays for the bindings it uses rather than for every binding its
+ * modules declare.
+ */
+final class PendingBinding extends Binding<Object> {
+  private final ModuleAdapter<?> adapter;
+  private final int ordinal;
+
+  PendingBinding(ModuleAdapter<?> adapter, String key, int ordinal) {
+    super(key, null, false, null);
+    this.adapter = adapter;
+    this.ordinal = ordinal;
+  }
+
+  /** Returns a new binding for this placeholder's method. */
+  Binding<?> create() {
+    Binding<?> binding = adapter.newBinding(ordinal);
+    if (!provideKey.equals(binding.provideKey)) {
+      throw new IllegalStateException(adapter.getClass().getName() + " created " + binding
+          + " for " + provideKey);
+    }
+    return binding;
+  }
+
+  @Override public String toString() {
+    return "PendingBinding[provideKey=\"" + provideKey + "\", adapter="
+        + adapter.getClass().getName() + ", ordinal=" + ordinal + "]";
+  }
+}
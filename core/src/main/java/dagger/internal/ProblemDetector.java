@@ -17,16 +17,62 @@ package dagger.internal;
 
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 
 /**
  * Detects problems like cyclic dependencies.
  */
 public final class ProblemDetector {
+  private final Executor executor;
+
+  public ProblemDetector() {
+    this(null);
+  }
+
+  /**
+   * @param executor runs the cycle search of each independent group of
+   *     bindings, or null to search on the calling thread.
+   */
+  public ProblemDetector(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Throws if any of {@code bindings}, or the bindings they depend on, depend
+   * on themselves. The exception's message lists every cycle found. Bindings
+   * that aren't part of a cycle are marked cycle-free so later calls skip them.
+   */
   public void detectCircularDependencies(Collection<Binding<?>> bindings) {
-    detectCircularDependencies(bindings, new ArrayList<Binding<?>>());
+    DependencyGraph graph = new DependencyGraph(bindings);
+    List<int[]> cycles = graph.findCycles(executor);
+    for (int node = 0; node < graph.size; node++) {
+      if (!graph.inCycle[node]) {
+        graph.nodes.get(node).setCycleFree(true);
+      }
+    }
+    if (!cycles.isEmpty()) {
+      StringBuilder message = new StringBuilder();
+      for (int[] cycle : cycles) {
+        message.append(message.length() > 0 ? "\n" : "").append("Dependency cycle:");
+        for (int i = 0; i < cycle.length; i++) {
+          Binding<?> binding = graph.nodes.get(cycle[i]);
+          message.append("\n    ").append(i).append(". ")
+              .append(binding.provideKey).append(" bound by ").append(binding);
+        }
+        message.append("\n    ").append(0).append(". ")
+            .append(graph.nodes.get(cycle[0]).provideKey);
+      }
+      throw new IllegalStateException(message.toString());
+    }
   }
 
   public void detectUnusedBinding(Collection<Binding<?>> bindings) {
@@ -48,42 +94,316 @@ public final class ProblemDetector {
     }
   }
 
-  private static void detectCircularDependencies(Collection<Binding<?>> bindings,
-      List<Binding<?>> path) {
-    for (Binding<?> binding : bindings) {
-      if (binding.isCycleFree()) {
-        continue;
+  public void detectProblems(Collection<Binding<?>> values) {
+    detectCircularDependencies(values);
+    detectUnusedBinding(values);
+  }
+
+  /**
+   * A snapshot of the bindings that haven't been confirmed cycle-free, with
+   * each binding numbered and its dependencies stored as an adjacency list of
+   * those numbers. Searching it needs neither recursion nor per-binding state.
+   */
+  static final class DependencyGraph {
+    final List<Binding<?>> nodes = new ArrayList<Binding<?>>();
+    final int size;
+    /** Node {@code n}'s dependencies are {@code edges[edgesStart[n]..edgesStart[n + 1]]}. */
+    final int[] edgesStart;
+    final int[] edges;
+    /** Set for each node in a strongly connected component that has a cycle. */
+    final boolean[] inCycle;
+
+    // Tarjan's algorithm state. Searches of different groups write disjoint entries.
+    private final int[] index;
+    private final int[] lowLink;
+    private final boolean[] onStack;
+
+    DependencyGraph(Collection<Binding<?>> bindings) {
+      Map<Binding<?>, Integer> numbers = new IdentityHashMap<Binding<?>, Integer>();
+      for (Binding<?> binding : bindings) {
+        number(binding, numbers);
+      }
+      // Number dependencies as they're found, which adds them to the end of the queue.
+      int[] edges = new int[Math.max(16, nodes.size() * 2)];
+      List<Integer> edgesStart = new ArrayList<Integer>();
+      int edgeCount = 0;
+      ArraySet<Binding<?>> dependencies = new ArraySet<Binding<?>>();
+      for (int node = 0; node < nodes.size(); node++) {
+        edgesStart.add(edgeCount);
+        dependencies.clear();
+        nodes.get(node).getDependencies(dependencies, dependencies);
+        for (Binding<?> dependency : dependencies) {
+          int number = number(dependency, numbers);
+          if (number == -1) {
+            continue;
+          }
+          if (edgeCount == edges.length) {
+            edges = Arrays.copyOf(edges, edgeCount * 2);
+          }
+          edges[edgeCount++] = number;
+        }
+      }
+      this.size = nodes.size();
+      this.edgesStart = new int[size + 1];
+      for (int node = 0; node < size; node++) {
+        this.edgesStart[node] = edgesStart.get(node);
+      }
+      this.edgesStart[size] = edgeCount;
+      this.edges = edges;
+      this.inCycle = new boolean[size];
+      this.index = new int[size];
+      this.lowLink = new int[size];
+      this.onStack = new boolean[size];
+    }
+
+    /** Returns the number of {@code binding}, or -1 if it needn't be searched. */
+    private int number(Binding<?> binding, Map<Binding<?>, Integer> numbers) {
+      if (binding == null || binding.isCycleFree()) {
+        return -1;
       }
+      Integer number = numbers.get(binding);
+      if (number == null) {
+        number = nodes.size();
+        numbers.put(binding, number);
+        nodes.add(binding);
+      }
+      return number;
+    }
 
-      if (binding.isVisiting()) {
-        int index = path.indexOf(binding);
-        StringBuilder message = new StringBuilder()
-            .append("Dependency cycle:");
-        for (int i = index; i < path.size(); i++) {
-          message.append("\n    ").append(i - index).append(". ")
-              .append(path.get(i).provideKey).append(" bound by ").append(path.get(i));
+    /**
+     * Returns a cycle from each strongly connected component that has one,
+     * ordered by the component's lowest node number. Each cycle is a path of
+     * nodes whose last node depends on the first.
+     */
+    List<int[]> findCycles(Executor executor) {
+      final List<int[]> cycles = new ArrayList<int[]>();
+      if (executor == null) {
+        search(allNodes(), cycles);
+      } else {
+        final List<int[]> groups = weaklyConnectedGroups();
+        final CountDownLatch done = new CountDownLatch(groups.size());
+        final Throwable[] failure = new Throwable[1];
+        for (final int[] group : groups) {
+          executor.execute(new Runnable() {
+            @Override public void run() {
+              try {
+                List<int[]> groupCycles = new ArrayList<int[]>();
+                search(group, groupCycles);
+                synchronized (cycles) {
+                  cycles.addAll(groupCycles);
+                }
+              } catch (RuntimeException e) {
+                synchronized (cycles) {
+                  failure[0] = e;
+                }
+              } catch (Error e) {
+                synchronized (cycles) {
+                  failure[0] = e;
+                }
+              } finally {
+                done.countDown();
+              }
+            }
+          });
+        }
+        try {
+          done.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while detecting cycles", e);
+        }
+        synchronized (cycles) {
+          if (failure[0] instanceof RuntimeException) {
+            throw (RuntimeException) failure[0];
+          } else if (failure[0] != null) {
+            throw (Error) failure[0];
+          }
         }
-        message.append("\n    ").append(0).append(". ").append(binding.provideKey);
-        throw new IllegalStateException(message.toString());
       }
+      for (int[] cycle : cycles) {
+        for (int node : cycle) {
+          inCycle[node] = true;
+        }
+      }
+      // Each cycle starts at its component's lowest node.
+      Collections.sort(cycles, new Comparator<int[]>() {
+        @Override public int compare(int[] a, int[] b) {
+          return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+        }
+      });
+      return cycles;
+    }
 
-      binding.setVisiting(true);
-      path.add(binding);
-      try {
-        ArraySet<Binding<?>> dependencies = new ArraySet<Binding<?>>();
-        binding.getDependencies(dependencies, dependencies);
-        detectCircularDependencies(dependencies, path);
-        binding.setCycleFree(true);
-      } finally {
-        path.remove(path.size() - 1);
-        binding.setVisiting(false);
+    private int[] allNodes() {
+      int[] result = new int[size];
+      for (int node = 0; node < size; node++) {
+        result[node] = node;
       }
+      return result;
     }
-  }
 
-  public void detectProblems(Collection<Binding<?>> values) {
-    detectCircularDependencies(values);
-    detectUnusedBinding(values);
+    /**
+     * Partitions the nodes into groups with no dependencies between them,
+     * each in ascending order. Groups are searched independently.
+     */
+    private List<int[]> weaklyConnectedGroups() {
+      int[] parent = allNodes();
+      for (int node = 0; node < size; node++) {
+        for (int e = edgesStart[node]; e < edgesStart[node + 1]; e++) {
+          int a = root(parent, node);
+          int b = root(parent, edges[e]);
+          if (a != b) {
+            parent[Math.max(a, b)] = Math.min(a, b);
+          }
+        }
+      }
+      // Roots are each group's lowest node, so groups are numbered in order of discovery.
+      int[] groupOf = new int[size];
+      List<Integer> groupSizes = new ArrayList<Integer>();
+      for (int node = 0; node < size; node++) {
+        int root = root(parent, node);
+        if (root == node) {
+          groupOf[node] = groupSizes.size();
+          groupSizes.add(0);
+        } else {
+          groupOf[node] = groupOf[root];
+        }
+        groupSizes.set(groupOf[node], groupSizes.get(groupOf[node]) + 1);
+      }
+      List<int[]> groups = new ArrayList<int[]>(groupSizes.size());
+      for (int groupSize : groupSizes) {
+        groups.add(new int[groupSize]);
+      }
+      int[] filled = new int[groups.size()];
+      for (int node = 0; node < size; node++) {
+        groups.get(groupOf[node])[filled[groupOf[node]]++] = node;
+      }
+      return groups;
+    }
+
+    private static int root(int[] parent, int node) {
+      while (parent[node] != node) {
+        parent[node] = parent[parent[node]];
+        node = parent[node];
+      }
+      return node;
+    }
+
+    /**
+     * Finds the strongly connected components reachable from {@code roots}
+     * using an iterative version of Tarjan's algorithm, and adds a cycle from
+     * each component that has one to {@code cycles}.
+     */
+    private void search(int[] roots, List<int[]> cycles) {
+      int counter = 0;
+      // The nodes being visited and the next dependency of each to visit.
+      int[] path = new int[roots.length];
+      int[] nextEdge = new int[roots.length];
+      // Visited nodes that haven't been assigned to a component yet.
+      int[] stack = new int[roots.length];
+      int stackSize = 0;
+
+      for (int root : roots) {
+        if (index[root] != 0) {
+          continue;
+        }
+        int depth = 0;
+        path[0] = root;
+        nextEdge[0] = edgesStart[root];
+        index[root] = lowLink[root] = ++counter;
+        stack[stackSize++] = root;
+        onStack[root] = true;
+
+        while (depth >= 0) {
+          int node = path[depth];
+          if (nextEdge[depth] < edgesStart[node + 1]) {
+            int dependency = edges[nextEdge[depth]++];
+            if (index[dependency] == 0) {
+              depth++;
+              path[depth] = dependency;
+              nextEdge[depth] = edgesStart[dependency];
+              index[dependency] = lowLink[dependency] = ++counter;
+              stack[stackSize++] = dependency;
+              onStack[dependency] = true;
+            } else if (onStack[dependency]) {
+              lowLink[node] = Math.min(lowLink[node], index[dependency]);
+            }
+            continue;
+          }
+
+          // All of this node's dependencies are visited.
+          if (lowLink[node] == index[node]) {
+            int componentStart = stackSize;
+            do {
+              onStack[stack[--componentStart]] = false;
+            } while (stack[componentStart] != node);
+            int[] component = Arrays.copyOfRange(stack, componentStart, stackSize);
+            stackSize = componentStart;
+            int[] cycle = findCycle(component);
+            if (cycle != null) {
+              cycles.add(cycle);
+            }
+          }
+          depth--;
+          if (depth >= 0) {
+            int caller = path[depth];
+            lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns the shortest cycle through the lowest node of a strongly
+     * connected component, or null if the component is a single node that
+     * doesn't depend on itself.
+     */
+    private int[] findCycle(int[] component) {
+      Arrays.sort(component);
+      int start = component[0];
+      if (component.length == 1) {
+        for (int e = edgesStart[start]; e < edgesStart[start + 1]; e++) {
+          if (edges[e] == start) {
+            return component;
+          }
+        }
+        return null;
+      }
+
+      // Breadth-first search back to the start, within the component.
+      int[] previous = new int[component.length];
+      Arrays.fill(previous, -1);
+      int[] queue = new int[component.length];
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = 0;
+      while (head < tail) {
+        int position = queue[head++];
+        int node = component[position];
+        for (int e = edgesStart[node]; e < edgesStart[node + 1]; e++) {
+          int dependency = Arrays.binarySearch(component, edges[e]);
+          if (dependency < 0) {
+            continue;
+          }
+          if (dependency == 0) {
+            int length = 1;
+            for (int p = position; p != 0; p = previous[p]) {
+              length++;
+            }
+            int[] cycle = new int[length];
+            for (int p = position; length > 0; p = previous[p]) {
+              cycle[--length] = component[p];
+            }
+            return cycle;
+          }
+          if (previous[dependency] == -1) {
+            previous[dependency] = position;
+            queue[tail++] = dependency;
+          }
+        }
+      }
+      throw new AssertionError("No cycle in strongly connected component");
+    }
   }
 
   static class ArraySet<T> extends AbstractSet<T> {
@@ -94,6 +414,10 @@ public final class ProblemDetector {
       return true;
     }
 
+    @Override public void clear() {
+      list.clear();
+    }
+
     @Override public Iterator<T> iterator() {
       return list.iterator();
     }
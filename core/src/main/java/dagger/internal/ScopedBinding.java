@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+/**
+ * A singleton binding that holds its own instance. Generated adapters of
+ * singletons extend this, so the linker doesn't need to wrap them in another
+ * binding to scope them.
+ */
+public abstract class ScopedBinding<T> extends Binding<T> {
+  private static final Object UNINITIALIZED = new Object();
+
+  private volatile Object onlyInstance = UNINITIALIZED;
+
+  protected ScopedBinding(String provideKey, String membersKey, Object requiredBy) {
+    super(provideKey, membersKey, IS_SINGLETON, requiredBy);
+  }
+
+  @SuppressWarnings("unchecked") // onlyInstance is either 'UNINITIALIZED' or a 'T'.
+  @Override public final T get() {
+    Object result = onlyInstance;
+    if (result == UNINITIALIZED) {
+      synchronized (this) {
+        result = onlyInstance;
+        if (result == UNINITIALIZED) {
+          result = create();
+          onlyInstance = result;
+        }
+      }
+    }
+    return (T) result;
+  }
+
+  /** Returns the instance, which {@link #get} calls at most once. */
+  protected abstract T create();
+
+  /** Returns true if the instance has been created. */
+  boolean isCreated() {
+    return onlyInstance != UNINITIALIZED;
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Remembers which graphs passed validation, so that validating an unchanged
+ * graph on a later run of the application can skip linking and {@link
+ * ProblemDetector} entirely. Each graph is identified by a fingerprint that is
+ * computed from its module adapters before anything is linked: the adapter and
+ * module classes and the versions of the files they were loaded from, the
+ * adapters' injectable types and static injections, and the keys of their
+ * bindings. A directory holds a small file named after each fingerprint that
+ * passed, which lists the versions of the classes that the validated graph
+ * created just-in-time bindings for. A graph is only a hit if those classes are
+ * unchanged too.
+ *
+ * <p>Classes are versioned by the file they were loaded from. Graphs that use
+ * a class without such a file, like one from a nested jar or a custom class
+ * loader, aren't cached.
+ *
+ * <p>Enable the cache by setting the system property {@value #DIRECTORY_PROPERTY}
+ * to a directory. Failures to read or write the cache are ignored, and only
+ * cost a full validation.
+ */
+public final class ValidationCache {
+  public static final String DIRECTORY_PROPERTY = "dagger.validationCache";
+
+  /** Changes whenever the fingerprint's contents or the validation rules change. */
+  private static final String FORMAT = "dagger-validation-3";
+
+  /** The version of classes that weren't loaded from a file. */
+  private static final String UNVERSIONED = "?";
+
+  /** The version of each class that has been versioned. A loaded class doesn't change. */
+  private static final Map<Class<?>, String> VERSIONS =
+      Collections.synchronizedMap(new WeakHashMap<Class<?>, String>());
+
+  private final File directory;
+
+  public ValidationCache(File directory) {
+    if (directory == null) throw new NullPointerException("directory");
+    this.directory = directory;
+  }
+
+  /** Returns the cache in the directory named by the system property, or null if it isn't set. */
+  public static ValidationCache fromSystemProperty() {
+    String directory = System.getProperty(DIRECTORY_PROPERTY);
+    return directory != null && directory.length() > 0
+        ? new ValidationCache(new File(directory))
+        : null;
+  }
+
+  /**
+   * Returns the fingerprint of a graph of {@code adapters}, whose bindings
+   * have {@code keys}. The order of either doesn't matter. Returns null if
+   * the adapters, modules, injectable types or static injections include a
+   * class that isn't versioned, so that the graph isn't cached.
+   *
+   * @param baseFingerprint the fingerprint of the graph that this graph was
+   *     created from with {@code plus()}, or null for a root graph.
+   */
+  public String fingerprint(String baseFingerprint,
+      Collection<? extends ModuleAdapter<?>> adapters, Collection<String> keys) {
+    List<String> entries = new ArrayList<String>(adapters.size());
+    List<String> names = new ArrayList<String>();
+    for (ModuleAdapter<?> adapter : adapters) {
+      Class<?> moduleClass = adapter.getModuleClass();
+      String adapterVersion = version(adapter.getClass());
+      String moduleVersion = version(moduleClass);
+      if (adapterVersion.equals(UNVERSIONED) || moduleVersion.equals(UNVERSIONED)) {
+        return null;
+      }
+      StringBuilder entry = new StringBuilder()
+          .append(adapter.getClass().getName()).append(' ')
+          .append(adapterVersion).append(' ')
+          .append(moduleClass.getName()).append(' ')
+          .append(moduleVersion).append(' ')
+          .append(adapter.overrides ? 'O' : '-')
+          .append(adapter.complete ? 'C' : '-')
+          .append(adapter.library ? 'L' : '-');
+
+      names.clear();
+      for (String injectableType : adapter.injectableTypes) {
+        String version = version(Keys.getClassName(injectableType),
+            Collections.singletonList(moduleClass.getClassLoader()));
+        if (version.equals(UNVERSIONED)) {
+          return null;
+        }
+        names.add(injectableType + " " + version);
+      }
+      for (Class<?> staticInjection : adapter.staticInjections) {
+        String version = version(staticInjection);
+        if (version.equals(UNVERSIONED)) {
+          return null;
+        }
+        names.add("static " + staticInjection.getName() + " " + version);
+      }
+      Collections.sort(names);
+      for (String name : names) {
+        entry.append("\n  ").append(name);
+      }
+      entries.add(entry.toString());
+    }
+    Collections.sort(entries);
+    List<String> sortedKeys = new ArrayList<String>(keys);
+    Collections.sort(sortedKeys);
+
+    MessageDigest digest = sha1();
+    update(digest, FORMAT);
+    update(digest, "\nbase " + baseFingerprint);
+    for (String entry : entries) {
+      update(digest, "\n");
+      update(digest, entry);
+    }
+    for (String key : sortedKeys) {
+      update(digest, "\nkey ");
+      update(digest, key);
+    }
+    return hex(digest.digest());
+  }
+
+  /**
+   * Returns true if bindings with {@code fingerprint} passed validation
+   * before, and the classes they created just-in-time bindings for are
+   * unchanged. Those classes are loaded from the first of {@code classLoaders}
+   * that has them.
+   */
+  public boolean contains(String fingerprint, Collection<ClassLoader> classLoaders) {
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(
+          new FileInputStream(new File(directory, fingerprint)), "UTF-8"));
+      try {
+        if (!FORMAT.equals(reader.readLine())) {
+          return false;
+        }
+        for (String line; (line = reader.readLine()) != null; ) {
+          int space = line.lastIndexOf(' ');
+          if (space == -1) {
+            return false;
+          }
+          String version = version(line.substring(0, space), classLoaders);
+          if (version.equals(UNVERSIONED) || !version.equals(line.substring(space + 1))) {
+            return false;
+          }
+        }
+        return true;
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      return false; // Including a missing entry.
+    }
+  }
+
+  /**
+   * Records that bindings with {@code fingerprint} passed validation, along
+   * with the versions of {@code jitClasses}: the classes they created
+   * just-in-time bindings for, and the class loaders they were loaded from.
+   * Nothing is recorded if any of those classes isn't versioned.
+   */
+  public void put(String fingerprint, Map<String, ClassLoader> jitClasses) {
+    List<String> lines = new ArrayList<String>(jitClasses.size());
+    for (Map.Entry<String, ClassLoader> entry : jitClasses.entrySet()) {
+      String version = version(entry.getKey(),
+          Collections.singletonList(entry.getValue()));
+      if (version.equals(UNVERSIONED)) {
+        return;
+      }
+      lines.add(entry.getKey() + " " + version);
+    }
+    Collections.sort(lines);
+
+    File file = new File(directory, fingerprint);
+    File temp = null;
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+        return;
+      }
+      // Write and rename so that readers never see a partially written entry.
+      temp = File.createTempFile(fingerprint, ".tmp", directory);
+      Writer out = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+      try {
+        out.write(FORMAT);
+        for (String line : lines) {
+          out.write('\n');
+          out.write(line);
+        }
+      } finally {
+        out.close();
+      }
+      if (temp.renameTo(file) || file.isFile()) {
+        temp = null;
+      }
+    } catch (IOException ignored) {
+      // The next validation will run in full and try again.
+    } finally {
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * Returns the version of the class named {@code className} in the first of
+   * {@code classLoaders} that has it, or {@link #UNVERSIONED} if none can load
+   * it without initializing it.
+   */
+  private static String version(String className, Collection<ClassLoader> classLoaders) {
+    if (className == null) {
+      return UNVERSIONED;
+    }
+    for (ClassLoader classLoader : classLoaders) {
+      try {
+        return version(Class.forName(className, false, classLoader));
+      } catch (ClassNotFoundException e) {
+        // Try the next class loader.
+      } catch (LinkageError e) {
+        return UNVERSIONED;
+      }
+    }
+    return UNVERSIONED;
+  }
+
+  /**
+   * Returns the version of the file that {@code type} was loaded from: its
+   * length and modification time. Classes from a directory use the class file
+   * itself, and classes from a jar use the jar.
+   */
+  private static String version(Class<?> type) {
+    String result = VERSIONS.get(type);
+    if (result == null) {
+      result = fileVersion(type);
+      VERSIONS.put(type, result);
+    }
+    return result;
+  }
+
+  private static String fileVersion(Class<?> type) {
+    File file = null;
+    try {
+      CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+      URL location = codeSource != null ? codeSource.getLocation() : null;
+      if (location != null && "file".equals(location.getProtocol())) {
+        file = new File(location.toURI());
+        // Like URLClassLoader, take locations that end in a slash to be directories.
+        if (location.getPath().endsWith("/")) {
+          file = new File(file, type.getName().replace('.', '/') + ".class");
+        }
+      }
+    } catch (SecurityException e) {
+      file = null;
+    } catch (URISyntaxException e) {
+      file = null;
+    } catch (IllegalArgumentException e) {
+      file = null;
+    }
+    long lastModified = file != null ? file.lastModified() : 0L;
+    return lastModified != 0L ? file.length() + "@" + lastModified : UNVERSIONED;
+  }
+
+  private static MessageDigest sha1() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static void update(MessageDigest digest, String s) {
+    try {
+      digest.update(s.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    char[] digits = "0123456789abcdef".toCharArray();
+    char[] result = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      result[2 * i] = digits[(bytes[i] >> 4) & 0xf];
+      result[2 * i + 1] = digits[bytes[i] & 0xf];
+    }
+    return new String(result);
+  }
+}
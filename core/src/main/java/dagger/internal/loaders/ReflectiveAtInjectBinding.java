@@ -37,10 +37,12 @@ import javax.inject.Singleton;
  */
 public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
   private final Field[] fields;
-  private final ClassLoader loader;
+  /** Loads the dependencies of this binding. Null once they're all attached. */
+  private ClassLoader loader;
   private final Constructor<T> constructor;
   private final Class<?> supertype;
-  private final String[] keys;
+  /** The keys of this binding's dependencies. Null once they're all attached. */
+  private String[] keys;
   private final Binding<?>[] fieldBindings;
   private final Binding<?>[] parameterBindings;
   private Binding<? super T> supertypeBinding;
@@ -68,10 +70,25 @@ public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
 
   @SuppressWarnings("unchecked") // We're careful to make keys and bindings match up.
   @Override public void attach(Linker linker) {
+    if (keys == null) {
+      // Every dependency is attached, so only swap in the constants of folded singletons.
+      for (int i = 0; i < fieldBindings.length; i++) {
+        fieldBindings[i] = linker.getFoldedBinding(fieldBindings[i]);
+      }
+      for (int i = 0; i < parameterBindings.length; i++) {
+        parameterBindings[i] = linker.getFoldedBinding(parameterBindings[i]);
+      }
+      if (supertypeBinding != null) {
+        supertypeBinding = (Binding<? super T>) linker.getFoldedBinding(supertypeBinding);
+      }
+      return;
+    }
+    boolean attached = true;
     int k = 0;
     for (int i = 0; i < fields.length; i++) {
       if (fieldBindings[i] == null) {
         fieldBindings[i] = linker.requestBinding(keys[k], fields[i], loader);
+        attached &= fieldBindings[i] != null;
       }
       k++;
     }
@@ -79,6 +96,7 @@ public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
       for (int i = 0; i < parameterBindings.length; i++) {
         if (parameterBindings[i] == null) {
           parameterBindings[i] = linker.requestBinding(keys[k], constructor, loader);
+          attached &= parameterBindings[i] != null;
         }
         k++;
       }
@@ -86,6 +104,12 @@ public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
     if (supertype != null && supertypeBinding == null) {
       supertypeBinding =
           (Binding<? super T>) linker.requestBinding(keys[k], membersKey, loader, false, true);
+      attached &= supertypeBinding != null;
+    }
+    if (attached) {
+      // Later calls have nothing left to request, so the keys are only garbage.
+      keys = null;
+      loader = null;
     }
   }
 
@@ -26,6 +26,7 @@ import org.junit.runners.JUnit4;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
 @RunWith(JUnit4.class)
 public final class ExtensionTest {
@@ -78,6 +79,47 @@ public final class ExtensionTest {
     assertThat(extension.get(D.class).c).isNotNull();
   }
 
+  static class Rock {
+    @Inject Scissors scissors;
+  }
+
+  static class Scissors {
+    @Inject Paper paper;
+  }
+
+  static class Paper {
+    @Inject Rock rock;
+  }
+
+  static class Player {
+    @Inject Rock rock;
+  }
+
+  @Module(injects = Rock.class) static class GameModule { }
+
+  @Module(addsTo = GameModule.class, injects = Player.class)
+  static class PlayerModule { }
+
+  @Test public void extensionValidationFindsCyclesInBase() {
+    ObjectGraph root = ObjectGraph.createWith(new TestingLoader(), new GameModule());
+    ObjectGraph extension = root.plus(new PlayerModule());
+    try {
+      extension.validate();
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains("Dependency cycle:");
+    }
+  }
+
+  @Test public void validationAfterBaseValidation() {
+    ObjectGraph root = ObjectGraph.createWith(new TestingLoader(), new RootModule());
+    root.validate();
+    ObjectGraph extension = root.plus(new ExtensionModule());
+    extension.validate();
+    extension.validate();
+    assertThat(extension.get(D.class).c).isNotNull();
+  }
+
   @Test public void scopedGraphs() {
     ObjectGraph app = ObjectGraph.createWith(new TestingLoader(), new RootModule());
     assertThat(app.get(A.class)).isNotNull();
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.inject.Inject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class GraphListenerTest {
+  private final RecordingListener listener = new RecordingListener();
+
+  static class Pump {
+    @Inject Pump() {
+    }
+  }
+
+  static class CoffeeMaker {
+    @Inject Pump pump;
+    @Inject String name;
+  }
+
+  @Module(injects = CoffeeMaker.class)
+  static class CoffeeModule {
+    @Provides String provideName() {
+      return "drip";
+    }
+  }
+
+  static class Grinder {
+    @Inject CoffeeMaker coffeeMaker;
+  }
+
+  @Module(addsTo = CoffeeModule.class, injects = Grinder.class)
+  static class GrinderModule {
+  }
+
+  @Test public void createAndValidateReportEachPhase() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), listener, new CoffeeModule());
+    assertThat(listener.events).containsOnly(
+        "moduleAdapterLoaded CoffeeModule",
+        "moduleBindingsCollected CoffeeModule 1",
+        "graphCreated root");
+
+    listener.events.clear();
+    graph.validate();
+    assertThat(listener.events).containsOnly(
+        "bindingLinked java.lang.String installed",
+        "bindingLinked dagger.GraphListenerTest$CoffeeMaker reflective",
+        "bindingLinked dagger.GraphListenerTest$Pump reflective",
+        "linkPassCompleted 3",
+        "graphValidated");
+  }
+
+  @Test public void plusReportsToParentListener() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), listener, new CoffeeModule());
+    listener.events.clear();
+    ObjectGraph child = graph.plus(new GrinderModule());
+    assertThat(listener.events).contains("moduleAdapterLoaded GrinderModule", "graphCreated plus");
+    assertThat(child.get(Grinder.class).coffeeMaker.name).isEqualTo("drip");
+    assertThat(listener.events)
+        .contains("bindingLinked dagger.GraphListenerTest$Grinder reflective");
+  }
+
+  @Test public void phaseStartsAreReportedBeforeTheirEnds() {
+    StartRecordingListener listener = new StartRecordingListener();
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), listener, new CoffeeModule());
+    assertThat(listener.events).isEqualTo(Arrays.asList(
+        "graphCreating root",
+        "moduleAdapterLoading CoffeeModule",
+        "moduleAdapterLoaded CoffeeModule",
+        "moduleBindingsCollecting CoffeeModule",
+        "moduleBindingsCollected CoffeeModule 1",
+        "graphCreated root"));
+
+    listener.events.clear();
+    graph.validate();
+    List<String> events = listener.events;
+    assertThat(events.get(0)).isEqualTo("graphValidating");
+    assertThat(events.get(1)).isEqualTo("linkPassStarting");
+    assertThat(events.get(events.size() - 2)).isEqualTo("linkPassCompleted 3");
+    assertThat(events.get(events.size() - 1)).isEqualTo("graphValidated");
+    for (int i = 0; i < events.size(); i++) {
+      if (events.get(i).startsWith("bindingLinked ")) {
+        String key = events.get(i).split(" ")[1];
+        boolean jit = !events.get(i).endsWith(" installed");
+        assertThat(events.get(i - 1)).isEqualTo("bindingLinking " + key + " " + jit);
+      }
+    }
+  }
+
+  @Test public void summaryReportsTotals() {
+    StartupSummary summary = new StartupSummary();
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), summary, new CoffeeModule());
+    graph.validate();
+    String report = summary.toString();
+    assertThat(report).contains("graphs created");
+    assertThat(report).contains("reflective JIT bindings linked       2");
+    assertThat(report).contains("installed bindings linked            1");
+    assertThat(report).contains("dagger.GraphListenerTest$Pump (reflective)");
+  }
+
+  static class RecordingListener extends GraphListener {
+    final List<String> events = new ArrayList<String>();
+
+    @Override public void moduleAdapterLoaded(Class<?> moduleType, long nanos) {
+      assertThat(nanos).isGreaterThanOrEqualTo(0);
+      events.add("moduleAdapterLoaded " + moduleType.getSimpleName());
+    }
+
+    @Override public void moduleBindingsCollected(
+        Class<?> moduleType, int bindingCount, long nanos) {
+      events.add("moduleBindingsCollected " + moduleType.getSimpleName() + " " + bindingCount);
+    }
+
+    @Override public void bindingLinked(String key, boolean jit, boolean reflective, long nanos) {
+      String kind = !jit ? "installed" : reflective ? "reflective" : "generated";
+      events.add("bindingLinked " + key + " " + kind);
+    }
+
+    @Override public void linkPassCompleted(int bindingsLinked, long nanos) {
+      events.add("linkPassCompleted " + bindingsLinked);
+    }
+
+    @Override public void graphCreated(ObjectGraph graph, ObjectGraph parent, long nanos) {
+      events.add("graphCreated " + (parent == null ? "root" : "plus"));
+    }
+
+    @Override public void graphValidated(ObjectGraph graph, long nanos) {
+      events.add("graphValidated");
+    }
+  }
+
+  static class StartRecordingListener extends RecordingListener {
+    @Override public void moduleAdapterLoading(Class<?> moduleType) {
+      events.add("moduleAdapterLoading " + moduleType.getSimpleName());
+    }
+
+    @Override public void moduleBindingsCollecting(Class<?> moduleType) {
+      events.add("moduleBindingsCollecting " + moduleType.getSimpleName());
+    }
+
+    @Override public void bindingLinking(String key, boolean jit) {
+      events.add("bindingLinking " + key + " " + jit);
+    }
+
+    @Override public void linkPassStarting() {
+      events.add("linkPassStarting");
+    }
+
+    @Override public void graphCreating(ObjectGraph parent) {
+      events.add("graphCreating " + (parent == null ? "root" : "plus"));
+    }
+
+    @Override public void graphValidating(ObjectGraph graph) {
+      events.add("graphValidating");
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class InjectAllTest {
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  static class Dog {
+    @Inject String name;
+  }
+
+  static class Cat {
+    @Inject String name;
+    @Inject Integer lives;
+  }
+
+  static class Fish {
+    @Inject String name;
+  }
+
+  @Module(injects = { Dog.class, Cat.class })
+  static class PetModule {
+    final AtomicInteger lives = new AtomicInteger();
+
+    @Provides String provideName() {
+      return "rex";
+    }
+
+    @Provides Integer provideLives() {
+      return lives.incrementAndGet();
+    }
+  }
+
+  @Module(injects = Cat.class)
+  static class NoLivesModule {
+    @Provides String provideName() {
+      return "tom";
+    }
+
+    @Provides Integer provideLives() {
+      throw new UnsupportedOperationException("no lives left");
+    }
+  }
+
+  @After public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test public void injectAllInjectsEachInstance() {
+    Dog dog = new Dog();
+    Cat cat = new Cat();
+    Dog otherDog = new Dog();
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new PetModule());
+    graph.injectAll(Arrays.asList(dog, cat, otherDog));
+    assertThat(dog.name).isEqualTo("rex");
+    assertThat(cat.name).isEqualTo("rex");
+    assertThat(cat.lives).isEqualTo(1);
+    assertThat(otherDog.name).isEqualTo("rex");
+  }
+
+  @Test public void injectAllSplitsLargeArraysAcrossExecutor() {
+    Object[] pets = new Object[10000];
+    for (int i = 0; i < pets.length; i++) {
+      pets[i] = i % 2 == 0 ? new Dog() : new Cat();
+    }
+    PetModule module = new PetModule();
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), module);
+    graph.injectAll(pets, executor);
+    for (Object pet : pets) {
+      assertThat(pet instanceof Dog ? ((Dog) pet).name : ((Cat) pet).name).isEqualTo("rex");
+    }
+    assertThat(module.lives.get()).isEqualTo(pets.length / 2);
+  }
+
+  @Test public void injectAllRejectsTypesThatAreNotInjectable() {
+    Object[] pets = new Object[10000];
+    for (int i = 0; i < pets.length; i++) {
+      pets[i] = i < pets.length - 1 ? new Dog() : new Fish();
+    }
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new PetModule());
+    try {
+      graph.injectAll(pets, executor);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void injectAllRethrowsFailuresOfChunks() {
+    Object[] pets = new Object[10000];
+    for (int i = 0; i < pets.length; i++) {
+      pets[i] = new Cat();
+    }
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new NoLivesModule());
+    try {
+      graph.injectAll(pets, executor);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+      assertThat(expected.getMessage()).isEqualTo("no lives left");
+    }
+  }
+}
@@ -138,6 +138,33 @@ public final class ModuleTest {
     }
   }
 
+  @Module(library = true)
+  static class CountingModule {
+    static int created;
+
+    CountingModule() {
+      created++;
+    }
+
+    @Provides String provideString() {
+      return "counted";
+    }
+  }
+
+  @Test public void includedModuleIsCreatedOnFirstUse() {
+    @Module(injects = TestEntryPoint.class, includes = CountingModule.class)
+    class TestModule {
+    }
+
+    CountingModule.created = 0;
+    // Like generated adapters, lazy ones don't use the module until a binding is created.
+    ObjectGraph objectGraph = ObjectGraph.createWith(new TestingLoader(true), new TestModule());
+    assertThat(CountingModule.created).isEqualTo(0);
+    TestEntryPoint entryPoint = objectGraph.inject(new TestEntryPoint());
+    assertThat(entryPoint.s).isEqualTo("counted");
+    assertThat(CountingModule.created).isEqualTo(1);
+  }
+
   @Test public void childModuleWithManualConstruction() {
 
     @Module(
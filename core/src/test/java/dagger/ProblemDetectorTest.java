@@ -15,12 +15,20 @@
  */
 package dagger;
 
+import dagger.internal.Binding;
+import dagger.internal.ProblemDetector;
 import dagger.internal.TestingLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.inject.Inject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
 @RunWith(JUnit4.class)
@@ -76,6 +84,137 @@ public final class ProblemDetectorTest {
     graph.validate();
   }
 
+  @Test public void allCyclesReported() {
+    class TestEntryPoint {
+      @Inject Rock rock;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides Integer provideInteger(String s) {
+        throw new AssertionError();
+      }
+      @Provides String provideString(Integer i) {
+        throw new AssertionError();
+      }
+    }
+
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new TestModule());
+    try {
+      graph.validate();
+      fail();
+    } catch (IllegalStateException expected) {
+      String message = expected.getMessage();
+      assertThat(message.split("Dependency cycle:", -1)).hasSize(3);
+      assertThat(message).contains(". dagger.ProblemDetectorTest$Rock bound by");
+      assertThat(message).contains(". java.lang.Integer bound by");
+    }
+  }
+
+  @Test public void cycleMessageListsPath() {
+    List<Binding<?>> bindings = chain(3);
+    link(bindings.get(2), bindings.get(0));
+    try {
+      new ProblemDetector().detectCircularDependencies(bindings);
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).isEqualTo("Dependency cycle:"
+          + "\n    0. 0 bound by " + bindings.get(0)
+          + "\n    1. 1 bound by " + bindings.get(1)
+          + "\n    2. 2 bound by " + bindings.get(2)
+          + "\n    0. 0");
+    }
+  }
+
+  @Test public void selfDependencyDetected() {
+    List<Binding<?>> bindings = chain(1);
+    link(bindings.get(0), bindings.get(0));
+    try {
+      new ProblemDetector().detectCircularDependencies(bindings);
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).startsWith("Dependency cycle:\n    0. 0 bound by");
+    }
+  }
+
+  @Test public void deepChainDoesNotOverflow() {
+    List<Binding<?>> bindings = chain(100000);
+    new ProblemDetector().detectCircularDependencies(bindings.subList(0, 1));
+    for (Binding<?> binding : bindings) {
+      assertThat(binding.isCycleFree()).isTrue();
+    }
+  }
+
+  @Test public void cycleAtEndOfDeepChainDetected() {
+    List<Binding<?>> bindings = chain(100000);
+    link(bindings.get(99999), bindings.get(99998));
+    try {
+      new ProblemDetector().detectCircularDependencies(bindings.subList(0, 1));
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains("0. 99998 bound by");
+    }
+    assertThat(bindings.get(0).isCycleFree()).isTrue();
+    assertThat(bindings.get(99998).isCycleFree()).isFalse();
+  }
+
+  @Test public void parallelSearchReportsSameCycles() {
+    String sequential = cyclesMessage(null);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertThat(cyclesMessage(executor)).isEqualTo(sequential);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Returns the message for 100 separate chains, every other one with a cycle. */
+  private String cyclesMessage(ExecutorService executor) {
+    List<Binding<?>> bindings = new ArrayList<Binding<?>>();
+    for (int i = 0; i < 100; i++) {
+      List<Binding<?>> chain = chain(50);
+      if (i % 2 == 0) {
+        link(chain.get(49), chain.get(i % 49));
+      }
+      bindings.addAll(chain);
+    }
+    try {
+      new ProblemDetector(executor).detectCircularDependencies(bindings);
+      throw new AssertionError();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage().split("Dependency cycle:", -1)).hasSize(51);
+      return expected.getMessage();
+    }
+  }
+
+  /** Returns bindings keyed "0" to "n - 1", each depending on the next. */
+  private static List<Binding<?>> chain(int n) {
+    List<Binding<?>> result = new ArrayList<Binding<?>>();
+    for (int i = 0; i < n; i++) {
+      result.add(new StubBinding(Integer.toString(i)));
+      if (i > 0) {
+        link(result.get(i - 1), result.get(i));
+      }
+    }
+    return result;
+  }
+
+  private static void link(Binding<?> from, Binding<?> to) {
+    ((StubBinding) from).dependencies.add(to);
+  }
+
+  static class StubBinding extends Binding<Object> {
+    final List<Binding<?>> dependencies = new ArrayList<Binding<?>>();
+
+    StubBinding(String key) {
+      super(key, null, false, key);
+    }
+
+    @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
+      get.addAll(dependencies);
+    }
+  }
+
   static class Rock {
     @Inject Scissors scissors;
   }
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class ProvisionMetricsTest {
+  private final ProvisionMetrics metrics = new ProvisionMetrics();
+
+  static class Pump {
+    @Inject Pump() {
+    }
+  }
+
+  @Singleton
+  static class Heater {
+    @Inject Heater() {
+    }
+  }
+
+  static class CoffeeMaker {
+    @Inject Pump pump;
+    @Inject Heater heater;
+  }
+
+  @Module(injects = CoffeeMaker.class)
+  static class CoffeeModule {
+  }
+
+  @Test public void provisionsAreCountedPerBinding() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), metrics, new CoffeeModule());
+    for (int i = 0; i < 3; i++) {
+      graph.get(CoffeeMaker.class);
+    }
+    graph.inject(new CoffeeMaker());
+
+    Map<String, ProvisionMetrics.Snapshot> snapshot = metrics.snapshot();
+    ProvisionMetrics.Snapshot coffeeMaker = snapshot.get("dagger.ProvisionMetricsTest$CoffeeMaker");
+    assertThat(coffeeMaker.provisions).isEqualTo(3L);
+    assertThat(coffeeMaker.injections).isEqualTo(1L);
+    assertThat(coffeeMaker.maxProvisionNanos).isGreaterThanOrEqualTo(0);
+    assertThat(coffeeMaker.provisionNanos).isGreaterThanOrEqualTo(coffeeMaker.maxProvisionNanos);
+    assertThat(snapshot.get("dagger.ProvisionMetricsTest$Pump").provisions).isEqualTo(4L);
+    assertThat(snapshot.get("dagger.ProvisionMetricsTest$Heater").provisions).isEqualTo(4L);
+  }
+
+  @Module
+  static class RootModule {
+  }
+
+  @Module(addsTo = RootModule.class, injects = CoffeeMaker.class)
+  static class ChildModule {
+  }
+
+  @Test public void bindingsOfEachGraphAreReportedSeparately() {
+    ObjectGraph root = ObjectGraph.createWith(new TestingLoader(), metrics, new RootModule());
+    ObjectGraph first = root.plus(new ChildModule());
+    ObjectGraph second = root.plus(new ChildModule());
+    first.get(CoffeeMaker.class);
+    first.get(CoffeeMaker.class);
+    second.get(CoffeeMaker.class);
+
+    String pump = "dagger.ProvisionMetricsTest$Pump";
+    assertThat(metrics.snapshot(first).get(pump).provisions).isEqualTo(2L);
+    assertThat(metrics.snapshot(second).get(pump).provisions).isEqualTo(1L);
+    assertThat(metrics.snapshot(root)).isEmpty();
+    assertThat(metrics.snapshot().get(pump).provisions).isEqualTo(3L);
+  }
+
+  @Test public void concurrentCallsAreAllCounted() throws Exception {
+    final ProvisionRecorder recorder = metrics.provisionRecorder("pump");
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          for (int i = 0; i < 10000; i++) {
+            recorder.provisioned(3);
+            recorder.injected(2);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    ProvisionMetrics.Snapshot pump = metrics.snapshot().get("pump");
+    assertThat(pump.provisions).isEqualTo(40000L);
+    assertThat(pump.provisionNanos).isEqualTo(120000L);
+    assertThat(pump.maxProvisionNanos).isEqualTo(3L);
+    assertThat(pump.provisionPercentileNanos(100)).isEqualTo(3L);
+    assertThat(pump.injections).isEqualTo(40000L);
+    assertThat(pump.injectionNanos).isEqualTo(80000L);
+  }
+
+  @Test public void uncalledBindingsAreOmitted() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), metrics, new CoffeeModule());
+    graph.validate();
+    assertThat(metrics.snapshot()).isEmpty();
+  }
+
+  @Test public void graphsWithoutMetricsAreNotInstrumented() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new CoffeeModule());
+    graph.get(CoffeeMaker.class);
+    assertThat(metrics.snapshot()).isEmpty();
+  }
+
+  @Singleton
+  static class SlowSingleton {
+    static CountDownLatch started = new CountDownLatch(1);
+    static CountDownLatch release = new CountDownLatch(1);
+
+    @Inject SlowSingleton() throws InterruptedException {
+      started.countDown();
+      release.await();
+    }
+  }
+
+  static class NeedsSlowSingleton {
+    @Inject SlowSingleton slowSingleton;
+  }
+
+  @Module(injects = { SlowSingleton.class, NeedsSlowSingleton.class })
+  static class SlowModule {
+  }
+
+  @Test public void singletonInitializationWaitIsRecorded() throws Exception {
+    final ObjectGraph graph =
+        ObjectGraph.createWith(new TestingLoader(), metrics, new SlowModule());
+    graph.validate();
+    Thread initializer = new Thread() {
+      @Override public void run() {
+        graph.get(SlowSingleton.class);
+      }
+    };
+    initializer.start();
+    SlowSingleton.started.await();
+    Thread waiter = new Thread() {
+      @Override public void run() {
+        graph.get(NeedsSlowSingleton.class);
+      }
+    };
+    waiter.start();
+    while (waiter.getState() != Thread.State.BLOCKED) {
+      Thread.sleep(1);
+    }
+    SlowSingleton.release.countDown();
+    initializer.join();
+    waiter.join();
+
+    ProvisionMetrics.Snapshot snapshot =
+        metrics.snapshot().get("dagger.ProvisionMetricsTest$SlowSingleton");
+    assertThat(snapshot.provisions).isEqualTo(2L);
+    assertThat(snapshot.singletonWaits).isEqualTo(1L);
+    assertThat(snapshot.singletonWaitNanos).isGreaterThan(0);
+  }
+
+  @Test public void bucketsCoverEveryDuration() {
+    long previousUpperBound = -1;
+    for (int bucket = 0; bucket < ProvisionMetrics.BUCKET_COUNT; bucket++) {
+      long upperBound = ProvisionMetrics.bucketUpperBound(bucket);
+      assertThat(ProvisionMetrics.bucket(previousUpperBound + 1)).isEqualTo(bucket);
+      assertThat(ProvisionMetrics.bucket(upperBound)).isEqualTo(bucket);
+      previousUpperBound = upperBound;
+    }
+    assertThat(ProvisionMetrics.bucket(Long.MAX_VALUE))
+        .isEqualTo(ProvisionMetrics.BUCKET_COUNT - 1);
+  }
+
+  @Test public void percentilesAreUpperBounds() {
+    ProvisionRecorder recorder = metrics.provisionRecorder("key");
+    for (long nanos = 1; nanos <= 100; nanos++) {
+      recorder.provisioned(nanos * 1000);
+    }
+    ProvisionMetrics.Snapshot snapshot = metrics.snapshot().get("key");
+    assertThat(snapshot.provisionPercentileNanos(50)).isGreaterThanOrEqualTo(50000);
+    assertThat(snapshot.provisionPercentileNanos(50)).isLessThanOrEqualTo(50000 * 5 / 4);
+    assertThat(snapshot.provisionPercentileNanos(100)).isEqualTo(100000L);
+  }
+}
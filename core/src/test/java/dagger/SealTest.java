@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.Binding;
+import dagger.internal.Keys;
+import dagger.internal.Linker;
+import dagger.internal.TestingLoader;
+import dagger.internal.ThrowingErrorHandler;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class SealTest {
+  @Singleton
+  static class Engine {
+    @Inject Engine() {}
+  }
+
+  static class Car {
+    @Inject Engine engine;
+  }
+
+  static class Garage {
+    @Inject Car car;
+    @Inject Engine engine;
+  }
+
+  @Module(injects = { Engine.class, Car.class })
+  static class CarModule { }
+
+  @Module(addsTo = CarModule.class, injects = Garage.class)
+  static class GarageModule { }
+
+  @Module(library = true)
+  static class DashboardModule {
+    @Provides @Named("dashboard") String provideDashboard() {
+      return "dashboard";
+    }
+  }
+
+  @Module(library = true, overrides = true)
+  static class TestDashboardModule {
+    @Provides @Named("dashboard") String provideDashboard() {
+      return "test";
+    }
+  }
+
+  @Test public void sealedGraphServesItsInjectableTypes() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new CarModule());
+    graph.validate();
+    graph.seal();
+    Engine engine = graph.get(Engine.class);
+    assertThat(graph.get(Car.class).engine).isSameAs(engine);
+    assertThat(graph.inject(new Car()).engine).isSameAs(engine);
+  }
+
+  @Test public void plusOnSealedGraphLinksItsOwnBindings() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new CarModule());
+    graph.seal();
+    Garage garage = graph.plus(new GarageModule()).get(Garage.class);
+    assertThat(garage.engine).isSameAs(graph.get(Engine.class));
+    assertThat(garage.car.engine).isSameAs(garage.engine);
+  }
+
+  @Test public void sealedLinkerReleasesPlaceholdersAndOverriddenBindings() {
+    Linker linker = new Linker(null, new TestingLoader(true), new ThrowingErrorHandler());
+    String key = "@javax.inject.Named(value=dashboard)/java.lang.String";
+    List<WeakReference<Binding<?>>> placeholders = new ArrayList<WeakReference<Binding<?>>>();
+    synchronized (linker) {
+      // Bindings installed after a validation are kept until they are validated too.
+      linker.markValidated();
+      for (Object module : new Object[] { new DashboardModule(), new TestDashboardModule() }) {
+        Map<String, Binding<?>> bindings = getBindings(module);
+        placeholders.add(new WeakReference<Binding<?>>(bindings.get(key)));
+        linker.installBindings(bindings);
+      }
+      linker.seal();
+      assertThat(linker.requestBinding(key, "test", getClass().getClassLoader()).get())
+          .isEqualTo("test");
+    }
+    for (WeakReference<Binding<?>> placeholder : placeholders) {
+      for (int i = 0; i < 20 && placeholder.get() != null; i++) {
+        System.gc();
+      }
+      assertThat(placeholder.get()).isNull();
+    }
+  }
+
+  @Test public void validatedAndSealedBindingsForgetWhatRequiredThem() {
+    Linker linker = new Linker(null, new TestingLoader(), new ThrowingErrorHandler());
+    linker.installBindings(getBindings(new DashboardModule()));
+    synchronized (linker) {
+      linker.requestBinding(Keys.getMembersKey(Car.class), "test", getClass().getClassLoader());
+      linker.linkAll();
+      linker.markValidated();
+      linker.seal();
+      for (Binding<?> binding : linker.linkAll().values()) {
+        assertThat(binding.requiredBy).overridingErrorMessage(binding.toString()).isNull();
+      }
+    }
+  }
+
+  @Test public void sealedLinkerDoesNotCreateBindings() {
+    Linker linker = new Linker(null, new TestingLoader(), new ThrowingErrorHandler());
+    synchronized (linker) {
+      linker.seal();
+      try {
+        linker.requestBinding(Engine.class.getName(), "test", getClass().getClassLoader());
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+    }
+  }
+
+  private static Map<String, Binding<?>> getBindings(Object module) {
+    Map<String, Binding<?>> bindings = new LinkedHashMap<String, Binding<?>>();
+    new TestingLoader(true).getModuleAdapter(module.getClass(), module).getBindings(bindings);
+    return bindings;
+  }
+}
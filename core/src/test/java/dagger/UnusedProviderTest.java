@@ -16,6 +16,7 @@
 package dagger;
 
 import dagger.internal.TestingLoader;
+import javax.inject.Inject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -114,4 +115,48 @@ public class UnusedProviderTest {
     } catch (IllegalStateException expected) {
     }
   }
+
+  @Test public void failedValidationFailsAgain() throws Exception {
+    class EntryPoint {
+    }
+    class BagOfMoney {
+    }
+
+    @Module(injects = EntryPoint.class) class TestModule {
+      @Provides BagOfMoney providesMoney() {
+        return new BagOfMoney();
+      }
+    }
+
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new TestModule());
+    for (int i = 0; i < 2; i++) {
+      try {
+        graph.validate();
+        fail("Validation should have exploded!");
+      } catch (IllegalStateException expected) {
+      }
+    }
+  }
+
+  @Test public void overriddenProvidesMethodIsNotReported() throws Exception {
+    class EntryPoint {
+      @Inject String string;
+    }
+
+    @Module(injects = EntryPoint.class) class TestModule {
+      @Provides String provideString() {
+        throw new AssertionError();
+      }
+    }
+
+    @Module(overrides = true) class OverridesModule {
+      @Provides String provideString() {
+        throw new AssertionError();
+      }
+    }
+
+    ObjectGraph graph =
+        ObjectGraph.createWith(new TestingLoader(), new TestModule(), new OverridesModule());
+    graph.validate();
+  }
 }
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.ModuleAdapter;
+import dagger.internal.TestingLoader;
+import dagger.internal.ValidationCache;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.inject.Inject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class ValidationCacheTest {
+  private File directory;
+
+  @Before public void setUp() throws IOException {
+    directory = File.createTempFile("validation-cache", "");
+    assertThat(directory.delete()).isTrue();
+    System.setProperty(ValidationCache.DIRECTORY_PROPERTY, directory.getPath());
+  }
+
+  @After public void tearDown() {
+    System.clearProperty(ValidationCache.DIRECTORY_PROPERTY);
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  static class Engine {
+    @Inject Engine() {
+    }
+  }
+
+  static class Car {
+    @Inject Engine engine;
+  }
+
+  static class Truck {
+    @Inject Engine engine;
+    @Inject Car car;
+  }
+
+  @Module(injects = Car.class)
+  static class CarModule {
+  }
+
+  @Module(injects = Truck.class)
+  static class TruckModule {
+  }
+
+  @Module(injects = Car.class)
+  static class UnusedProvidesModule {
+    @Provides String provideString() {
+      throw new AssertionError();
+    }
+  }
+
+  @Test public void passingValidationIsRecorded() {
+    ObjectGraph.createWith(new TestingLoader(), new CarModule()).validate();
+    assertThat(entries()).hasSize(1);
+
+    // The same graph has the same fingerprint.
+    ObjectGraph.createWith(new TestingLoader(), new CarModule()).validate();
+    assertThat(entries()).hasSize(1);
+
+    // A different graph doesn't.
+    ObjectGraph.createWith(new TestingLoader(), new TruckModule()).validate();
+    assertThat(entries()).hasSize(2);
+  }
+
+  @Test public void failingValidationIsNotRecorded() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new UnusedProvidesModule());
+    try {
+      graph.validate();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    assertThat(entries()).isEmpty();
+  }
+
+  @Test public void cachedValidationSkipsLinking() {
+    LinkCounter first = new LinkCounter();
+    ObjectGraph.createWith(new TestingLoader(), first, new TruckModule()).validate();
+    assertThat(first.bindingsLinked).isGreaterThan(0);
+
+    LinkCounter second = new LinkCounter();
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), second, new TruckModule());
+    graph.validate();
+    assertThat(second.bindingsLinked).isEqualTo(0);
+    assertThat(second.validations).isEqualTo(1);
+
+    // The graph still links on demand.
+    assertThat(graph.get(Truck.class).car.engine).isNotNull();
+    assertThat(second.bindingsLinked).isGreaterThan(0);
+  }
+
+  @Test public void changedJitClassMissesCache() throws IOException {
+    ObjectGraph.createWith(new TestingLoader(), new CarModule()).validate();
+
+    // Engine is only reached through Car, which the module injects. Record an
+    // older version of it, as if it changed since.
+    File entry = new File(directory, entries().get(0));
+    String contents = read(entry);
+    String engine = Engine.class.getName() + " ";
+    assertThat(contents).contains(engine);
+    write(entry, contents.replaceAll(Pattern.quote(engine) + ".*",
+        Matcher.quoteReplacement(engine + "0@0")));
+
+    LinkCounter changed = new LinkCounter();
+    ObjectGraph.createWith(new TestingLoader(), changed, new CarModule()).validate();
+    assertThat(changed.bindingsLinked).isGreaterThan(0);
+
+    // The entry now records the current version.
+    LinkCounter unchanged = new LinkCounter();
+    ObjectGraph.createWith(new TestingLoader(), unchanged, new CarModule()).validate();
+    assertThat(unchanged.bindingsLinked).isEqualTo(0);
+  }
+
+  @Test public void graphWithUnversionedModuleIsNotCached() throws Exception {
+    Constructor<?> constructor = unversionedCopy(CarModule.class).getDeclaredConstructor();
+    constructor.setAccessible(true);
+    Object module = constructor.newInstance();
+    ObjectGraph.createWith(new TestingLoader(), module).validate();
+    assertThat(entries()).isEmpty();
+  }
+
+  @Test public void graphWithUnversionedJitClassIsNotCached() {
+    ValidationCache cache = new ValidationCache(directory);
+    String fingerprint = cache.fingerprint(null, adapters(adapter(new CarModule())),
+        Collections.<String>emptyList());
+    cache.put(fingerprint, Collections.<String, ClassLoader>singletonMap(
+        String.class.getName(), String.class.getClassLoader()));
+    assertThat(entries()).isEmpty();
+  }
+
+  @Test public void fingerprintIgnoresOrder() {
+    ValidationCache cache = new ValidationCache(directory);
+    ModuleAdapter<?> car = adapter(new CarModule());
+    ModuleAdapter<?> truck = adapter(new TruckModule());
+    assertThat(cache.fingerprint(null, adapters(car, truck), Arrays.asList("a", "b")))
+        .isEqualTo(cache.fingerprint(null, adapters(truck, car), Arrays.asList("b", "a")));
+  }
+
+  @Test public void fingerprintCoversModulesAndKeys() {
+    ValidationCache cache = new ValidationCache(directory);
+    ModuleAdapter<?> car = adapter(new CarModule());
+    ModuleAdapter<?> truck = adapter(new TruckModule());
+    List<String> keys = Collections.singletonList("a");
+    String carOnly = cache.fingerprint(null, adapters(car), keys);
+    assertThat(cache.fingerprint(null, adapters(truck), keys)).isNotEqualTo(carOnly);
+    assertThat(cache.fingerprint(null, adapters(car, truck), keys)).isNotEqualTo(carOnly);
+    assertThat(cache.fingerprint(null, adapters(car), Arrays.asList("a", "b")))
+        .isNotEqualTo(carOnly);
+  }
+
+  @Test public void fingerprintCoversBase() {
+    ValidationCache cache = new ValidationCache(directory);
+    List<ModuleAdapter<?>> adapters = adapters(adapter(new CarModule()));
+    List<String> keys = Collections.singletonList("a");
+    String root = cache.fingerprint(null, adapters, keys);
+    assertThat(cache.fingerprint("base", adapters, keys)).isNotEqualTo(root);
+    assertThat(cache.fingerprint("base", adapters, keys))
+        .isNotEqualTo(cache.fingerprint("other", adapters, keys));
+  }
+
+  @Test public void putLeavesOnlyTheEntry() {
+    ValidationCache cache = new ValidationCache(directory);
+    String fingerprint = cache.fingerprint(null, adapters(adapter(new CarModule())),
+        Collections.<String>emptyList());
+    Map<String, ClassLoader> jitClasses = Collections.<String, ClassLoader>singletonMap(
+        Engine.class.getName(), Engine.class.getClassLoader());
+    List<ClassLoader> classLoaders =
+        Collections.singletonList(ValidationCacheTest.class.getClassLoader());
+    assertThat(cache.contains(fingerprint, classLoaders)).isFalse();
+    cache.put(fingerprint, jitClasses);
+    cache.put(fingerprint, jitClasses);
+    assertThat(cache.contains(fingerprint, classLoaders)).isTrue();
+    assertThat(entries()).containsOnly(fingerprint);
+  }
+
+  private static <T> ModuleAdapter<T> adapter(T module) {
+    @SuppressWarnings("unchecked") // A module's class is a Class<T>.
+    Class<T> type = (Class<T>) module.getClass();
+    return new TestingLoader().getModuleAdapter(type, module);
+  }
+
+  private static List<ModuleAdapter<?>> adapters(ModuleAdapter<?>... adapters) {
+    return Arrays.asList(adapters);
+  }
+
+  private static String read(File file) throws IOException {
+    return new String(readBytes(file), "UTF-8");
+  }
+
+  private static byte[] readBytes(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int count; (count = in.read(buffer)) != -1; ) {
+        bytes.write(buffer, 0, count);
+      }
+      return bytes.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(contents.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  /** Returns a copy of {@code type} that is defined without a code source. */
+  private static Class<?> unversionedCopy(final Class<?> type) throws IOException {
+    URL url = type.getResource(type.getName().substring(type.getName().lastIndexOf('.') + 1)
+        + ".class");
+    final byte[] bytes;
+    try {
+      bytes = readBytes(new File(url.toURI()));
+    } catch (URISyntaxException e) {
+      throw new AssertionError(e);
+    }
+    return new ClassLoader(type.getClassLoader()) {
+      Class<?> copy() {
+        return defineClass(type.getName(), bytes, 0, bytes.length);
+      }
+    }.copy();
+  }
+
+  private List<String> entries() {
+    String[] names = directory.list();
+    return names != null ? Arrays.asList(names) : Collections.<String>emptyList();
+  }
+
+  static class LinkCounter extends GraphListener {
+    int bindingsLinked;
+    int validations;
+
+    @Override public void linkPassCompleted(int bindingsLinked, long nanos) {
+      this.bindingsLinked += bindingsLinked;
+    }
+
+    @Override public void graphValidated(ObjectGraph graph, long nanos) {
+      validations++;
+    }
+  }
+}
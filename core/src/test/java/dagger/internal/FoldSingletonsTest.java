@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Lazy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class FoldSingletonsTest {
+  private final Linker linker =
+      new Linker(null, new TestingLoader(), new ThrowingErrorHandler());
+
+  @Test public void dependentsGetConstantOnceSingletonIsCreated() {
+    DependentBinding car = new DependentBinding("car", "engine");
+    Map<String, Binding<?>> toInstall = new LinkedHashMap<String, Binding<?>>();
+    toInstall.put("engine", new Binding<Object>("engine", null, true, "test") {
+      @Override public Object get() {
+        return new Object();
+      }
+    });
+    toInstall.put("car", car);
+    linker.installBindings(toInstall);
+
+    synchronized (linker) {
+      linker.linkAll();
+      Binding<?> singleton = car.dependency;
+      assertThat(linker.foldSingletons()).isEqualTo(0); // The engine hasn't been created.
+      assertThat(car.dependency).isSameAs(singleton);
+
+      Object engine = singleton.get();
+      assertThat(linker.foldSingletons()).isEqualTo(1);
+      assertThat(car.dependency).isNotSameAs(singleton);
+      assertThat(car.dependency.get()).isSameAs(engine);
+      assertThat(car.dependency.isLinked()).isTrue();
+      assertThat(linker.requestBinding("engine", "test", getClass().getClassLoader()))
+          .isSameAs(car.dependency);
+    }
+  }
+
+  @Singleton static class Engine {
+    @Inject Engine() {
+    }
+  }
+
+  static class Car {
+    final Engine engine;
+    @Inject Engine spare;
+
+    @Inject Car(Engine engine) {
+      this.engine = engine;
+    }
+  }
+
+  @Test public void reflectiveDependentsGetConstant() {
+    String engineKey = Keys.get(Engine.class);
+    synchronized (linker) {
+      Binding<?> car = linker.requestBinding(Keys.get(Car.class), "test",
+          getClass().getClassLoader());
+      assertThat(car).isNull();
+      linker.linkRequested();
+      car = linker.requestBinding(Keys.get(Car.class), "test", getClass().getClassLoader());
+      Binding<?> singleton = linker.requestBinding(engineKey, "test",
+          getClass().getClassLoader());
+      assertThat(dependencies(car)).isEqualTo(Arrays.<Binding<?>>asList(singleton, singleton));
+
+      Engine engine = ((Car) car.get()).engine;
+      assertThat(linker.foldSingletons()).isEqualTo(1);
+      Binding<?> constant = linker.requestBinding(engineKey, "test", getClass().getClassLoader());
+      assertThat(constant).isNotSameAs(singleton);
+      assertThat(dependencies(car)).isEqualTo(Arrays.<Binding<?>>asList(constant, constant));
+      Car another = (Car) car.get();
+      assertThat(another.engine).isSameAs(engine);
+      assertThat(another.spare).isSameAs(engine);
+    }
+  }
+
+  @Test public void providerAndLazyBindingsGetConstant() {
+    String engineKey = Keys.get(Engine.class);
+    String providerKey = "javax.inject.Provider<" + engineKey + ">";
+    String lazyKey = "dagger.Lazy<" + engineKey + ">";
+    ClassLoader classLoader = getClass().getClassLoader();
+    synchronized (linker) {
+      linker.requestBinding(providerKey, "test", classLoader);
+      linker.requestBinding(lazyKey, "test", classLoader);
+      linker.linkRequested();
+      BuiltInBinding<?> provider =
+          (BuiltInBinding<?>) linker.requestBinding(providerKey, "test", classLoader);
+      Binding<?> lazy = linker.requestBinding(lazyKey, "test", classLoader);
+      Binding<?> singleton = linker.requestBinding(engineKey, "test", classLoader);
+      assertThat(provider.getDelegate()).isSameAs(singleton);
+
+      Object engine = singleton.get();
+      assertThat(linker.foldSingletons()).isEqualTo(1);
+      Binding<?> constant = linker.requestBinding(engineKey, "test", classLoader);
+      assertThat(provider.getDelegate()).isSameAs(constant);
+      assertThat(((Lazy<?>) lazy.get()).get()).isSameAs(engine);
+    }
+  }
+
+  private static List<Binding<?>> dependencies(Binding<?> binding) {
+    Set<Binding<?>> get = new LinkedHashSet<Binding<?>>();
+    Set<Binding<?>> injectMembers = new LinkedHashSet<Binding<?>>();
+    binding.getDependencies(get, injectMembers);
+    List<Binding<?>> result = new ArrayList<Binding<?>>(get);
+    result.addAll(injectMembers);
+    return result;
+  }
+
+  /** A binding whose only dependency is the binding of {@code dependencyKey}. */
+  private static final class DependentBinding extends Binding<Object> {
+    private final String dependencyKey;
+    Binding<?> dependency;
+
+    DependentBinding(String key, String dependencyKey) {
+      super(key, null, false, "test");
+      this.dependencyKey = dependencyKey;
+    }
+
+    @Override public void attach(Linker linker) {
+      dependency = linker.requestBinding(dependencyKey, this, getClass().getClassLoader());
+    }
+
+    @Override public Object get() {
+      return dependency.get();
+    }
+  }
+}
@@ -18,17 +18,21 @@ package dagger.internal;
 import dagger.Lazy;
 import dagger.MembersInjector;
 import dagger.Provides;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 import javax.inject.Named;
 import javax.inject.Provider;
+import javax.inject.Qualifier;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import static dagger.Provides.Type.SET;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static org.fest.assertions.Assertions.assertThat;
 
 @RunWith(JUnit4.class)
@@ -57,6 +61,33 @@ public final class KeysTest {
         .isEqualTo("@javax.inject.Named(value=foo)/java.lang.String");
   }
 
+  @Qualifier @Retention(RUNTIME)
+  @interface Tagged {
+    String[] names() default { "a", "b" };
+    ElementType element() default ElementType.FIELD;
+    Class<?> type() default Object.class;
+    Named named() default @Named("inner");
+  }
+
+  @Tagged String taggedWithDefaults;
+  @Test public void qualifierWithDefaultMembers() throws NoSuchFieldException {
+    assertThat(fieldKey("taggedWithDefaults"))
+        .isEqualTo("@dagger.internal.KeysTest$Tagged(element=FIELD, "
+            + "named=@javax.inject.Named(value=inner), names=[a, b], "
+            + "type=class java.lang.Object)/java.lang.String");
+  }
+
+  @Tagged(names = {}, element = ElementType.METHOD, type = Runnable.class,
+      named = @Named("x"))
+  String taggedWithValues;
+  @Test public void qualifierWithArrayEnumClassAndAnnotationMembers()
+      throws NoSuchFieldException {
+    assertThat(fieldKey("taggedWithValues"))
+        .isEqualTo("@dagger.internal.KeysTest$Tagged(element=METHOD, "
+            + "named=@javax.inject.Named(value=x), names=[], "
+            + "type=interface java.lang.Runnable)/java.lang.String");
+  }
+
   String className;
   @Test public void testGetClassName() throws NoSuchFieldException {
     assertThat(Keys.getClassName(fieldKey("className")))
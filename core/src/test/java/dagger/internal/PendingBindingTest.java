@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Module;
+import dagger.Provides;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class PendingBindingTest {
+  private final List<String> created = new ArrayList<String>();
+  private final Linker linker =
+      new Linker(null, new TestingLoader(), new ThrowingErrorHandler());
+
+  @Test public void onlyRequestedBindingsAreCreated() {
+    install(false, "a", "b", "c");
+    synchronized (linker) {
+      Binding<?> binding = linker.requestBinding("b", "test", getClass().getClassLoader());
+      linker.linkRequested();
+      assertThat(binding.get()).isEqualTo("b");
+      assertThat(linker.requestBinding("b", "test", getClass().getClassLoader()))
+          .isSameAs(binding);
+    }
+    assertThat(created).isEqualTo(Arrays.asList("b"));
+  }
+
+  @Test public void linkAllCreatesInstalledBindings() {
+    install(false, "a", "b");
+    install(true, "b");
+    synchronized (linker) {
+      Map<String, Binding<?>> bindings = linker.linkAll();
+      assertThat(bindings.get("a").isLinked()).isTrue();
+      assertThat(bindings.get("b").get()).isEqualTo("b override");
+      assertThat(linker.unvalidatedBindings()).hasSize(2);
+    }
+    // The overridden binding is never created.
+    assertThat(created).isEqualTo(Arrays.asList("a", "b override"));
+  }
+
+  @Test public void placeholdersCanBeCollectedWithoutValidation() {
+    WeakReference<Binding<?>> placeholder =
+        new WeakReference<Binding<?>>(install(false, "a").get("a"));
+    synchronized (linker) {
+      assertThat(linker.linkAll().get("a").get()).isEqualTo("a");
+    }
+    assertCollected(placeholder);
+  }
+
+  @Module(library = true)
+  static class StringModule {
+    @Provides String provideString(Integer i) {
+      return "string " + i;
+    }
+
+    @Provides Integer provideInteger() {
+      return 1;
+    }
+  }
+
+  @Test public void testingAdaptersAreEagerUnlessLazy() {
+    Map<String, Binding<?>> eager = getBindings(new TestingLoader());
+    assertThat(eager.get("java.lang.String") instanceof PendingBinding).isFalse();
+
+    Map<String, Binding<?>> lazy = getBindings(new TestingLoader(true));
+    assertThat(lazy.get("java.lang.String") instanceof PendingBinding).isTrue();
+    linker.installBindings(lazy);
+    synchronized (linker) {
+      Binding<?> binding =
+          linker.requestBinding("java.lang.String", "test", getClass().getClassLoader());
+      assertThat(binding instanceof PendingBinding).isFalse();
+      linker.linkRequested();
+      assertThat(binding.get()).isEqualTo("string 1");
+    }
+  }
+
+  @Test public void childLinkersGetMaterializedBindingsFromTheirBase() {
+    linker.installBindings(getBindings(new TestingLoader(true)));
+    Binding<?> binding;
+    synchronized (linker) {
+      binding = linker.linkAll().get("java.lang.String");
+    }
+    assertThat(binding instanceof PendingBinding).isFalse();
+
+    Linker child = new Linker(linker, new TestingLoader(), new ThrowingErrorHandler());
+    synchronized (child) {
+      assertThat(child.requestBinding("java.lang.String", "test", getClass().getClassLoader()))
+          .isSameAs(binding);
+    }
+  }
+
+  private static Map<String, Binding<?>> getBindings(Loader loader) {
+    Map<String, Binding<?>> bindings = new LinkedHashMap<String, Binding<?>>();
+    loader.getModuleAdapter(StringModule.class, null).getBindings(bindings);
+    return bindings;
+  }
+
+  /** Installs placeholders for {@code keys} and returns them. */
+  private Map<String, Binding<?>> install(boolean overrides, final String... keys) {
+    final String suffix = overrides ? " override" : "";
+    ModuleAdapter<Object> adapter = new ModuleAdapter<Object>(
+        new String[0], new Class<?>[0], overrides, new Class<?>[0], true, false) {
+      @Override public void getBindings(Map<String, Binding<?>> map) {
+        for (int i = 0; i < keys.length; i++) {
+          map.put(keys[i], lazyBinding(keys[i], i));
+        }
+      }
+
+      @Override protected Binding<?> newBinding(int ordinal) {
+        final String value = keys[ordinal] + suffix;
+        created.add(value);
+        return new Binding<Object>(keys[ordinal], null, false, "test") {
+          @Override public Object get() {
+            return value;
+          }
+        };
+      }
+    };
+    Map<String, Binding<?>> bindings = new LinkedHashMap<String, Binding<?>>();
+    adapter.getBindings(bindings);
+    linker.installBindings(bindings);
+    return bindings;
+  }
+
+  static void assertCollected(WeakReference<?> reference) {
+    for (int i = 0; i < 20 && reference.get() != null; i++) {
+      System.gc();
+    }
+    assertThat(reference.get()).isNull();
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class ScopedBindingTest {
+  @Test public void scopedBindingIsNotWrapped() {
+    CountingBinding binding = new CountingBinding();
+    assertThat(Linker.scope(binding)).isSameAs(binding);
+    Object first = binding.get();
+    assertThat(binding.get()).isSameAs(first);
+    assertThat(binding.created).isEqualTo(1);
+  }
+
+  @Test public void linkerFoldsCreatedScopedBinding() {
+    Linker linker = new Linker(null, new TestingLoader(), new ThrowingErrorHandler());
+    CountingBinding binding = new CountingBinding();
+    Map<String, Binding<?>> toInstall = new LinkedHashMap<String, Binding<?>>();
+    toInstall.put("counter", binding);
+    linker.installBindings(toInstall);
+
+    synchronized (linker) {
+      Map<String, Binding<?>> bindings = linker.linkAll();
+      assertThat(bindings.get("counter")).isSameAs(binding);
+      assertThat(linker.foldSingletons()).isEqualTo(0);
+
+      Object instance = binding.get();
+      assertThat(linker.foldSingletons()).isEqualTo(1);
+      assertThat(bindings.get("counter")).isNotSameAs(binding);
+      assertThat(bindings.get("counter").get()).isSameAs(instance);
+    }
+    assertThat(binding.created).isEqualTo(1);
+  }
+
+  private static final class CountingBinding extends ScopedBinding<Object> {
+    int created;
+
+    CountingBinding() {
+      super("counter", null, "test");
+    }
+
+    @Override protected Object create() {
+      created++;
+      return new Object();
+    }
+  }
+}
@@ -24,10 +24,27 @@ import dagger.internal.loaders.ReflectiveStaticInjection;
  * A test-only loader that merely uses reflection to test internals.
  */
 public final class TestingLoader extends Loader {
+  private final boolean lazyBindings;
+
+  public TestingLoader() {
+    this(false);
+  }
+
+  /**
+   * @param lazyBindings true for module adapters that create their unique
+   *     bindings when the linker first needs them, like generated adapters.
+   */
+  public TestingLoader(boolean lazyBindings) {
+    this.lazyBindings = lazyBindings;
+  }
 
   @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<? extends T> type, T instance) {
-    ModuleAdapter<T> adapter = TestingModuleAdapter.create(type);
-    adapter.module = (instance != null) ? instance : adapter.newModule();
+    ModuleAdapter<T> adapter = TestingModuleAdapter.create(type, lazyBindings);
+    adapter.moduleClass = type;
+    adapter.module = instance;
+    if (instance == null && !adapter.canCreateModule()) {
+      adapter.module = adapter.newModule(); // Fail now if the module can't be created later.
+    }
     return adapter;
   }
 
@@ -24,6 +24,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.inject.Provider;
@@ -32,8 +34,17 @@ import javax.inject.Singleton;
 //TODO: Reduce the complexity of this and/or replace with a mock or fake.
 public class TestingModuleAdapter<M> extends ModuleAdapter<M> {
   final Class<?> moduleClass;
+  /** True to install placeholders for unique bindings, like generated adapters do. */
+  private final boolean lazy;
+  /** Unique bindings' methods and keys, by the ordinal of their placeholders. */
+  private final List<Method> lazyMethods = new ArrayList<Method>();
+  private final List<String> lazyKeys = new ArrayList<String>();
 
   public TestingModuleAdapter(Class<?> moduleClass, Module annotation) {
+    this(moduleClass, annotation, false);
+  }
+
+  public TestingModuleAdapter(Class<?> moduleClass, Module annotation, boolean lazy) {
     super(
         injectableTypesToKeys(annotation.injects()),
         annotation.staticInjections(),
@@ -42,6 +53,7 @@ public class TestingModuleAdapter<M> extends ModuleAdapter<M> {
         annotation.complete(),
         annotation.library());
     this.moduleClass = moduleClass;
+    this.lazy = lazy;
   }
 
   private static String[] injectableTypesToKeys(Class<?>[] injectableTypes) {
@@ -102,12 +114,33 @@ public class TestingModuleAdapter<M> extends ModuleAdapter<M> {
 
   private void handleBindings(Map<String, Binding<?>> bindings, Method method, String key,
       boolean library) {
-    bindings.put(key, new ProviderMethodBinding<M>(method, key, module, library));
+    if (!lazy) {
+      bindings.put(key, new ProviderMethodBinding<M>(method, key, getModule(), library));
+      return;
+    }
+    bindings.put(key, lazyBinding(key, lazyMethods.size()));
+    lazyMethods.add(method);
+    lazyKeys.add(key);
+  }
+
+  @Override protected Binding<?> newBinding(int ordinal) {
+    return new ProviderMethodBinding<M>(lazyMethods.get(ordinal), lazyKeys.get(ordinal),
+        getModule(), library);
   }
 
   private void handleSetBindings(Map<String, Binding<?>> bindings, Method method, String setKey,
       String providerKey, boolean library) {
-    SetBinding.<M>add(bindings, setKey, new ProviderMethodBinding<M>(method, providerKey, module, library));
+    SetBinding.<M>add(bindings, setKey,
+        new ProviderMethodBinding<M>(method, providerKey, getModule(), library));
+  }
+
+  @Override protected boolean canCreateModule() {
+    try {
+      moduleClass.getDeclaredConstructor();
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
   }
 
   @Override public M newModule() {
@@ -132,6 +165,15 @@ public class TestingModuleAdapter<M> extends ModuleAdapter<M> {
    * Creates a TestingModuleAdapter or throws an {@code IllegalArgumentException}.
    */
   public static <M> ModuleAdapter<M> create(Class<? extends M> moduleClass) {
+    return create(moduleClass, false);
+  }
+
+  /**
+   * Creates a TestingModuleAdapter or throws an {@code IllegalArgumentException}.
+   * If {@code lazy} is true the adapter's unique bindings are created when
+   * the linker first needs them.
+   */
+  public static <M> ModuleAdapter<M> create(Class<? extends M> moduleClass, boolean lazy) {
     Module annotation = moduleClass.getAnnotation(Module.class);
     if (annotation == null) {
       throw new IllegalArgumentException("No @Module on " + moduleClass.getName());
@@ -140,7 +182,7 @@ public class TestingModuleAdapter<M> extends ModuleAdapter<M> {
       throw new IllegalArgumentException(
           "Modules must not extend from other classes: " + moduleClass.getName());
     }
-    return new TestingModuleAdapter<M>(moduleClass, annotation);
+    return new TestingModuleAdapter<M>(moduleClass, annotation, lazy);
   }
 
   /**
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.jfr;
+
+import dagger.GraphListener;
+import dagger.ObjectGraph;
+import dagger.ProvisionRecorder;
+
+/**
+ * Begins a Flight Recorder event when each phase starts, and ends and commits
+ * it when the phase completes.
+ */
+final class EventGraphListener extends GraphListener {
+  /** The shortest provision reported, or -1 to leave bindings uninstrumented. */
+  private final long slowProvisionNanos;
+  /** The events of the phases in progress on each thread. */
+  private final ThreadLocal<StartedEvents> started = new ThreadLocal<StartedEvents>() {
+    @Override protected StartedEvents initialValue() {
+      return new StartedEvents();
+    }
+  };
+
+  EventGraphListener(long slowProvisionNanos) {
+    this.slowProvisionNanos = slowProvisionNanos;
+  }
+
+  @Override public void moduleAdapterLoading(Class<?> moduleType) {
+    ModuleAdapterLoadedEvent event = new ModuleAdapterLoadedEvent();
+    event.begin();
+    started.get().moduleAdapterLoaded = event;
+  }
+
+  @Override public void moduleAdapterLoaded(Class<?> moduleType, long nanos) {
+    StartedEvents events = started.get();
+    ModuleAdapterLoadedEvent event = events.moduleAdapterLoaded;
+    events.moduleAdapterLoaded = null;
+    if (event == null) {
+      event = new ModuleAdapterLoadedEvent();
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.moduleType = moduleType;
+      event.commit();
+    }
+  }
+
+  @Override public void moduleBindingsCollecting(Class<?> moduleType) {
+    ModuleBindingsCollectedEvent event = new ModuleBindingsCollectedEvent();
+    event.begin();
+    started.get().moduleBindingsCollected = event;
+  }
+
+  @Override public void moduleBindingsCollected(Class<?> moduleType, int bindingCount,
+      long nanos) {
+    StartedEvents events = started.get();
+    ModuleBindingsCollectedEvent event = events.moduleBindingsCollected;
+    events.moduleBindingsCollected = null;
+    if (event == null) {
+      event = new ModuleBindingsCollectedEvent();
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.moduleType = moduleType;
+      event.bindingCount = bindingCount;
+      event.commit();
+    }
+  }
+
+  @Override public void bindingLinking(String key, boolean jit) {
+    if (!jit) {
+      return; // Installed bindings are covered by the link pass.
+    }
+    JitBindingEvent event = new JitBindingEvent();
+    event.begin();
+    started.get().jitBinding = event;
+  }
+
+  @Override public void bindingLinked(String key, boolean jit, boolean reflective, long nanos) {
+    if (!jit) {
+      return;
+    }
+    StartedEvents events = started.get();
+    JitBindingEvent event = events.jitBinding;
+    events.jitBinding = null;
+    if (event == null) {
+      event = new JitBindingEvent();
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.key = key;
+      event.reflective = reflective;
+      event.elapsed = nanos;
+      event.commit();
+    }
+  }
+
+  @Override public void linkPassStarting() {
+    LinkPassEvent event = new LinkPassEvent();
+    event.begin();
+    started.get().linkPass = event;
+  }
+
+  @Override public void linkPassCompleted(int bindingsLinked, long nanos) {
+    StartedEvents events = started.get();
+    LinkPassEvent event = events.linkPass;
+    events.linkPass = null;
+    if (event == null) {
+      event = new LinkPassEvent();
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.bindingsLinked = bindingsLinked;
+      event.commit();
+    }
+  }
+
+  @Override public void graphCreating(ObjectGraph parent) {
+    GraphCreatedEvent event = new GraphCreatedEvent();
+    event.begin();
+    started.get().graphCreated = event;
+  }
+
+  @Override public void graphCreated(ObjectGraph graph, ObjectGraph parent, long nanos) {
+    StartedEvents events = started.get();
+    GraphCreatedEvent event = events.graphCreated;
+    events.graphCreated = null;
+    if (event == null) {
+      event = new GraphCreatedEvent();
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.child = parent != null;
+      event.commit();
+    }
+  }
+
+  @Override public void graphValidating(ObjectGraph graph) {
+    GraphValidatedEvent event = new GraphValidatedEvent();
+    event.begin();
+    started.get().graphValidated = event;
+  }
+
+  @Override public void graphValidated(ObjectGraph graph, long nanos) {
+    StartedEvents events = started.get();
+    GraphValidatedEvent event = events.graphValidated;
+    events.graphValidated = null;
+    if (event == null) {
+      event = new GraphValidatedEvent();
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.commit();
+    }
+  }
+
+  @Override public ProvisionRecorder provisionRecorder(final String key) {
+    if (slowProvisionNanos < 0) {
+      return null;
+    }
+    return new ProvisionRecorder() {
+      @Override public void provisioned(long nanos) {
+        if (nanos < slowProvisionNanos) {
+          return;
+        }
+        SlowProvisionEvent event = new SlowProvisionEvent();
+        if (event.isEnabled()) {
+          event.key = key;
+          event.elapsed = nanos;
+          event.commit();
+        }
+      }
+    };
+  }
+
+  /**
+   * The begun event of each kind of phase on one thread. Phases of one kind
+   * don't nest, and a phase that fails is replaced when the next one begins.
+   */
+  private static final class StartedEvents {
+    ModuleAdapterLoadedEvent moduleAdapterLoaded;
+    ModuleBindingsCollectedEvent moduleBindingsCollected;
+    JitBindingEvent jitBinding;
+    LinkPassEvent linkPass;
+    GraphCreatedEvent graphCreated;
+    GraphValidatedEvent graphValidated;
+  }
+}
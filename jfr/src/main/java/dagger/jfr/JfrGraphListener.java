@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.jfr;
+
+import dagger.GraphListener;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the startup of object graphs as Java Flight Recorder events in the
+ * {@code Dagger} category. Install it when creating the graph:
+ * <pre>   {@code
+ *
+ *   ObjectGraph objectGraph =
+ *       ObjectGraph.createWith(JfrGraphListener.create(), new CoffeeModule());
+ * }</pre>
+ *
+ * <p>Events are only recorded while a recording with them enabled is running,
+ * such as one started with {@code -XX:StartFlightRecording}. Each event begins
+ * when its phase starts and is committed when it completes, so it spans the
+ * phase, and thresholds set on the recording apply to its duration. A
+ * just-in-time binding's event spans its final attempt to link, and its
+ * {@code elapsed} field adds the time spent creating the binding. Slow
+ * provisions are committed when the provision returns, and carry its duration
+ * in {@code elapsed}.
+ */
+public final class JfrGraphListener {
+  private JfrGraphListener() {
+  }
+
+  /**
+   * Returns a listener that reports graph creation, linking, just-in-time
+   * bindings and validation. On JVMs without Flight Recorder the returned
+   * listener does nothing.
+   */
+  public static GraphListener create() {
+    return flightRecorderAvailable() ? new EventGraphListener(-1) : new GraphListener() { };
+  }
+
+  /**
+   * Like {@link #create()}, but also reports every provision that takes at
+   * least {@code threshold}. This instruments every binding of the graph, which
+   * reads the clock twice on each call.
+   */
+  public static GraphListener create(long threshold, TimeUnit unit) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold < 0: " + threshold);
+    }
+    long thresholdNanos = unit.toNanos(threshold);
+    return flightRecorderAvailable()
+        ? new EventGraphListener(thresholdNanos)
+        : new GraphListener() { };
+  }
+
+  /**
+   * Returns true if this JVM can record events. This is checked reflectively so
+   * that the event classes are never loaded on JVMs that don't include them.
+   */
+  private static boolean flightRecorderAvailable() {
+    try {
+      Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+      return (Boolean) flightRecorder.getMethod("isAvailable").invoke(null);
+    } catch (Exception e) {
+      return false;
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("dagger.JitBinding")
+@Label("Just-In-Time Binding")
+@Description("A binding for an injected class was linked. Elapsed also includes its creation.")
+@Category("Dagger")
+@StackTrace(false)
+final class JitBindingEvent extends Event {
+  @Label("Key") String key;
+  @Label("Reflective") @Description("True if no generated adapter was found.") boolean reflective;
+  @Label("Elapsed") @Timespan(Timespan.NANOSECONDS) long elapsed;
+}
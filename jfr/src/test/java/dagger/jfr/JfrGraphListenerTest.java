@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.jfr;
+
+import dagger.Module;
+import dagger.ObjectGraph;
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class JfrGraphListenerTest {
+  private static final String[] EVENT_NAMES = {
+      "dagger.GraphCreated",
+      "dagger.ModuleAdapterLoaded",
+      "dagger.ModuleBindingsCollected",
+      "dagger.LinkPass",
+      "dagger.JitBinding",
+      "dagger.GraphValidated",
+      "dagger.SlowProvision",
+  };
+
+  private Recording recording;
+
+  static class Pump {
+    @Inject Pump() {
+    }
+  }
+
+  static class CoffeeMaker {
+    @Inject Pump pump;
+  }
+
+  @Module(injects = CoffeeMaker.class)
+  static class CoffeeModule {
+  }
+
+  static class Grinder {
+    @Inject Pump pump;
+  }
+
+  @Module(addsTo = CoffeeModule.class, injects = Grinder.class)
+  static class GrinderModule {
+  }
+
+  @Before public void setUp() {
+    recording = new Recording();
+    for (String name : EVENT_NAMES) {
+      recording.enable(name).withThreshold(Duration.ZERO);
+    }
+    recording.start();
+  }
+
+  @After public void tearDown() {
+    recording.close();
+  }
+
+  @Test public void startupPhasesAreRecorded() throws Exception {
+    ObjectGraph graph = ObjectGraph.createWith(JfrGraphListener.create(), new CoffeeModule());
+    graph.validate();
+    graph.plus(new GrinderModule()).get(Grinder.class);
+
+    List<RecordedEvent> events = stopAndRead();
+    assertThat(names(events)).excludes("dagger.SlowProvision");
+
+    RecordedEvent created = first(events, "dagger.GraphCreated");
+    assertThat(created.getBoolean("child")).isFalse();
+    assertThat(created.getDuration().toNanos()).isGreaterThan(0L);
+    assertThat(last(events, "dagger.GraphCreated").getBoolean("child")).isTrue();
+
+    RecordedEvent moduleLoaded = first(events, "dagger.ModuleAdapterLoaded");
+    assertThat(moduleLoaded.getClass("moduleType").getName())
+        .isEqualTo(CoffeeModule.class.getName());
+    // Loading the module is part of creating the graph.
+    assertThat(moduleLoaded.getStartTime().isBefore(created.getStartTime())).isFalse();
+    assertThat(moduleLoaded.getEndTime().isAfter(created.getEndTime())).isFalse();
+
+    RecordedEvent jit = first(events, "dagger.JitBinding");
+    assertThat(jit.getString("key")).isEqualTo(CoffeeMaker.class.getName());
+    assertThat(jit.getBoolean("reflective")).isFalse();
+    assertThat(jit.getDuration().isNegative()).isFalse();
+
+    assertThat(first(events, "dagger.LinkPass").getInt("bindingsLinked")).isGreaterThan(0);
+    assertThat(names(events)).contains("dagger.GraphValidated");
+  }
+
+  @Test public void slowProvisionsAboveThresholdAreRecorded() throws Exception {
+    ObjectGraph graph = ObjectGraph.createWith(
+        JfrGraphListener.create(0, TimeUnit.NANOSECONDS), new CoffeeModule());
+    graph.get(CoffeeMaker.class);
+
+    List<String> slowKeys = new ArrayList<String>();
+    for (RecordedEvent event : stopAndRead()) {
+      if (event.getEventType().getName().equals("dagger.SlowProvision")) {
+        slowKeys.add(event.getString("key"));
+      }
+    }
+    assertThat(slowKeys).containsOnly(CoffeeMaker.class.getName(), Pump.class.getName());
+  }
+
+  @Test public void fastProvisionsAreNotRecorded() throws Exception {
+    ObjectGraph graph = ObjectGraph.createWith(
+        JfrGraphListener.create(1, TimeUnit.HOURS), new CoffeeModule());
+    graph.get(CoffeeMaker.class);
+
+    assertThat(names(stopAndRead())).excludes("dagger.SlowProvision");
+  }
+
+  private List<RecordedEvent> stopAndRead() throws Exception {
+    recording.stop();
+    File file = File.createTempFile("dagger", ".jfr");
+    try {
+      recording.dump(file.toPath());
+      return RecordingFile.readAllEvents(file.toPath());
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static List<String> names(List<RecordedEvent> events) {
+    List<String> result = new ArrayList<String>();
+    for (RecordedEvent event : events) {
+      result.add(event.getEventType().getName());
+    }
+    return result;
+  }
+
+  private static RecordedEvent first(List<RecordedEvent> events, String name) {
+    for (RecordedEvent event : events) {
+      if (event.getEventType().getName().equals(name)) {
+        return event;
+      }
+    }
+    throw new AssertionError("No " + name + " event in " + names(events));
+  }
+
+  private static RecordedEvent last(List<RecordedEvent> events, String name) {
+    RecordedEvent result = null;
+    for (RecordedEvent event : events) {
+      if (event.getEventType().getName().equals(name)) {
+        result = event;
+      }
+    }
+    if (result == null) {
+      throw new AssertionError("No " + name + " event in " + names(events));
+    }
+    return result;
+  }
+}